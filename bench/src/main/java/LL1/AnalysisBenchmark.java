@@ -0,0 +1,58 @@
+package LL1;
+
+import bench.Grammars;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalysisBenchmark {
+    @Param({"small", "large", "cyclic"})
+    public String size;
+
+    private Map<String, List<List<String>>> rules;
+    private String startSymbol;
+
+    @Setup
+    public void setup() {
+        String grammar = Grammars.forSize(size);
+        rules = LL1Parser.parseGrammar(grammar);
+        startSymbol = Grammars.startSymbol(grammar);
+    }
+
+    @Benchmark
+    public int findFirst() {
+        LL1Parser parser = new LL1Parser(rules, startSymbol);
+        int total = 0;
+        for (String nonTerminal : parser.getNonTerminals()) {
+            Set<String> first = parser.findFirst(nonTerminal);
+            total += first.size();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public Map<String, Set<String>> computeFollow() {
+        LL1Parser parser = new LL1Parser(rules, startSymbol);
+        parser.computeFollow(startSymbol);
+        return parser.getFollow();
+    }
+
+    @Benchmark
+    public Map<String, Map<String, String>> generateParsingTable() {
+        return new LL1Parser(rules, startSymbol).generateParsingTable(startSymbol);
+    }
+
+    @Benchmark
+    public LL1Table compileParsingTable() {
+        return new LL1Parser(rules, startSymbol).compileParsingTable(startSymbol);
+    }
+}
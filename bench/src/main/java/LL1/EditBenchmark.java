@@ -0,0 +1,58 @@
+package LL1;
+
+import bench.Grammars;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Cost of reanalysing after changing one production, incrementally and from scratch.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EditBenchmark {
+    @Param({"small", "large", "cyclic"})
+    public String size;
+
+    private String startSymbol;
+    private GrammarEditor editor;
+    private Map<String, List<List<String>>> rules;
+    private GrammarDelta addition;
+    private GrammarDelta removal;
+    private String head;
+
+    @Setup
+    public void setup() {
+        String grammar = Grammars.forSize(size);
+        startSymbol = Grammars.startSymbol(grammar);
+        rules = LL1Parser.parseGrammar(grammar);
+        editor = new GrammarEditor(rules, startSymbol);
+        // Edit a rule in the middle of the grammar.
+        List<String> heads = new ArrayList<>(editor.getRules().keySet());
+        head = heads.get(heads.size() / 2);
+        List<String> production = List.of("edited", head);
+        addition = new GrammarDelta().add(head, production);
+        removal = new GrammarDelta().remove(head, production);
+    }
+
+    @Benchmark
+    public int incremental() {
+        return editor.apply(addition).size() + editor.apply(removal).size();
+    }
+
+    @Benchmark
+    public boolean fromScratch() {
+        List<List<String>> original = rules.get(head);
+        List<List<String>> edited = new ArrayList<>(original);
+        edited.add(List.of("edited", head));
+        rules.put(head, edited);
+        boolean first = CompiledGrammar.compile(rules, startSymbol).isLL1();
+        rules.put(head, original);
+        return first & CompiledGrammar.compile(rules, startSymbol).isLL1();
+    }
+}
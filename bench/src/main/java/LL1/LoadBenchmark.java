@@ -0,0 +1,47 @@
+package LL1;
+
+import bench.Grammars;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadBenchmark {
+    @Param({"small", "large", "cyclic"})
+    public String size;
+
+    private String grammar;
+    private String startSymbol;
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        grammar = Grammars.forSize(size);
+        startSymbol = Grammars.startSymbol(grammar);
+        file = Files.createTempFile("grammar", ".ll1");
+        CompiledGrammar.compile(LL1Parser.parseGrammar(grammar), startSymbol).save(file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public CompiledGrammar compile() {
+        return CompiledGrammar.compile(LL1Parser.parseGrammar(grammar), startSymbol);
+    }
+
+    @Benchmark
+    public CompiledGrammar load() throws IOException {
+        return CompiledGrammar.load(file);
+    }
+}
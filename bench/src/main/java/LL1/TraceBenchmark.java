@@ -0,0 +1,55 @@
+package LL1;
+
+import bench.Grammars;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Tracing formats the remaining input on every step, so it is quadratic by nature
+// and only measured on small inputs. ringTrace records the same steps as ints and
+// formats none of them.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraceBenchmark {
+    @Param({"10", "100", "1000"})
+    public int tokens;
+
+    private LL1Parser parser;
+    private Map<String, Map<String, String>> parsingTable;
+    private LL1Table table;
+    private List<String> tokenList;
+    private TraceRing ring;
+
+    @Setup
+    public void setup() {
+        parser = new LL1Parser(LL1Parser.parseGrammar(Grammars.EXPRESSION), "E");
+        parsingTable = parser.generateParsingTable("E");
+        table = parser.compileParsingTable("E");
+        tokenList = Arrays.asList((Grammars.expressionInput(tokens) + " $").split(" "));
+        ring = new TraceRing(1024);
+    }
+
+    @Benchmark
+    public boolean stringTable() {
+        return parser.validateString(tokenList, parsingTable, "E", new ArrayList<>());
+    }
+
+    @Benchmark
+    public boolean compiledTable() {
+        return parser.validateString(tokenList, table, new ArrayList<>());
+    }
+
+    @Benchmark
+    public boolean ringTrace() {
+        ring.clear();
+        return parser.validateString(tokenList, table, ring);
+    }
+}
@@ -0,0 +1,62 @@
+package LL1;
+
+import bench.Grammars;
+import engine.GeneratedParser;
+import engine.ParseMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidateBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int tokens;
+
+    private CompiledGrammar compiled;
+    private GeneratedParser generated;
+    private ParseMetrics metrics;
+    private String input;
+    private int[] encoded;
+
+    @Setup
+    public void setup() {
+        compiled = CompiledGrammar.compile(LL1Parser.parseGrammar(Grammars.EXPRESSION), "E");
+        input = Grammars.expressionInput(tokens);
+        encoded = compiled.getTable().encode(Arrays.asList((input + " $").split(" ")));
+        generated = LL1CodeGenerator.compile(compiled);
+        metrics = new ParseMetrics("bench");
+    }
+
+    @Benchmark
+    public boolean encodedTokens() {
+        return compiled.getTable().validate(encoded);
+    }
+
+    @Benchmark
+    public boolean instrumentedEncodedTokens() {
+        return compiled.getTable().validate(encoded, null, metrics);
+    }
+
+    @Benchmark
+    public boolean generatedEncodedTokens() {
+        return generated.validate(encoded);
+    }
+
+    @Benchmark
+    public boolean fromString() {
+        return compiled.validate(input);
+    }
+
+    @Benchmark
+    public boolean fromReader() throws IOException {
+        return compiled.validate(compiled.tokenSource(new StringReader(input)));
+    }
+}
@@ -0,0 +1,102 @@
+package bench;
+
+import java.util.Random;
+
+public final class Grammars {
+    public static final String EXPRESSION =
+            "E -> T E'\n"
+            + "E' -> + T E' | epsilon\n"
+            + "T -> F T'\n"
+            + "T' -> * F T' | epsilon\n"
+            + "F -> ( E ) | id";
+
+    public static final String LEFT_RECURSIVE_EXPRESSION =
+            "E -> E + T | T\n"
+            + "T -> T * F | F\n"
+            + "F -> ( E ) | id";
+
+    // Every alternative of E shares the T prefix, so plain backtracking re-parses
+    // it once per alternative at every nesting level.
+    public static final String BACKTRACKING =
+            "E -> T + E | T - E | T\n"
+            + "T -> ( E ) | n";
+
+    private Grammars() {
+    }
+
+    public static String forSize(String size) {
+        switch (size) {
+            case "small":
+                return EXPRESSION;
+            case "large":
+                return chain(500);
+            case "cyclic":
+                return random(2000, 500, 42);
+            default:
+                throw new IllegalArgumentException("Unknown grammar size " + size);
+        }
+    }
+
+    // An LL(1) grammar of n levels: A{i} -> a{i} A{i+1} B{i} | c{i}, B{i} -> b{i} B{i} | epsilon.
+    public static String chain(int levels) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < levels; i++) {
+            String next = i + 1 < levels ? " A" + (i + 1) : "";
+            sb.append("A").append(i).append(" -> a").append(i).append(next).append(" B").append(i)
+              .append(" | c").append(i).append('\n');
+            sb.append("B").append(i).append(" -> b").append(i).append(" B").append(i).append(" | epsilon\n");
+        }
+        return sb.toString();
+    }
+
+    // Random, heavily cyclic grammar for stressing FIRST/FOLLOW; not LL(1).
+    public static String random(int nonTerminals, int terminals, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < nonTerminals; i++) {
+            sb.append("N").append(i).append(" ->");
+            for (int alternative = 0; alternative < 3; alternative++) {
+                if (alternative > 0) {
+                    sb.append(" |");
+                }
+                int length = random.nextInt(4);
+                if (length == 0) {
+                    sb.append(" epsilon");
+                }
+                for (int j = 0; j < length; j++) {
+                    sb.append(random.nextInt(3) == 0
+                              ? " t" + random.nextInt(terminals)
+                              : " N" + random.nextInt(nonTerminals));
+                }
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    public static String startSymbol(String grammar) {
+        return grammar.substring(0, grammar.indexOf("->")).trim();
+    }
+
+    // "id + id * id ..." with roughly the given number of tokens.
+    public static String expressionInput(int tokens) {
+        StringBuilder sb = new StringBuilder("id");
+        for (int i = 1; i + 1 < tokens; i += 2) {
+            sb.append(i % 4 == 1 ? " + id" : " * id");
+        }
+        return sb.toString();
+    }
+
+    // "( ( ... n ... ) )" nested depth times.
+    public static String nestedInput(int depth) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            sb.append("( ");
+        }
+        sb.append('n');
+        for (int i = 0; i < depth; i++) {
+            sb.append(" )");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package earley;
+
+import bench.Grammars;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// The left-recursive expression grammar, used as written, against a highly
+// ambiguous one. The first stays linear in the input; the second is cubic, so
+// its inputs stay short.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+    private static final String AMBIGUOUS = "E -> E + E | id";
+
+    @Param({"25", "101", "401"})
+    public int tokens;
+
+    private EarleyParser expressionParser;
+    private EarleyParser ambiguousParser;
+    private String expressionInput;
+    private String ambiguousInput;
+
+    @Setup
+    public void setup() {
+        expressionParser = new EarleyParser(Grammars.LEFT_RECURSIVE_EXPRESSION, "E");
+        ambiguousParser = new EarleyParser(AMBIGUOUS, "E");
+        expressionInput = Grammars.expressionInput(tokens * 10);
+        StringBuilder sb = new StringBuilder("id");
+        for (int i = 1; i + 1 < tokens; i += 2) {
+            sb.append(" + id");
+        }
+        ambiguousInput = sb.toString();
+    }
+
+    @Benchmark
+    public boolean expression() {
+        return expressionParser.validate(expressionInput);
+    }
+
+    @Benchmark
+    public ParseForest expressionForest() {
+        return expressionParser.parse(expressionInput);
+    }
+
+    @Benchmark
+    public ParseForest ambiguous() {
+        return ambiguousParser.parse(ambiguousInput);
+    }
+}
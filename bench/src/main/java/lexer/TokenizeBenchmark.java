@@ -0,0 +1,76 @@
+package lexer;
+
+import LL1.CompiledGrammar;
+import bench.Grammars;
+import grammar.Grammar;
+import rdp.RDPGrammar;
+import rdp.RecursiveDescentParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Splitting pre-spaced input against the lexer, on the same expression tokens;
+// "dense" input has no spaces at all and identifiers in place of "id".
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizeBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int tokens;
+
+    private CompiledGrammar split;
+    private CompiledGrammar lexed;
+    private RecursiveDescentParser splitParser;
+    private RecursiveDescentParser lexedParser;
+    private Lexer lexer;
+    private String spaced;
+    private String dense;
+
+    @Setup
+    public void setup() {
+        Map<String, String> patterns = Map.of("id", "[a-z_][a-z0-9_]*");
+        lexer = Lexer.forGrammar(Grammar.parse(Grammars.EXPRESSION), patterns);
+        split = CompiledGrammar.compile(Grammar.parse(Grammars.EXPRESSION), "E");
+        lexed = split.withLexer(lexer);
+        RDPGrammar rdp = new RDPGrammar(Grammars.EXPRESSION, "E");
+        splitParser = new RecursiveDescentParser(rdp, false);
+        lexedParser = new RecursiveDescentParser(rdp, false);
+        lexedParser.setLexer(lexer);
+        spaced = Grammars.expressionInput(tokens);
+        dense = spaced.replace(" ", "").replace("id", "x1");
+    }
+
+    @Benchmark
+    public int scanOnly() {
+        TokenScanner scanner = lexer.scanner(dense);
+        int count = 0;
+        while (scanner.next() != Lexer.END) {
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public boolean splitLL1() {
+        return split.validate(spaced);
+    }
+
+    @Benchmark
+    public boolean lexedLL1() {
+        return lexed.validate(dense);
+    }
+
+    @Benchmark
+    public boolean splitRDP() {
+        return splitParser.validateString(spaced);
+    }
+
+    @Benchmark
+    public boolean lexedRDP() {
+        return lexedParser.validateString(dense);
+    }
+}
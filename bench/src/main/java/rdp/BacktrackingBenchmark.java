@@ -0,0 +1,36 @@
+package rdp;
+
+import bench.Grammars;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Nested input for a grammar whose alternatives share a prefix. Without packrat
+// the cost grows as 3^depth, so the depths stay small.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BacktrackingBenchmark {
+    @Param({"4", "8", "12"})
+    public int depth;
+
+    @Param({"false", "true"})
+    public boolean packrat;
+
+    private RecursiveDescentParser parser;
+    private String input;
+
+    @Setup
+    public void setup() {
+        parser = new RecursiveDescentParser(new RDPGrammar(Grammars.BACKTRACKING, "E"), packrat);
+        input = Grammars.nestedInput(depth);
+    }
+
+    @Benchmark
+    public boolean nested() {
+        return parser.validateString(input);
+    }
+}
@@ -0,0 +1,63 @@
+package rdp;
+
+import bench.Grammars;
+import engine.GeneratedParser;
+import engine.ParseMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+public class ValidateBenchmark {
+    @Param({"10", "1000", "10000"})
+    public int tokens;
+
+    @Param({"false", "true"})
+    public boolean packrat;
+
+    private RecursiveDescentParser expressionParser;
+    private RecursiveDescentParser instrumentedParser;
+    private String expressionInput;
+    private GeneratedParser generatedParser;
+    private int[] encodedInput;
+
+    @Setup
+    public void setup() {
+        expressionParser = new RecursiveDescentParser(new RDPGrammar(Grammars.LEFT_RECURSIVE_EXPRESSION, "E"), packrat);
+        instrumentedParser = new RecursiveDescentParser(expressionParser.getGrammar(), packrat);
+        instrumentedParser.setMetrics(new ParseMetrics("bench"));
+        expressionInput = Grammars.expressionInput(tokens);
+        generatedParser = RDPCodeGenerator.compile(expressionParser.getGrammar(), packrat);
+        String[] split = expressionInput.split(" ");
+        encodedInput = new int[split.length + 1];
+        for (int i = 0; i < split.length; i++) {
+            encodedInput[i] = generatedParser.terminalId(split[i]);
+        }
+        encodedInput[split.length] = generatedParser.endMarker();
+    }
+
+    @Benchmark
+    public boolean expression() {
+        return expressionParser.validateString(expressionInput);
+    }
+
+    @Benchmark
+    public boolean instrumentedExpression() {
+        return instrumentedParser.validateString(expressionInput);
+    }
+
+    @Benchmark
+    public boolean generatedExpression() {
+        return generatedParser.validate(expressionInput);
+    }
+
+    @Benchmark
+    public boolean generatedEncodedExpression() {
+        return generatedParser.validate(encodedInput);
+    }
+}
@@ -0,0 +1,15 @@
+package LL1;
+
+class ArrayTokenSource implements TokenSource {
+    private final int[] tokens;
+    private int index;
+
+    ArrayTokenSource(int[] tokens) {
+        this.tokens = tokens;
+    }
+
+    @Override
+    public int next() {
+        return index < tokens.length ? tokens[index++] : LL1Table.END_MARKER;
+    }
+}
@@ -0,0 +1,154 @@
+package LL1;
+import grammar.Grammar;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Splits UTF-8 input on Grammar.isWhitespace and resolves tokens against the raw bytes.
+// Input arrives in chunks; a token cut by a chunk boundary is carried over in a
+// small side buffer, so memory use is bounded by the chunk size.
+abstract class ByteTokenSource implements TokenSource {
+    static final long MAP_WINDOW = 256L * 1024 * 1024;
+
+    private final TerminalLookup lookup;
+    private ByteBuffer chunk;
+    private byte[] carry = new byte[64];
+    private int carryLength;
+
+    ByteTokenSource(TerminalLookup lookup) {
+        this.lookup = lookup;
+    }
+
+    // Returns the next chunk to scan, or null at end of input.
+    protected abstract ByteBuffer nextChunk() throws IOException;
+
+    @Override
+    public int next() throws IOException {
+        while (true) {
+            if (chunk == null || !chunk.hasRemaining()) {
+                chunk = nextChunk();
+                if (chunk == null) {
+                    if (carryLength > 0) {
+                        int id = lookup.lookup(carry, 0, carryLength);
+                        carryLength = 0;
+                        return id;
+                    }
+                    return LL1Table.END_MARKER;
+                }
+            }
+
+            int position = chunk.position();
+            int limit = chunk.limit();
+            while (position < limit && carryLength == 0 && isWhitespace(chunk.get(position))) {
+                position++;
+            }
+            int start = position;
+            while (position < limit && !isWhitespace(chunk.get(position))) {
+                position++;
+            }
+            chunk.position(position);
+
+            if (position == limit) {
+                append(start, position);
+                continue;
+            }
+            if (carryLength > 0) {
+                append(start, position);
+                int id = lookup.lookup(carry, 0, carryLength);
+                carryLength = 0;
+                return id;
+            }
+            if (position > start) {
+                return lookup.lookup(chunk, start, position - start);
+            }
+        }
+    }
+
+    private void append(int start, int end) {
+        int length = end - start;
+        if (carryLength + length > carry.length) {
+            carry = Arrays.copyOf(carry, Math.max(carry.length * 2, carryLength + length));
+        }
+        for (int i = start; i < end; i++) {
+            carry[carryLength++] = chunk.get(i);
+        }
+    }
+
+    // Bytes of a multi-byte UTF-8 sequence are negative, so they never match.
+    private static boolean isWhitespace(byte b) {
+        return Grammar.isWhitespace(b);
+    }
+
+    static ByteTokenSource of(ByteBuffer buffer, TerminalLookup lookup) {
+        return new ByteTokenSource(lookup) {
+            private ByteBuffer remaining = buffer.slice();
+
+            @Override
+            protected ByteBuffer nextChunk() {
+                ByteBuffer result = remaining;
+                remaining = null;
+                return result;
+            }
+        };
+    }
+
+    static ByteTokenSource of(ReadableByteChannel channel, TerminalLookup lookup) {
+        return new ByteTokenSource(lookup) {
+            private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+            @Override
+            protected ByteBuffer nextChunk() throws IOException {
+                buffer.clear();
+                int read;
+                do {
+                    read = channel.read(buffer);
+                } while (read == 0);
+                if (read < 0) {
+                    return null;
+                }
+                buffer.flip();
+                return buffer;
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    // Maps the file one window at a time, so files larger than 2 GB can be read
+    // and only the current window needs to be resident.
+    static ByteTokenSource map(Path file, TerminalLookup lookup) throws IOException {
+        return map(file, lookup, MAP_WINDOW);
+    }
+
+    static ByteTokenSource map(Path file, TerminalLookup lookup, long window) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        return new ByteTokenSource(lookup) {
+            private long offset;
+
+            @Override
+            protected ByteBuffer nextChunk() throws IOException {
+                long size = channel.size();
+                if (offset >= size) {
+                    return null;
+                }
+                long length = Math.min(window, size - offset);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                offset += length;
+                return mapped;
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,374 @@
+package LL1;
+import engine.ParseMetrics;
+import engine.SyntaxChecker;
+import engine.SyntaxError;
+import grammar.Grammar;
+import lexer.Lexer;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public final class CompiledGrammar implements SyntaxChecker {
+    // Tokens of lookahead used to resolve conflicts when compiling a grammar that
+    // is not LL(1).
+    public static final int DEFAULT_LOOKAHEAD = 3;
+    private static final int CACHE_SIZE = 16;
+    private static final Map<String, CompiledGrammar> cache =
+            new LinkedHashMap<String, CompiledGrammar>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompiledGrammar> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    private final String startSymbol;
+    private final Set<String> nonTerminals;
+    private final Set<String> terminals;
+    private final Map<String, Set<String>> first;
+    private final Map<String, Set<String>> follow;
+    private final LL1Table table;
+    private final long sourceChecksum;
+    private final ParseMetrics metrics;
+    private final Lexer lexer;
+    private final int[] lexerIds;
+    private volatile LL1Recovery recovery;
+
+    CompiledGrammar(LL1Table table, String startSymbol, Set<String> nonTerminals, Set<String> terminals,
+                    Map<String, Set<String>> first, Map<String, Set<String>> follow, long sourceChecksum) {
+        this.table = table;
+        this.startSymbol = startSymbol;
+        this.nonTerminals = Collections.unmodifiableSet(nonTerminals);
+        this.terminals = Collections.unmodifiableSet(terminals);
+        this.first = Collections.unmodifiableMap(first);
+        this.follow = Collections.unmodifiableMap(follow);
+        this.sourceChecksum = sourceChecksum;
+        this.metrics = null;
+        this.lexer = null;
+        this.lexerIds = null;
+    }
+
+    private CompiledGrammar(CompiledGrammar grammar, ParseMetrics metrics, Lexer lexer) {
+        this.table = grammar.table;
+        this.startSymbol = grammar.startSymbol;
+        this.nonTerminals = grammar.nonTerminals;
+        this.terminals = grammar.terminals;
+        this.first = grammar.first;
+        this.follow = grammar.follow;
+        this.sourceChecksum = grammar.sourceChecksum;
+        this.recovery = grammar.recovery;
+        this.metrics = metrics;
+        this.lexer = lexer;
+        this.lexerIds = lexer != null ? lexer.tokenIds(table::terminalId) : null;
+    }
+
+    // The same grammar, sharing its table, but recording every validation in
+    // metrics. Pass null to get an uninstrumented view back.
+    public CompiledGrammar withMetrics(ParseMetrics metrics) {
+        return new CompiledGrammar(this, metrics, lexer);
+    }
+
+    public ParseMetrics getMetrics() {
+        return metrics;
+    }
+
+    // The same grammar, reading string and stream input with lexer instead of
+    // splitting it on whitespace (Grammar.isWhitespace). Pass null to split again.
+    public CompiledGrammar withLexer(Lexer lexer) {
+        return new CompiledGrammar(this, metrics, lexer);
+    }
+
+    public Lexer getLexer() {
+        return lexer;
+    }
+
+    public static CompiledGrammar compile(Map<String, List<List<String>>> rules, String startSymbol) {
+        return compile(rules, startSymbol, DEFAULT_LOOKAHEAD);
+    }
+
+    // Cells that one token cannot decide get a strong LL(k) decision over at most
+    // maxLookahead tokens (1 to 4); those still ambiguous keep their first
+    // production, and input on which that guess is left-recursive or cyclic is
+    // rejected rather than expanded forever. Either way getConflicts() lists them.
+    public static CompiledGrammar compile(Map<String, List<List<String>>> rules, String startSymbol,
+                                          int maxLookahead) {
+        return compile(Grammar.of(rules), startSymbol, maxLookahead);
+    }
+
+    public static CompiledGrammar compile(Grammar grammar, String startSymbol) {
+        return compile(grammar, startSymbol, DEFAULT_LOOKAHEAD);
+    }
+
+    public static CompiledGrammar compile(Grammar grammar, String startSymbol, int maxLookahead) {
+        LL1Parser parser = new LL1Parser(grammar, startSymbol);
+        LL1Table table = LookaheadAnalysis.resolve(parser.compileParsingTable(startSymbol), maxLookahead);
+        return new CompiledGrammar(table, startSymbol,
+                                   new LinkedHashSet<>(parser.getNonTerminals()),
+                                   new LinkedHashSet<>(parser.findTerminals()),
+                                   copyOf(parser.getFirst()), copyOf(parser.getFollow()),
+                                   GrammarFile.sourceChecksum(grammar, startSymbol));
+    }
+
+    // Maps a file written by save(); the parse table is used in place, so startup
+    // cost does not grow with the table size.
+    public static CompiledGrammar load(Path file) throws IOException {
+        return GrammarFile.read(file);
+    }
+
+    // Loads file when it was compiled from the same grammar, otherwise compiles the
+    // grammar and replaces file, so short-lived workers only pay for analysis once.
+    public static CompiledGrammar loadOrCompile(Path file, String inputGrammar, String startSymbol) throws IOException {
+        Grammar grammar = Grammar.parse(inputGrammar);
+        long checksum = GrammarFile.sourceChecksum(grammar, startSymbol.trim());
+        if (Files.exists(file)) {
+            try {
+                if (GrammarFile.readSourceChecksum(file) == checksum) {
+                    return GrammarFile.read(file);
+                }
+            } catch (IOException e) {
+                // Corrupt or from another format version; rebuild it below.
+            }
+        }
+        CompiledGrammar compiled = compile(grammar, startSymbol.trim());
+        compiled.save(file);
+        return compiled;
+    }
+
+    public void save(Path file) throws IOException {
+        GrammarFile.write(this, file);
+    }
+
+    public static long sourceChecksum(String inputGrammar, String startSymbol) {
+        return GrammarFile.sourceChecksum(Grammar.parse(inputGrammar), startSymbol.trim());
+    }
+
+    public long getSourceChecksum() {
+        return sourceChecksum;
+    }
+
+    public static CompiledGrammar forGrammar(String inputGrammar, String startSymbol) {
+        String key = startSymbol.trim() + "\n" + normalize(inputGrammar);
+        synchronized (cache) {
+            CompiledGrammar cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        CompiledGrammar compiled = compile(Grammar.parse(inputGrammar), startSymbol.trim());
+        synchronized (cache) {
+            CompiledGrammar raced = cache.putIfAbsent(key, compiled);
+            return raced != null ? raced : compiled;
+        }
+    }
+
+    static String normalize(String inputGrammar) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : inputGrammar.split("\n")) {
+            String normalized = line.trim().replaceAll("\\s+", " ");
+            if (!normalized.isEmpty()) {
+                sb.append(normalized).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, Set<String>> copyOf(Map<String, Set<String>> sets) {
+        Map<String, Set<String>> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> entry : sets.entrySet()) {
+            copy.put(entry.getKey(), Collections.unmodifiableSet(new LinkedHashSet<>(entry.getValue())));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    public String getStartSymbol() {
+        return startSymbol;
+    }
+
+    public Set<String> getNonTerminals() {
+        return nonTerminals;
+    }
+
+    public Set<String> getTerminals() {
+        return terminals;
+    }
+
+    public Map<String, Set<String>> getFirst() {
+        return first;
+    }
+
+    public Map<String, Set<String>> getFollow() {
+        return follow;
+    }
+
+    public boolean isLL1() {
+        return table.isLL1();
+    }
+
+    // Cells with more than one candidate production, whether or not lookahead
+    // resolved them.
+    public List<Conflict> getConflicts() {
+        return table.getConflicts();
+    }
+
+    // Tokens of lookahead the resolved conflicts need: 1 for an LL(1) grammar, or
+    // when no conflict could be resolved.
+    public int getLookahead() {
+        return table.getLookahead();
+    }
+
+    // How much memory the packed parse table saves over a dense one.
+    public TableStats getTableStats() {
+        return table.getStats();
+    }
+
+    LL1Table getTable() {
+        return table;
+    }
+
+    public String getEntry(String nonTerminal, String terminal) {
+        int nt = table.symbolId(nonTerminal);
+        if (nt == LL1Table.UNKNOWN_SYMBOL || table.isTerminal(nt)) {
+            return null;
+        }
+        return table.cellText(table.production(nt, table.terminalId(terminal)));
+    }
+
+    @Override
+    public boolean validate(String input) {
+        if (lexer != null) {
+            try {
+                return validate(tokenSource(input));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return validate(tokens(input));
+    }
+
+    public boolean validate(List<String> tokens) {
+        return table.validate(table.encode(tokens), null, metrics);
+    }
+
+    public boolean validate(List<String> tokens, List<String> traceTable) {
+        return table.validate(table.encode(tokens), new TraceTableListener(tokens, table, traceTable), metrics);
+    }
+
+    boolean validate(List<String> tokens, TraceListener listener) {
+        return table.validate(table.encode(tokens), listener, metrics);
+    }
+
+    // Traces into sink, a TraceRing or TraceFile; format the steps with
+    // TraceStep.format.
+    public boolean validate(List<String> tokens, TraceSink sink) {
+        return table.validate(table.encode(tokens), sink, metrics);
+    }
+
+    public boolean validate(TokenSource source) throws IOException {
+        return table.validate(source, null, metrics);
+    }
+
+    // With a TraceFile, neither the input nor its trace is ever held in memory.
+    public boolean validate(TokenSource source, TraceSink sink) throws IOException {
+        try {
+            return table.validate(source, sink, metrics);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Every syntax error in the input, found in one pass with error recovery.
+    @Override
+    public List<SyntaxError> check(String input) {
+        if (lexer != null) {
+            // Token text is only kept here, for the messages.
+            List<String> tokens = lexer.tokenTexts(input);
+            tokens.add(Grammar.END_MARKER);
+            try {
+                return recovery().parse(tokenSource(input), tokens, metrics);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return check(tokens(input));
+    }
+
+    // The tokens of input, split exactly as tokenSource(input) splits them, and
+    // the end marker.
+    private static List<String> tokens(String input) {
+        List<String> tokens = Grammar.tokens(input);
+        tokens.add(Grammar.END_MARKER);
+        return tokens;
+    }
+
+    public List<SyntaxError> check(List<String> tokens) {
+        try {
+            return recovery().parse(new ArrayTokenSource(table.encode(tokens)), tokens, metrics);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public List<SyntaxError> check(TokenSource source) throws IOException {
+        return recovery().parse(source, null, metrics);
+    }
+
+    // Built on first use: FOLLOW sets of a loaded grammar are only read from the
+    // file when asked for.
+    private LL1Recovery recovery() {
+        LL1Recovery result = recovery;
+        if (result == null) {
+            result = new LL1Recovery(table, follow);
+            recovery = result;
+        }
+        return result;
+    }
+
+    // Without a lexer these split on Grammar.isWhitespace, like validate(String)
+    // does; with one, bytes are decoded as UTF-8 and scanned by it.
+    //
+    // A source owns the reader, channel or file it reads, and closing the source
+    // closes it; open sources in try-with-resources, since validate() and check()
+    // do not close what they are given.
+    public TokenSource tokenSource(CharSequence input) {
+        if (lexer != null) {
+            return new LexerTokenSource(lexer.scanner(input), lexerIds);
+        }
+        return new ReaderTokenSource(new StringReader(input.toString()), table.getTerminalLookup());
+    }
+
+    public TokenSource tokenSource(Reader reader) {
+        if (lexer != null) {
+            return new LexerTokenSource(lexer.scanner(reader), lexerIds);
+        }
+        return new ReaderTokenSource(reader, table.getTerminalLookup());
+    }
+
+    public TokenSource tokenSource(ReadableByteChannel channel) {
+        if (lexer != null) {
+            return tokenSource(Channels.newReader(channel, StandardCharsets.UTF_8));
+        }
+        return ByteTokenSource.of(channel, table.getTerminalLookup());
+    }
+
+    public TokenSource tokenSource(ByteBuffer buffer) {
+        if (lexer != null) {
+            return tokenSource(StandardCharsets.UTF_8.decode(buffer.slice()));
+        }
+        return ByteTokenSource.of(buffer, table.getTerminalLookup());
+    }
+
+    // Either way this opens the file, which stays open until the source is closed.
+    public TokenSource tokenSource(Path file) throws IOException {
+        if (lexer != null) {
+            return tokenSource(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+        }
+        return ByteTokenSource.map(file, table.getTerminalLookup());
+    }
+}
@@ -0,0 +1,49 @@
+package LL1;
+import java.util.*;
+
+// A table cell that more than one production predicts with one token of
+// lookahead. lookahead is the number of tokens that tell the productions apart,
+// or 0 when no lookahead up to the limit does and the first production is used.
+public final class Conflict {
+    private final String nonTerminal;
+    private final String terminal;
+    private final List<String> productions;
+    private final int lookahead;
+
+    Conflict(String nonTerminal, String terminal, List<String> productions, int lookahead) {
+        this.nonTerminal = nonTerminal;
+        this.terminal = terminal;
+        this.productions = List.copyOf(productions);
+        this.lookahead = lookahead;
+    }
+
+    public String getNonTerminal() {
+        return nonTerminal;
+    }
+
+    public String getTerminal() {
+        return terminal;
+    }
+
+    // Production bodies in grammar order.
+    public List<String> getProductions() {
+        return productions;
+    }
+
+    public int getLookahead() {
+        return lookahead;
+    }
+
+    public boolean isResolved() {
+        return lookahead > 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(nonTerminal).append(" on ").append(terminal).append(':');
+        for (int i = 0; i < productions.size(); i++) {
+            sb.append(i == 0 ? " " : " | ").append(productions.get(i));
+        }
+        return sb.append(lookahead > 0 ? " (resolved with " + lookahead + " tokens)" : " (unresolved)").toString();
+    }
+}
@@ -0,0 +1,47 @@
+package LL1;
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Catches a predictive parse that would expand forever without consuming a token,
+// which a left-recursive or cyclic production kept in a conflicting cell can do.
+// Between two tokens the lookahead does not change, so a nonterminal expanded
+// again inside its own expansion repeats itself for good. The guard keeps the
+// chain of expansions still open since the last token: one popped from position
+// p stays open until something below p is popped. Drivers only create it once
+// an input has gone GUARD_AFTER expansions without a token, and reset() it on
+// the next one.
+final class ExpansionGuard {
+    static final int GUARD_AFTER = 64;
+
+    private final BitSet open = new BitSet();
+    private int[] symbols = new int[16];
+    private int[] positions = new int[16];
+    private int size;
+
+    // symbol was popped from position, the stack top after the pop, and is about
+    // to be expanded. False when that can never end.
+    boolean expand(int symbol, int position) {
+        // Only pops happen between two expansions, so nothing between the last
+        // one and this one was popped from below position.
+        while (size > 0 && positions[size - 1] > position) {
+            open.clear(symbols[--size]);
+        }
+        if (open.get(symbol)) {
+            return false;
+        }
+        if (size == symbols.length) {
+            symbols = Arrays.copyOf(symbols, size * 2);
+            positions = Arrays.copyOf(positions, size * 2);
+        }
+        symbols[size] = symbol;
+        positions[size++] = position;
+        open.set(symbol);
+        return true;
+    }
+
+    void reset() {
+        while (size > 0) {
+            open.clear(symbols[--size]);
+        }
+    }
+}
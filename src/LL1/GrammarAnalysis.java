@@ -0,0 +1,327 @@
+package LL1;
+import grammar.Grammar;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+
+class GrammarAnalysis {
+    private final Grammar grammar;
+    private final String[] symbols;
+    private final int[] ids;
+    private final int terminalCount;
+    private final int nonTerminalCount;
+    private final int[] productionHead;
+    private final int[][] productionBody;
+    private final String[] productionText;
+
+    private final boolean[] nullable;
+    private final BitSet[] first;
+    private final BitSet[] follow;
+
+    public GrammarAnalysis(Grammar grammar) {
+        this.grammar = grammar;
+        this.terminalCount = grammar.getTerminalCount();
+        this.nonTerminalCount = grammar.getNonTerminalCount();
+
+        // The table wants terminals first, with "$" as 0, so the grammar's ids are
+        // renumbered once here.
+        int symbolCount = grammar.getSymbolCount();
+        int endMarker = grammar.getEndMarker();
+        this.ids = new int[symbolCount];
+        this.symbols = new String[symbolCount];
+        int terminal = 1;
+        for (int id = 0; id < symbolCount; id++) {
+            int mapped = !grammar.isTerminal(id) ? terminalCount + id : id == endMarker ? 0 : terminal++;
+            ids[id] = mapped;
+            symbols[mapped] = grammar.symbolName(id);
+        }
+
+        int productionCount = grammar.getProductionCount();
+        this.productionHead = new int[productionCount];
+        this.productionBody = new int[productionCount][];
+        this.productionText = new String[productionCount];
+        for (int p = 0; p < productionCount; p++) {
+            productionHead[p] = ids[grammar.productionHead(p)];
+            int[] body = grammar.productionBody(p).clone();
+            for (int i = 0; i < body.length; i++) {
+                body[i] = ids[body[i]];
+            }
+            productionBody[p] = body;
+            productionText[p] = grammar.productionText(p);
+        }
+
+        this.nullable = new boolean[nonTerminalCount];
+        this.first = new BitSet[nonTerminalCount];
+        this.follow = new BitSet[nonTerminalCount];
+        for (int i = 0; i < nonTerminalCount; i++) {
+            first[i] = new BitSet(terminalCount);
+            follow[i] = new BitSet(terminalCount);
+        }
+
+        computeNullable();
+        computeFirst();
+    }
+
+    public String[] getSymbols() {
+        return symbols;
+    }
+
+    public int getTerminalCount() {
+        return terminalCount;
+    }
+
+    public int getNonTerminalCount() {
+        return nonTerminalCount;
+    }
+
+    public int getProductionCount() {
+        return productionHead.length;
+    }
+
+    public int symbolId(String name) {
+        int id = grammar.symbolId(name);
+        return id >= 0 ? ids[id] : LL1Table.UNKNOWN_SYMBOL;
+    }
+
+    public boolean isTerminal(int symbol) {
+        return symbol < terminalCount;
+    }
+
+    public int[] getProductionHead() {
+        return productionHead;
+    }
+
+    public int[][] getProductionBody() {
+        return productionBody;
+    }
+
+    public String[] getProductionText() {
+        return productionText;
+    }
+
+    public boolean isNullable(int nonTerminal) {
+        return nullable[nonTerminal - terminalCount];
+    }
+
+    public BitSet first(int nonTerminal) {
+        return first[nonTerminal - terminalCount];
+    }
+
+    public BitSet follow(int nonTerminal) {
+        return follow[nonTerminal - terminalCount];
+    }
+
+    // FIRST of a production body; returns true when the whole body is nullable.
+    public boolean firstOfBody(int production, BitSet into) {
+        for (int symbol : productionBody[production]) {
+            if (isTerminal(symbol)) {
+                into.set(symbol);
+                return false;
+            }
+            into.or(first(symbol));
+            if (!isNullable(symbol)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void computeNullable() {
+        int[] remaining = new int[productionHead.length];
+        IntList[] occurrences = newLists(nonTerminalCount);
+        IntList worklist = new IntList();
+
+        for (int p = 0; p < productionHead.length; p++) {
+            boolean hasTerminal = false;
+            for (int symbol : productionBody[p]) {
+                if (isTerminal(symbol)) {
+                    hasTerminal = true;
+                    break;
+                }
+            }
+            if (hasTerminal) {
+                continue;
+            }
+            remaining[p] = productionBody[p].length;
+            for (int symbol : productionBody[p]) {
+                occurrences[symbol - terminalCount].add(p);
+            }
+            if (remaining[p] == 0 && !nullable[productionHead[p] - terminalCount]) {
+                nullable[productionHead[p] - terminalCount] = true;
+                worklist.add(productionHead[p] - terminalCount);
+            }
+        }
+
+        while (worklist.size() > 0) {
+            int nt = worklist.pop();
+            IntList uses = occurrences[nt];
+            for (int i = 0; i < uses.size(); i++) {
+                int p = uses.get(i);
+                int head = productionHead[p] - terminalCount;
+                if (--remaining[p] == 0 && !nullable[head]) {
+                    nullable[head] = true;
+                    worklist.add(head);
+                }
+            }
+        }
+    }
+
+    private void computeFirst() {
+        // includes[A] lists every X whose FIRST set flows into FIRST(A).
+        IntList[] includes = newLists(nonTerminalCount);
+        for (int p = 0; p < productionHead.length; p++) {
+            int head = productionHead[p] - terminalCount;
+            for (int symbol : productionBody[p]) {
+                if (isTerminal(symbol)) {
+                    first[head].set(symbol);
+                    break;
+                }
+                if (symbol - terminalCount != head) {
+                    includes[head].add(symbol - terminalCount);
+                }
+                if (!isNullable(symbol)) {
+                    break;
+                }
+            }
+        }
+        digraph(first, includes);
+    }
+
+    public void computeFollow(int startSymbol) {
+        for (BitSet set : follow) {
+            set.clear();
+        }
+        follow(startSymbol).set(LL1Table.END_MARKER);
+
+        // includes[X] lists every A whose FOLLOW set flows into FOLLOW(X).
+        IntList[] includes = newLists(nonTerminalCount);
+        BitSet trailer = new BitSet(terminalCount);
+        for (int p = 0; p < productionHead.length; p++) {
+            int head = productionHead[p] - terminalCount;
+            int[] body = productionBody[p];
+            boolean suffixNullable = true;
+            trailer.clear();
+            for (int i = body.length - 1; i >= 0; i--) {
+                int symbol = body[i];
+                if (isTerminal(symbol)) {
+                    trailer.clear();
+                    trailer.set(symbol);
+                    suffixNullable = false;
+                    continue;
+                }
+                int nt = symbol - terminalCount;
+                follow[nt].or(trailer);
+                if (suffixNullable && nt != head) {
+                    includes[nt].add(head);
+                }
+                if (nullable[nt]) {
+                    trailer.or(first[nt]);
+                } else {
+                    trailer.clear();
+                    trailer.or(first[nt]);
+                    suffixNullable = false;
+                }
+            }
+        }
+        digraph(follow, includes);
+    }
+
+    // DeRemer-Pennello digraph closure: every strongly connected component of the
+    // includes relation is visited once and ends up sharing one union set, so the
+    // cost is linear in the number of edges regardless of cycles.
+    private void digraph(BitSet[] sets, IntList[] includes) {
+        int[] depth = new int[nonTerminalCount];
+        int[] entryDepth = new int[nonTerminalCount];
+        int[] nodeStack = new int[nonTerminalCount];
+        int[] callStack = new int[nonTerminalCount];
+        int[] edgeIndex = new int[nonTerminalCount];
+        int nodeTop = 0;
+
+        for (int root = 0; root < nonTerminalCount; root++) {
+            if (depth[root] != 0) {
+                continue;
+            }
+            checkInterrupted();
+            int callTop = 0;
+            callStack[callTop++] = root;
+            nodeStack[nodeTop++] = root;
+            depth[root] = entryDepth[root] = nodeTop;
+            edgeIndex[root] = 0;
+
+            while (callTop > 0) {
+                int x = callStack[callTop - 1];
+                IntList targets = includes[x];
+                if (edgeIndex[x] < targets.size()) {
+                    int y = targets.get(edgeIndex[x]++);
+                    if (depth[y] == 0) {
+                        nodeStack[nodeTop++] = y;
+                        depth[y] = entryDepth[y] = nodeTop;
+                        edgeIndex[y] = 0;
+                        callStack[callTop++] = y;
+                    } else {
+                        depth[x] = Math.min(depth[x], depth[y]);
+                        sets[x].or(sets[y]);
+                    }
+                    continue;
+                }
+
+                callTop--;
+                if (depth[x] == entryDepth[x]) {
+                    int member;
+                    do {
+                        member = nodeStack[--nodeTop];
+                        depth[member] = Integer.MAX_VALUE;
+                        if (member != x) {
+                            sets[member].clear();
+                            sets[member].or(sets[x]);
+                        }
+                    } while (member != x);
+                }
+                if (callTop > 0) {
+                    int parent = callStack[callTop - 1];
+                    depth[parent] = Math.min(depth[parent], depth[x]);
+                    sets[parent].or(sets[x]);
+                }
+            }
+        }
+    }
+
+    // Analysis of a large grammar can be cancelled from another thread (the GUI's
+    // Cancel button) by interrupting the thread that runs it.
+    static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Grammar analysis interrupted");
+        }
+    }
+
+    private static IntList[] newLists(int size) {
+        IntList[] lists = new IntList[size];
+        for (int i = 0; i < size; i++) {
+            lists[i] = new IntList();
+        }
+        return lists;
+    }
+
+    static class IntList {
+        private int[] items = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+
+        int get(int index) {
+            return items[index];
+        }
+
+        int pop() {
+            return items[--size];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
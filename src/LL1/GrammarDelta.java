@@ -0,0 +1,99 @@
+package LL1;
+import java.util.*;
+
+// An edit to a grammar's productions, applied to a GrammarEditor. Operations are
+// applied in order; a rule left without productions is removed.
+public final class GrammarDelta {
+    private static final int ADD = 0;
+    private static final int REMOVE = 1;
+    private static final int REPLACE = 2;
+
+    private final List<Edit> edits = new ArrayList<>();
+
+    public GrammarDelta add(String head, List<String> production) {
+        edits.add(new Edit(ADD, head, List.of(checkProduction(head, production))));
+        return this;
+    }
+
+    public GrammarDelta remove(String head, List<String> production) {
+        edits.add(new Edit(REMOVE, head, List.of(checkProduction(head, production))));
+        return this;
+    }
+
+    public GrammarDelta replace(String head, List<List<String>> productions) {
+        List<List<String>> copy = new ArrayList<>();
+        for (List<String> production : productions) {
+            copy.add(checkProduction(head, production));
+        }
+        edits.add(new Edit(REPLACE, head, copy));
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return edits.isEmpty();
+    }
+
+    // The smallest delta that turns from into to: one replace per rule whose
+    // productions differ.
+    public static GrammarDelta between(Map<String, List<List<String>>> from, Map<String, List<List<String>>> to) {
+        GrammarDelta delta = new GrammarDelta();
+        for (Map.Entry<String, List<List<String>>> entry : from.entrySet()) {
+            List<List<String>> target = to.get(entry.getKey());
+            if (target == null) {
+                delta.replace(entry.getKey(), List.of());
+            } else if (!target.equals(entry.getValue())) {
+                delta.replace(entry.getKey(), target);
+            }
+        }
+        for (Map.Entry<String, List<List<String>>> entry : to.entrySet()) {
+            if (!from.containsKey(entry.getKey())) {
+                delta.replace(entry.getKey(), entry.getValue());
+            }
+        }
+        return delta;
+    }
+
+    // New production lists of every rule the delta touches, in the order they were
+    // first touched. An empty list means the rule is removed.
+    Map<String, List<List<String>>> applyTo(Map<String, List<List<String>>> rules) {
+        Map<String, List<List<String>>> edited = new LinkedHashMap<>();
+        for (Edit edit : edits) {
+            List<List<String>> productions = edited.computeIfAbsent(edit.head,
+                    head -> new ArrayList<>(rules.getOrDefault(head, List.of())));
+            switch (edit.kind) {
+                case ADD:
+                    productions.addAll(edit.productions);
+                    break;
+                case REMOVE:
+                    if (!productions.remove(edit.productions.get(0))) {
+                        throw new IllegalArgumentException("Rule " + edit.head + " has no production "
+                                                           + String.join(" ", edit.productions.get(0)));
+                    }
+                    break;
+                default:
+                    productions.clear();
+                    productions.addAll(edit.productions);
+            }
+        }
+        return edited;
+    }
+
+    private static List<String> checkProduction(String head, List<String> production) {
+        if (production.isEmpty()) {
+            throw new IllegalArgumentException("Empty production for " + head + "; use epsilon");
+        }
+        return List.copyOf(production);
+    }
+
+    private static final class Edit {
+        final int kind;
+        final String head;
+        final List<List<String>> productions;
+
+        Edit(int kind, String head, List<List<String>> productions) {
+            this.kind = kind;
+            this.head = head;
+            this.productions = productions;
+        }
+    }
+}
@@ -0,0 +1,745 @@
+package LL1;
+import grammar.Grammar;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// LL(1) analysis of a grammar that is being edited. Applying a GrammarDelta only
+// redoes the work that can depend on the edited rules:
+//  - nullability and FIRST are recomputed for the nonterminals that reach an
+//    edited rule through left corners,
+//  - FOLLOW for the nonterminals an edited occurrence can flow into,
+//  - and only the table rows whose predict sets may have changed are rebuilt.
+// Each of those regions is reset and brought back to a fixpoint, with everything
+// outside it treated as constant, so removals are handled as well as additions.
+public final class GrammarEditor {
+    private final String startSymbol;
+    private final Map<String, List<List<String>>> rules = new LinkedHashMap<>();
+    private final List<String> terminalNames = new ArrayList<>();
+    private final Map<String, Integer> terminalIds = new HashMap<>();
+    private int[] terminalUses;
+    private final List<Rule> nonTerminals = new ArrayList<>();
+    private final Map<String, Rule> nonTerminalIds = new HashMap<>();
+    private int conflictRows;
+    private int visitGeneration;
+
+    public GrammarEditor(Map<String, List<List<String>>> rules, String startSymbol) {
+        if (!rules.containsKey(startSymbol)) {
+            throw new IllegalArgumentException("Start symbol " + startSymbol + " has no productions");
+        }
+        this.startSymbol = startSymbol;
+        for (Map.Entry<String, List<List<String>>> entry : rules.entrySet()) {
+            this.rules.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        rebuild();
+    }
+
+    public String getStartSymbol() {
+        return startSymbol;
+    }
+
+    public Map<String, List<List<String>>> getRules() {
+        return Collections.unmodifiableMap(rules);
+    }
+
+    // Returns the nonterminals whose table rows were recomputed.
+    public Set<String> apply(GrammarDelta delta) {
+        Map<String, List<List<String>>> edited = delta.applyTo(rules);
+        List<List<String>> start = edited.get(startSymbol);
+        if (start != null && start.isEmpty()) {
+            throw new IllegalArgumentException("Start symbol " + startSymbol + " would have no productions");
+        }
+        if (changesSymbolKinds(edited)) {
+            for (Map.Entry<String, List<List<String>>> entry : edited.entrySet()) {
+                if (entry.getValue().isEmpty()) {
+                    rules.remove(entry.getKey());
+                } else {
+                    rules.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return rebuild();
+        }
+
+        // Update the rule set first, so bodies that mention a rule added by the
+        // same delta are encoded as nonterminals.
+        for (Map.Entry<String, List<List<String>>> entry : edited.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                rules.remove(entry.getKey());
+            } else {
+                rules.put(entry.getKey(), entry.getValue());
+            }
+        }
+        Set<Rule> heads = new LinkedHashSet<>();
+        Set<Rule> occurring = new LinkedHashSet<>();
+        for (Map.Entry<String, List<List<String>>> entry : edited.entrySet()) {
+            Rule rule = rule(entry.getKey());
+            setProductions(rule, entry.getValue(), occurring);
+            if (entry.getValue().isEmpty()) {
+                deactivate(rule);
+            } else {
+                heads.add(rule);
+            }
+        }
+
+        Set<Rule> nullableChanged = recomputeNullable(nullableCone(heads));
+        Set<Rule> firstSeeds = new LinkedHashSet<>(heads);
+        for (Rule rule : nullableChanged) {
+            addUsers(rule, firstSeeds);
+        }
+        Set<Rule> firstChanged = recomputeFirst(firstSeeds);
+
+        Set<Rule> changed = new LinkedHashSet<>(nullableChanged);
+        changed.addAll(firstChanged);
+        Set<Rule> users = new LinkedHashSet<>();
+        for (Rule rule : changed) {
+            addUsers(rule, users);
+        }
+        Set<Rule> followSeeds = new LinkedHashSet<>(occurring);
+        for (Rule user : users) {
+            for (int[] body : user.bodies) {
+                addNonTerminals(body, followSeeds);
+            }
+        }
+        followSeeds.removeIf(rule -> !rule.active);
+        Set<Rule> followChanged = recomputeFollow(followSeeds);
+
+        Set<Rule> rows = new LinkedHashSet<>(heads);
+        rows.addAll(users);
+        rows.addAll(followChanged);
+        Set<String> names = new LinkedHashSet<>();
+        for (Rule rule : rows) {
+            rebuildRow(rule);
+            names.add(rule.name);
+        }
+        return names;
+    }
+
+    public boolean isLL1() {
+        return conflictRows == 0;
+    }
+
+    // Terminals whose cell more than one production of the rule predicts.
+    public Map<String, Set<String>> getConflicts() {
+        Map<String, Set<String>> conflicts = new LinkedHashMap<>();
+        for (String head : rules.keySet()) {
+            Rule rule = nonTerminalIds.get(head);
+            if (!rule.conflicts.isEmpty()) {
+                conflicts.put(head, toNames(rule.conflicts));
+            }
+        }
+        return conflicts;
+    }
+
+    public Set<String> getFirst(String nonTerminal) {
+        Rule rule = activeRule(nonTerminal);
+        Set<String> first = toNames(rule.first);
+        if (rule.nullable) {
+            first.add(Grammar.EPSILON);
+        }
+        return first;
+    }
+
+    public Set<String> getFollow(String nonTerminal) {
+        return toNames(activeRule(nonTerminal).follow);
+    }
+
+    public String getEntry(String nonTerminal, String terminal) {
+        Rule rule = nonTerminalIds.get(nonTerminal);
+        Integer t = terminalIds.get(terminal);
+        if (rule == null || !rule.active || t == null || t >= rule.row.length
+                || rule.row[t] == LL1Table.NO_PRODUCTION) {
+            return null;
+        }
+        return String.join(" ", rules.get(nonTerminal).get(rule.row[t]));
+    }
+
+    // Snapshot of the current state as a table that can validate input.
+    public CompiledGrammar compile() {
+        return compile(CompiledGrammar.DEFAULT_LOOKAHEAD);
+    }
+
+    // As CompiledGrammar.compile, conflicts are resolved with up to maxLookahead tokens.
+    public CompiledGrammar compile(int maxLookahead) {
+        int[] terminalMap = new int[terminalNames.size()];
+        List<String> symbols = new ArrayList<>();
+        Set<String> terminals = new LinkedHashSet<>();
+        for (int t = 0; t < terminalNames.size(); t++) {
+            terminalMap[t] = LL1Table.UNKNOWN_SYMBOL;
+            if (t == LL1Table.END_MARKER || terminalUses[t] > 0) {
+                terminalMap[t] = symbols.size();
+                symbols.add(terminalNames.get(t));
+                if (t != LL1Table.END_MARKER) {
+                    terminals.add(terminalNames.get(t));
+                }
+            }
+        }
+        int terminalCount = symbols.size();
+        List<Rule> order = new ArrayList<>();
+        int[] nonTerminalMap = new int[nonTerminals.size()];
+        int productionCount = 0;
+        for (String head : rules.keySet()) {
+            Rule rule = nonTerminalIds.get(head);
+            nonTerminalMap[rule.id] = symbols.size();
+            symbols.add(head);
+            order.add(rule);
+            productionCount += rule.bodies.size();
+        }
+
+        int[] productionHead = new int[productionCount];
+        int[][] productionBody = new int[productionCount][];
+        String[] productionText = new String[productionCount];
+        PackedTable.Builder table = new PackedTable.Builder(order.size(), terminalCount);
+        int[] cells = new int[terminalCount];
+        Map<String, Set<String>> first = new LinkedHashMap<>();
+        Map<String, Set<String>> follow = new LinkedHashMap<>();
+        List<Long> conflicts = new ArrayList<>();
+        int p = 0;
+        for (int n = 0; n < order.size(); n++) {
+            Rule rule = order.get(n);
+            int base = p;
+            List<List<String>> productions = rules.get(rule.name);
+            for (int alternative = 0; alternative < rule.bodies.size(); alternative++, p++) {
+                int[] body = rule.bodies.get(alternative).clone();
+                for (int i = 0; i < body.length; i++) {
+                    body[i] = body[i] >= 0 ? terminalMap[body[i]] : nonTerminalMap[~body[i]];
+                }
+                productionHead[p] = terminalCount + n;
+                productionBody[p] = body;
+                productionText[p] = String.join(" ", productions.get(alternative));
+            }
+            int row = n * terminalCount;
+            Arrays.fill(cells, LL1Table.NO_PRODUCTION);
+            for (int t = 0; t < rule.row.length; t++) {
+                if (rule.row[t] != LL1Table.NO_PRODUCTION) {
+                    cells[terminalMap[t]] = base + rule.row[t];
+                }
+            }
+            table.addRow(cells);
+            if (!rule.conflicts.isEmpty()) {
+                addConflicts(rule, base, row, terminalMap, conflicts);
+            }
+            first.put(rule.name, Collections.unmodifiableSet(getFirst(rule.name)));
+            follow.put(rule.name, Collections.unmodifiableSet(getFollow(rule.name)));
+        }
+
+        LL1Table compiled = new LL1Table(symbols.toArray(new String[0]), terminalCount,
+                                         nonTerminalMap[nonTerminalIds.get(startSymbol).id], productionHead,
+                                         productionBody, productionText, table.build(), isLL1(),
+                                         isLL1() ? null : LookaheadDecisions.unresolved(
+                                                 conflicts.stream().mapToLong(Long::longValue).toArray(),
+                                                 conflicts.size(), terminalCount));
+        compiled = LookaheadAnalysis.resolve(compiled, maxLookahead);
+        return new CompiledGrammar(compiled, startSymbol, new LinkedHashSet<>(rules.keySet()), terminals,
+                                   first, follow, GrammarFile.sourceChecksum(rules, startSymbol));
+    }
+
+    // Every alternative predicting each conflicting cell of the rule, as pairs of
+    // the cell's index in the compiled table and the production.
+    private void addConflicts(Rule rule, int base, int row, int[] terminalMap, List<Long> conflicts) {
+        BitSet predict = new BitSet();
+        for (int alternative = 0; alternative < rule.bodies.size(); alternative++) {
+            predict.clear();
+            if (firstOf(rule.bodies.get(alternative), 0, predict)) {
+                predict.or(rule.follow);
+            }
+            predict.and(rule.conflicts);
+            for (int t = predict.nextSetBit(0); t >= 0; t = predict.nextSetBit(t + 1)) {
+                conflicts.add((long) (row + terminalMap[t]) << 32 | (base + alternative));
+            }
+        }
+    }
+
+    // A name that gains its first production while used as a terminal, or loses
+    // its last one while still referenced, changes every body that mentions it;
+    // that is rare enough to simply reanalyze the whole grammar.
+    private boolean changesSymbolKinds(Map<String, List<List<String>>> edited) {
+        for (Map.Entry<String, List<List<String>>> entry : edited.entrySet()) {
+            String name = entry.getKey();
+            boolean before = rules.containsKey(name);
+            boolean after = !entry.getValue().isEmpty();
+            if (!before && after) {
+                Integer t = terminalIds.get(name);
+                if (t != null && terminalUses[t] > 0) {
+                    return true;
+                }
+            } else if (before && !after && isReferenced(name, edited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isReferenced(String name, Map<String, List<List<String>>> edited) {
+        for (int user : nonTerminalIds.get(name).users.keySet()) {
+            if (!edited.containsKey(nonTerminals.get(user).name)) {
+                return true;
+            }
+        }
+        for (List<List<String>> productions : edited.values()) {
+            for (List<String> production : productions) {
+                if (production.contains(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Set<String> rebuild() {
+        terminalNames.clear();
+        terminalIds.clear();
+        terminalUses = new int[16];
+        nonTerminals.clear();
+        nonTerminalIds.clear();
+        conflictRows = 0;
+        terminal("$");
+        for (String head : rules.keySet()) {
+            rule(head);
+        }
+        for (Map.Entry<String, List<List<String>>> entry : rules.entrySet()) {
+            setProductions(nonTerminalIds.get(entry.getKey()), entry.getValue(), null);
+        }
+        Set<Rule> all = new LinkedHashSet<>(nonTerminals);
+        recomputeNullable(all);
+        recomputeFirst(all);
+        recomputeFollow(all);
+        for (Rule rule : all) {
+            rebuildRow(rule);
+        }
+        return new LinkedHashSet<>(rules.keySet());
+    }
+
+    private int terminal(String name) {
+        Integer id = terminalIds.get(name);
+        if (id == null) {
+            id = terminalNames.size();
+            terminalNames.add(name);
+            terminalIds.put(name, id);
+            if (id == terminalUses.length) {
+                terminalUses = Arrays.copyOf(terminalUses, id * 2);
+            }
+        }
+        return id;
+    }
+
+    private Rule rule(String name) {
+        Rule rule = nonTerminalIds.get(name);
+        if (rule == null) {
+            rule = new Rule(nonTerminals.size(), name);
+            nonTerminals.add(rule);
+            nonTerminalIds.put(name, rule);
+        }
+        rule.active = true;
+        return rule;
+    }
+
+    private Rule activeRule(String name) {
+        Rule rule = nonTerminalIds.get(name);
+        if (rule == null || !rule.active) {
+            throw new IllegalArgumentException(name + " is not a nonterminal");
+        }
+        return rule;
+    }
+
+    // Bodies hold terminal ids as is and nonterminal ids complemented.
+    private void setProductions(Rule rule, List<List<String>> productions, Set<Rule> occurring) {
+        for (int[] body : rule.bodies) {
+            for (int symbol : body) {
+                if (symbol >= 0) {
+                    terminalUses[symbol]--;
+                } else {
+                    nonTerminals.get(~symbol).users.computeIfPresent(rule.id, (user, count) -> count > 1 ? count - 1 : null);
+                }
+            }
+            if (occurring != null) {
+                addNonTerminals(body, occurring);
+            }
+        }
+        rule.bodies.clear();
+        for (List<String> production : productions) {
+            int[] body = production.stream()
+                    .filter(symbol -> !symbol.equals(Grammar.EPSILON))
+                    .mapToInt(symbol -> rules.containsKey(symbol) ? ~rule(symbol).id : terminal(symbol))
+                    .toArray();
+            for (int symbol : body) {
+                if (symbol >= 0) {
+                    terminalUses[symbol]++;
+                } else {
+                    nonTerminals.get(~symbol).users.merge(rule.id, 1, Integer::sum);
+                }
+            }
+            if (occurring != null) {
+                addNonTerminals(body, occurring);
+            }
+            rule.bodies.add(body);
+        }
+    }
+
+    private void deactivate(Rule rule) {
+        if (!rule.conflicts.isEmpty()) {
+            conflictRows--;
+        }
+        rule.active = false;
+        rule.nullable = false;
+        rule.first.clear();
+        rule.follow.clear();
+        rule.conflicts.clear();
+        rule.row = new int[0];
+    }
+
+    private void addNonTerminals(int[] body, Set<Rule> into) {
+        for (int symbol : body) {
+            if (symbol < 0) {
+                into.add(nonTerminals.get(~symbol));
+            }
+        }
+    }
+
+    private void addUsers(Rule rule, Set<Rule> into) {
+        for (int user : rule.users.keySet()) {
+            into.add(nonTerminals.get(user));
+        }
+    }
+
+    // Rules whose nullability can depend on a seed: only bodies made of
+    // nonterminals alone can make their head nullable.
+    private Set<Rule> nullableCone(Set<Rule> seeds) {
+        Set<Rule> cone = new LinkedHashSet<>(seeds);
+        Deque<Rule> pending = new ArrayDeque<>(seeds);
+        while (!pending.isEmpty()) {
+            Rule rule = pending.pop();
+            for (int id : rule.users.keySet()) {
+                Rule user = nonTerminals.get(id);
+                if (!cone.contains(user) && hasNonTerminalOnlyBody(user, rule)) {
+                    cone.add(user);
+                    pending.push(user);
+                }
+            }
+        }
+        return cone;
+    }
+
+    private Set<Rule> recomputeNullable(Set<Rule> cone) {
+        Set<Rule> wasNullable = new HashSet<>();
+        for (Rule rule : cone) {
+            if (rule.nullable) {
+                wasNullable.add(rule);
+            }
+            rule.nullable = false;
+        }
+        boolean updated;
+        do {
+            updated = false;
+            for (Rule rule : cone) {
+                if (!rule.nullable && hasNullableBody(rule)) {
+                    rule.nullable = true;
+                    updated = true;
+                }
+            }
+        } while (updated);
+
+        Set<Rule> changed = new LinkedHashSet<>();
+        for (Rule rule : cone) {
+            if (rule.nullable != wasNullable.contains(rule)) {
+                changed.add(rule);
+            }
+        }
+        return changed;
+    }
+
+    // FIRST(rule) flows into the FIRST set of every rule it is a left corner of.
+    private Set<Rule> recomputeFirst(Set<Rule> seeds) {
+        return settle(seeds, rule -> rule.first, rule -> {
+            List<Rule> users = new ArrayList<>();
+            for (int id : rule.users.keySet()) {
+                Rule user = nonTerminals.get(id);
+                if (isLeftCorner(user, rule)) {
+                    users.add(user);
+                }
+            }
+            return users;
+        }, rule -> {
+            for (int[] body : rule.bodies) {
+                for (int symbol : body) {
+                    if (symbol >= 0) {
+                        rule.first.set(symbol);
+                        break;
+                    }
+                    Rule corner = nonTerminals.get(~symbol);
+                    if (!sameComponent(corner, rule)) {
+                        rule.first.or(corner.first);
+                    }
+                    if (!corner.nullable) {
+                        break;
+                    }
+                }
+            }
+        });
+    }
+
+    // FOLLOW(rule) flows into the FOLLOW set of every nonterminal that ends one of
+    // its productions up to a nullable suffix.
+    private Set<Rule> recomputeFollow(Set<Rule> seeds) {
+        return settle(seeds, rule -> rule.follow, rule -> {
+            List<Rule> last = new ArrayList<>();
+            for (int[] body : rule.bodies) {
+                for (int i = body.length - 1; i >= 0 && body[i] < 0; i--) {
+                    Rule symbol = nonTerminals.get(~body[i]);
+                    last.add(symbol);
+                    if (!symbol.nullable) {
+                        break;
+                    }
+                }
+            }
+            return last;
+        }, rule -> {
+            if (rule.name.equals(startSymbol)) {
+                rule.follow.set(LL1Table.END_MARKER);
+            }
+            for (int id : rule.users.keySet()) {
+                Rule user = nonTerminals.get(id);
+                for (int[] body : user.bodies) {
+                    for (int i = 0; i < body.length; i++) {
+                        if (body[i] != ~rule.id) {
+                            continue;
+                        }
+                        boolean tailNullable = firstOf(body, i + 1, rule.follow);
+                        if (tailNullable && !sameComponent(user, rule)) {
+                            rule.follow.or(user.follow);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    // Brings the sets reachable from the seeds back to their fixpoint. Sets only
+    // flow along successor edges, so the reachable rules are split into strongly
+    // connected components (which end up sharing one set) and visited in
+    // topological order. A component is only recomputed when it holds a seed or a
+    // set flowing into it changed, so an edit that does not change a set stops
+    // there. local adds everything but the flow from the rule's own component.
+    private Set<Rule> settle(Set<Rule> seeds, Function<Rule, BitSet> set,
+                             Function<Rule, List<Rule>> successors, Consumer<Rule> local) {
+        List<List<Rule>> components = stronglyConnected(seeds, successors);
+        Set<Rule> dirty = new HashSet<>(seeds);
+        Set<Rule> changed = new LinkedHashSet<>();
+        for (int c = components.size() - 1; c >= 0; c--) {
+            List<Rule> component = components.get(c);
+            boolean recompute = false;
+            for (Rule rule : component) {
+                recompute |= dirty.contains(rule);
+            }
+            if (!recompute) {
+                continue;
+            }
+            BitSet[] previous = new BitSet[component.size()];
+            for (int i = 0; i < previous.length; i++) {
+                previous[i] = (BitSet) set.apply(component.get(i)).clone();
+                set.apply(component.get(i)).clear();
+            }
+            BitSet shared = new BitSet();
+            for (Rule rule : component) {
+                local.accept(rule);
+                shared.or(set.apply(rule));
+            }
+            boolean componentChanged = false;
+            for (int i = 0; i < previous.length; i++) {
+                Rule rule = component.get(i);
+                set.apply(rule).or(shared);
+                if (!set.apply(rule).equals(previous[i])) {
+                    changed.add(rule);
+                    componentChanged = true;
+                }
+            }
+            if (componentChanged) {
+                for (Rule rule : component) {
+                    dirty.addAll(rule.successors);
+                }
+            }
+        }
+        return changed;
+    }
+
+    // Tarjan's algorithm without recursion. Components come out in reverse
+    // topological order; each rule's component field is set to its component's
+    // index and its successors are kept for settle.
+    private List<List<Rule>> stronglyConnected(Set<Rule> seeds, Function<Rule, List<Rule>> successors) {
+        int generation = ++visitGeneration;
+        List<List<Rule>> components = new ArrayList<>();
+        Deque<Rule> stack = new ArrayDeque<>();
+        Deque<Rule> calls = new ArrayDeque<>();
+        int counter = 0;
+        for (Rule root : seeds) {
+            if (root.visited == generation) {
+                continue;
+            }
+            root.visit(generation, counter++, successors.apply(root));
+            stack.push(root);
+            calls.push(root);
+            while (!calls.isEmpty()) {
+                Rule rule = calls.peek();
+                if (rule.nextSuccessor < rule.successors.size()) {
+                    Rule next = rule.successors.get(rule.nextSuccessor++);
+                    if (next.visited != generation) {
+                        next.visit(generation, counter++, successors.apply(next));
+                        stack.push(next);
+                        calls.push(next);
+                    } else if (next.onStack) {
+                        rule.lowLink = Math.min(rule.lowLink, next.index);
+                    }
+                    continue;
+                }
+                calls.pop();
+                if (!calls.isEmpty()) {
+                    calls.peek().lowLink = Math.min(calls.peek().lowLink, rule.lowLink);
+                }
+                if (rule.lowLink == rule.index) {
+                    List<Rule> component = new ArrayList<>();
+                    Rule member;
+                    do {
+                        member = stack.pop();
+                        member.onStack = false;
+                        member.component = components.size();
+                        component.add(member);
+                    } while (member != rule);
+                    components.add(component);
+                }
+            }
+        }
+        return components;
+    }
+
+    private void rebuildRow(Rule rule) {
+        boolean hadConflicts = !rule.conflicts.isEmpty();
+        rule.conflicts.clear();
+        rule.row = new int[terminalNames.size()];
+        Arrays.fill(rule.row, LL1Table.NO_PRODUCTION);
+        BitSet predict = new BitSet();
+        for (int alternative = 0; alternative < rule.bodies.size(); alternative++) {
+            predict.clear();
+            if (firstOf(rule.bodies.get(alternative), 0, predict)) {
+                predict.or(rule.follow);
+            }
+            for (int t = predict.nextSetBit(0); t >= 0; t = predict.nextSetBit(t + 1)) {
+                if (rule.row[t] == LL1Table.NO_PRODUCTION) {
+                    rule.row[t] = alternative;
+                } else {
+                    rule.conflicts.set(t);
+                }
+            }
+        }
+        conflictRows += (rule.conflicts.isEmpty() ? 0 : 1) - (hadConflicts ? 1 : 0);
+    }
+
+    // FIRST of body[from..]; returns true when that suffix is nullable.
+    private boolean firstOf(int[] body, int from, BitSet into) {
+        for (int i = from; i < body.length; i++) {
+            if (body[i] >= 0) {
+                into.set(body[i]);
+                return false;
+            }
+            Rule rule = nonTerminals.get(~body[i]);
+            into.or(rule.first);
+            if (!rule.nullable) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean sameComponent(Rule a, Rule b) {
+        return a.visited == visitGeneration && b.visited == visitGeneration && a.component == b.component;
+    }
+
+    private boolean hasNullableBody(Rule rule) {
+        for (int[] body : rule.bodies) {
+            boolean nullable = true;
+            for (int symbol : body) {
+                if (symbol >= 0 || !nonTerminals.get(~symbol).nullable) {
+                    nullable = false;
+                    break;
+                }
+            }
+            if (nullable) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasNonTerminalOnlyBody(Rule user, Rule rule) {
+        for (int[] body : user.bodies) {
+            boolean onlyNonTerminals = true;
+            boolean mentions = false;
+            for (int symbol : body) {
+                onlyNonTerminals &= symbol < 0;
+                mentions |= symbol == ~rule.id;
+            }
+            if (onlyNonTerminals && mentions) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isLeftCorner(Rule user, Rule rule) {
+        for (int[] body : user.bodies) {
+            for (int symbol : body) {
+                if (symbol == ~rule.id) {
+                    return true;
+                }
+                if (symbol >= 0 || !nonTerminals.get(~symbol).nullable) {
+                    break;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Set<String> toNames(BitSet terminals) {
+        Set<String> names = new LinkedHashSet<>();
+        for (int t = terminals.nextSetBit(0); t >= 0; t = terminals.nextSetBit(t + 1)) {
+            names.add(terminalNames.get(t));
+        }
+        return names;
+    }
+
+    private static final class Rule {
+        final int id;
+        final String name;
+        final List<int[]> bodies = new ArrayList<>();
+        // Rules whose bodies mention this one, with the number of occurrences.
+        final Map<Integer, Integer> users = new HashMap<>();
+        final BitSet first = new BitSet();
+        final BitSet follow = new BitSet();
+        final BitSet conflicts = new BitSet();
+        boolean nullable;
+        boolean active;
+        int[] row = new int[0];
+
+        // Scratch state of stronglyConnected, valid while visited is the current
+        // generation.
+        int visited;
+        int index;
+        int lowLink;
+        int component;
+        boolean onStack;
+        List<Rule> successors;
+        int nextSuccessor;
+
+        Rule(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        void visit(int generation, int order, List<Rule> successors) {
+            this.visited = generation;
+            this.index = order;
+            this.lowLink = order;
+            this.onStack = true;
+            this.successors = successors;
+            this.nextSuccessor = 0;
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package LL1;
+import grammar.Grammar;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+// Versioned binary image of a CompiledGrammar. All sections are little-endian and
+// 8-byte aligned, and the parse table comes first, so loading maps the file and
+// hands the table sections to LL1Table as IntBuffers without copying them. Only
+// the small parts (productions, FIRST/FOLLOW bits, names) are decoded.
+//
+//   header   magic, version, flags, terminal/symbol/production counts, start id,
+//            body length, source checksum (long), payload CRC32C, decisions
+//            length, table slot count S
+//   int[N]    parse table row defaults
+//   int[N]    parse table row bases
+//   int[2S]   parse table slots, owner row and cell (see PackedTable)
+//   int[P]    production heads
+//   int[P+1]  body offsets into the bodies section
+//   int[B]    production bodies
+//   int[D]    conflicts and lookahead tries: node count, record count, nodes,
+//             records (see LookaheadDecisions); absent for an LL(1) table
+//   long[]    FIRST bits per nonterminal, bit T meaning epsilon
+//   long[]    FOLLOW bits per nonterminal
+//   names     symbol names then production texts, each as int length + UTF-8
+final class GrammarFile {
+    static final int MAGIC = 0x4C4C3154; // "LL1T"
+    static final int VERSION = 3;
+    private static final int HEADER_SIZE = 56;
+    private static final int FLAG_LL1 = 1;
+
+    private GrammarFile() {
+    }
+
+    static void write(CompiledGrammar grammar, Path file) throws IOException {
+        LL1Table table = grammar.getTable();
+        String[] symbols = table.getSymbols();
+        int terminalCount = table.getTerminalCount();
+        int nonTerminalCount = symbols.length - terminalCount;
+        int productionCount = table.getProductionCount();
+        int bodyLength = 0;
+        for (int p = 0; p < productionCount; p++) {
+            bodyLength += table.productionBody(p).length;
+        }
+        int words = setWords(terminalCount);
+        LookaheadDecisions decisions = table.getDecisions();
+        int[] nodes = decisions != null ? decisions.getNodes() : new int[0];
+        int[] records = decisions != null ? decisions.getConflictRecords() : new int[0];
+        int decisionsLength = decisions != null ? 2 + nodes.length + records.length : 0;
+
+        List<byte[]> names = new ArrayList<>();
+        for (String symbol : symbols) {
+            names.add(symbol.getBytes(StandardCharsets.UTF_8));
+        }
+        for (int p = 0; p < productionCount; p++) {
+            names.add(table.productionText(p).getBytes(StandardCharsets.UTF_8));
+        }
+        long namesSize = 0;
+        for (byte[] name : names) {
+            namesSize += 4 + name.length;
+        }
+
+        PackedTable cells = table.getCells();
+        int slotCount = cells.getSlotCount();
+        long size = HEADER_SIZE
+                + 2 * align(4L * nonTerminalCount)
+                + align(8L * slotCount)
+                + align(4L * productionCount)
+                + align(4L * (productionCount + 1))
+                + align(4L * bodyLength)
+                + align(4L * decisionsLength)
+                + 16L * nonTerminalCount * words
+                + namesSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Compiled grammar is too large to serialize (" + size + " bytes)");
+        }
+
+        ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        out.position(HEADER_SIZE);
+
+        for (IntBuffer section : List.of(cells.getDefaults(), cells.getBases(), cells.getSlots())) {
+            int length = section.remaining();
+            out.asIntBuffer().put(section);
+            out.position(out.position() + 4 * length);
+            pad(out);
+        }
+
+        for (int p = 0; p < productionCount; p++) {
+            out.putInt(table.productionHead(p));
+        }
+        pad(out);
+        int offset = 0;
+        for (int p = 0; p < productionCount; p++) {
+            out.putInt(offset);
+            offset += table.productionBody(p).length;
+        }
+        out.putInt(offset);
+        pad(out);
+        for (int p = 0; p < productionCount; p++) {
+            for (int symbol : table.productionBody(p)) {
+                out.putInt(symbol);
+            }
+        }
+        pad(out);
+        if (decisions != null) {
+            out.putInt(nodes.length).putInt(records.length);
+            out.asIntBuffer().put(nodes).put(records);
+            out.position(out.position() + 4 * (nodes.length + records.length));
+            pad(out);
+        }
+
+        for (Map<String, Set<String>> sets : List.of(grammar.getFirst(), grammar.getFollow())) {
+            for (int nt = terminalCount; nt < symbols.length; nt++) {
+                BitSet bits = new BitSet(terminalCount + 1);
+                for (String name : sets.get(symbols[nt])) {
+                    bits.set(name.equals(Grammar.EPSILON) ? terminalCount : table.terminalId(name));
+                }
+                long[] packed = Arrays.copyOf(bits.toLongArray(), words);
+                for (long word : packed) {
+                    out.putLong(word);
+                }
+            }
+        }
+
+        for (byte[] name : names) {
+            out.putInt(name.length);
+            out.put(name);
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(out.duplicate().position(HEADER_SIZE).limit((int) size));
+        out.position(0);
+        out.putInt(MAGIC)
+           .putInt(VERSION)
+           .putInt(table.isLL1() ? FLAG_LL1 : 0)
+           .putInt(terminalCount)
+           .putInt(symbols.length)
+           .putInt(productionCount)
+           .putInt(table.getStartSymbol())
+           .putInt(bodyLength)
+           .putLong(grammar.getSourceChecksum())
+           .putInt((int) crc.getValue())
+           .putInt(decisionsLength)
+           .putInt(slotCount);
+        out.rewind();
+
+        // Write next to the target and rename, so a concurrent reader never maps a
+        // half-written file.
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    // Reads only the header, so callers can check whether a file is stale without
+    // mapping or verifying the rest of it.
+    static long readSourceChecksum(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+        }
+        header.flip();
+        checkHeader(file, header);
+        return header.getLong(32);
+    }
+
+    static CompiledGrammar read(Path file) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not a compiled grammar file");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer in = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        checkHeader(file, in);
+
+        int flags = in.getInt(8);
+        int terminalCount = in.getInt(12);
+        int symbolCount = in.getInt(16);
+        int productionCount = in.getInt(20);
+        int startSymbol = in.getInt(24);
+        int bodyLength = in.getInt(28);
+        long sourceChecksum = in.getLong(32);
+        int payloadChecksum = in.getInt(40);
+        int decisionsLength = in.getInt(44);
+        int slotCount = in.getInt(48);
+        int nonTerminalCount = symbolCount - terminalCount;
+        if (terminalCount <= 0 || nonTerminalCount <= 0 || productionCount < 0 || bodyLength < 0
+                || startSymbol < terminalCount || startSymbol >= symbolCount || decisionsLength < 0
+                || slotCount < terminalCount || slotCount > Integer.MAX_VALUE / 2) {
+            throw new IOException(file + " has a corrupt header");
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(in.duplicate().position(HEADER_SIZE));
+        if ((int) crc.getValue() != payloadChecksum) {
+            throw new IOException(file + " is corrupt (checksum mismatch)");
+        }
+
+        try {
+            in.position(HEADER_SIZE);
+            IntBuffer defaults = mapInts(in, nonTerminalCount);
+            IntBuffer bases = mapInts(in, nonTerminalCount);
+            IntBuffer slots = mapInts(in, 2 * slotCount);
+            for (int r = 0; r < nonTerminalCount; r++) {
+                if (bases.get(r) < 0 || bases.get(r) > slotCount - terminalCount) {
+                    throw new IOException(file + " has a corrupt parse table");
+                }
+            }
+            PackedTable cells = new PackedTable(nonTerminalCount, terminalCount, defaults, bases, slots);
+
+            int[] productionHead = readInts(in, productionCount);
+            int[] offsets = readInts(in, productionCount + 1);
+            int[] bodies = readInts(in, bodyLength);
+            int[][] productionBody = new int[productionCount][];
+            for (int p = 0; p < productionCount; p++) {
+                productionBody[p] = Arrays.copyOfRange(bodies, offsets[p], offsets[p + 1]);
+                checkSymbols(file, productionBody[p], symbolCount);
+            }
+            checkSymbols(file, productionHead, symbolCount);
+            LookaheadDecisions decisions = null;
+            if (decisionsLength > 0) {
+                int[] section = readInts(in, decisionsLength);
+                int nodeCount = section[0];
+                int recordCount = section[1];
+                if (nodeCount < 0 || recordCount < 0 || 2 + nodeCount + recordCount != decisionsLength) {
+                    throw new IOException(file + " has a corrupt conflicts section");
+                }
+                decisions = new LookaheadDecisions(Arrays.copyOfRange(section, 2, 2 + nodeCount),
+                                                   Arrays.copyOfRange(section, 2 + nodeCount, decisionsLength));
+            }
+
+            int words = setWords(terminalCount);
+            long[][] first = readSets(in, nonTerminalCount, words);
+            long[][] follow = readSets(in, nonTerminalCount, words);
+
+            String[] symbols = new String[symbolCount];
+            for (int i = 0; i < symbolCount; i++) {
+                symbols[i] = readString(in);
+            }
+            String[] productionText = new String[productionCount];
+            for (int p = 0; p < productionCount; p++) {
+                productionText[p] = readString(in);
+            }
+
+            LL1Table table = new LL1Table(symbols, terminalCount, startSymbol, productionHead, productionBody,
+                                          productionText, cells, (flags & FLAG_LL1) != 0, decisions);
+            Set<String> nonTerminals = new LinkedHashSet<>();
+            Set<String> terminals = new LinkedHashSet<>();
+            for (int t = LL1Table.END_MARKER + 1; t < terminalCount; t++) {
+                terminals.add(symbols[t]);
+            }
+            for (int nt = terminalCount; nt < symbolCount; nt++) {
+                nonTerminals.add(symbols[nt]);
+            }
+            Map<String, Set<String>> firstSets = new SetsView(table, first);
+            Map<String, Set<String>> followSets = new SetsView(table, follow);
+            return new CompiledGrammar(table, symbols[startSymbol], nonTerminals, terminals,
+                                       firstSets, followSets, sourceChecksum);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException(file + " is truncated or corrupt", e);
+        }
+    }
+
+    // Stable over formatting and rule order, so equivalent grammar texts share one
+    // compiled file.
+    static long sourceChecksum(Map<String, List<List<String>>> rules, String startSymbol) {
+        return sourceChecksum(Grammar.of(rules), startSymbol);
+    }
+
+    static long sourceChecksum(Grammar grammar, String startSymbol) {
+        List<String> heads = new ArrayList<>(grammar.getNonTerminals());
+        Collections.sort(heads);
+        StringBuilder sb = new StringBuilder(startSymbol).append('\n');
+        for (String head : heads) {
+            sb.append(head).append(" ->");
+            String separator = " ";
+            int nt = grammar.symbolId(head);
+            for (int p = grammar.firstProduction(nt); p < grammar.firstProduction(nt + 1); p++) {
+                sb.append(separator).append(grammar.productionText(p));
+                separator = " | ";
+            }
+            sb.append('\n');
+        }
+        // 64-bit FNV-1a; a CRC's 32 bits are too few to key a shared cache directory.
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : sb.toString().getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static void checkHeader(Path file, ByteBuffer in) throws IOException {
+        if (in.limit() < HEADER_SIZE || in.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a compiled grammar file");
+        }
+        if (in.getInt(4) != VERSION) {
+            throw new IOException(file + " has unsupported format version " + in.getInt(4));
+        }
+    }
+
+    private static void checkSymbols(Path file, int[] ids, int symbolCount) throws IOException {
+        for (int id : ids) {
+            if (id < 0 || id >= symbolCount) {
+                throw new IOException(file + " refers to unknown symbol " + id);
+            }
+        }
+    }
+
+    // A view of the next count ints, without copying them.
+    private static IntBuffer mapInts(ByteBuffer in, int count) {
+        IntBuffer ints = in.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().limit(count).slice();
+        in.position(in.position() + (int) align(4L * count));
+        return ints;
+    }
+
+    private static int[] readInts(ByteBuffer in, int count) {
+        int[] values = new int[count];
+        in.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values);
+        in.position(in.position() + (int) align(4L * count));
+        return values;
+    }
+
+    private static long[][] readSets(ByteBuffer in, int count, int words) {
+        LongBuffer longs = in.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        long[][] sets = new long[count][words];
+        for (long[] set : sets) {
+            longs.get(set);
+        }
+        in.position(in.position() + 8 * count * words);
+        return sets;
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // FIRST/FOLLOW as name sets are only needed by the GUI and for inspection, so a
+    // loaded grammar decodes them from the stored bits on first access.
+    private static class SetsView extends AbstractMap<String, Set<String>> {
+        private final LL1Table table;
+        private final long[][] words;
+        private Set<Entry<String, Set<String>>> entries;
+
+        SetsView(LL1Table table, long[][] words) {
+            this.table = table;
+            this.words = words;
+        }
+
+        @Override
+        public Set<String> get(Object key) {
+            int nt = key instanceof String ? table.symbolId((String) key) : LL1Table.UNKNOWN_SYMBOL;
+            if (nt == LL1Table.UNKNOWN_SYMBOL || table.isTerminal(nt)) {
+                return null;
+            }
+            return toNames(words[nt - table.getTerminalCount()]);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return words.length;
+        }
+
+        @Override
+        public synchronized Set<Entry<String, Set<String>>> entrySet() {
+            if (entries == null) {
+                Map<String, Set<String>> decoded = new LinkedHashMap<>();
+                int terminalCount = table.getTerminalCount();
+                for (int nt = 0; nt < words.length; nt++) {
+                    decoded.put(table.symbolName(terminalCount + nt), toNames(words[nt]));
+                }
+                entries = Collections.unmodifiableMap(decoded).entrySet();
+            }
+            return entries;
+        }
+
+        private Set<String> toNames(long[] set) {
+            int terminalCount = table.getTerminalCount();
+            BitSet bits = BitSet.valueOf(set);
+            Set<String> names = new LinkedHashSet<>();
+            for (int t = bits.nextSetBit(0); t >= 0 && t < terminalCount; t = bits.nextSetBit(t + 1)) {
+                names.add(table.symbolName(t));
+            }
+            if (bits.get(terminalCount)) {
+                names.add(Grammar.EPSILON);
+            }
+            return Collections.unmodifiableSet(names);
+        }
+    }
+
+    private static int setWords(int terminalCount) {
+        return (terminalCount + 1 + 63) / 64;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static void pad(ByteBuffer out) {
+        while ((out.position() & 7) != 0) {
+            out.put((byte) 0);
+        }
+    }
+}
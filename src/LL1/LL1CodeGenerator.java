@@ -0,0 +1,244 @@
+package LL1;
+import engine.GeneratedParser;
+import engine.SourceCompiler;
+import java.util.*;
+
+// Emits a predictive parser specialized to one LL(1) table. Each table row becomes
+// a switch on the lookahead that pushes the predicted production's symbols as
+// constants, so parsing does no table or body lookups. Rows get a method each and
+// the row dispatch is split into blocks, which keeps every method small enough for
+// the JIT to compile and inline. Cells that need more lookahead become nested
+// switches on the following tokens.
+public final class LL1CodeGenerator {
+    private static final int ROWS_PER_BLOCK = 64;
+    private static int generated;
+
+    private LL1CodeGenerator() {
+    }
+
+    public static GeneratedParser compile(CompiledGrammar grammar) {
+        String className = "GeneratedLL1Parser" + nextId();
+        return SourceCompiler.instantiate(className, generateSource(grammar, className), GeneratedParser.class);
+    }
+
+    public static String generateSource(CompiledGrammar grammar, String className) {
+        LL1Table table = grammar.getTable();
+        int terminalCount = table.getTerminalCount();
+        int symbolCount = table.getSymbolCount();
+        int maxBody = 1;
+        for (int p = 0; p < table.getProductionCount(); p++) {
+            maxBody = Math.max(maxBody, table.productionBody(p).length);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        int dot = className.lastIndexOf('.');
+        if (dot > 0) {
+            sb.append("package ").append(className, 0, dot).append(";\n\n");
+        }
+        sb.append("// Generated LL(1) parser for start symbol ").append(SourceCompiler.comment(grammar.getStartSymbol()))
+          .append(". Do not edit.\n");
+        sb.append("public final class ").append(className.substring(dot + 1))
+          .append(" implements engine.GeneratedParser {\n");
+        sb.append("    private static final int TERMINALS = ").append(terminalCount).append(";\n");
+        sb.append("    private static final int START = ").append(table.getStartSymbol()).append(";\n");
+        sb.append("    private static final int MAX_BODY = ").append(maxBody).append(";\n");
+        sb.append("    private static final int SYMBOLS = ").append(symbolCount).append(";\n");
+        sb.append("    private static final int GUARD_AFTER = ").append(ExpansionGuard.GUARD_AFTER).append(";\n");
+        sb.append("    private static final String[] NAMES = {\n");
+        for (int t = 0; t < terminalCount; t++) {
+            sb.append("        ").append(SourceCompiler.quote(table.symbolName(t))).append(",\n");
+        }
+        sb.append("    };\n");
+        sb.append("    private static final java.util.Map<String, Integer> IDS = new java.util.HashMap<>();\n\n");
+        sb.append("    static {\n");
+        sb.append("        for (int i = 0; i < NAMES.length; i++) {\n");
+        sb.append("            IDS.put(NAMES[i], i);\n");
+        sb.append("        }\n");
+        sb.append("    }\n\n");
+
+        sb.append("    @Override\n");
+        sb.append("    public int terminalId(String token) {\n");
+        sb.append("        Integer id = IDS.get(token);\n");
+        sb.append("        return id != null ? id : -1;\n");
+        sb.append("    }\n\n");
+        sb.append("    @Override\n");
+        sb.append("    public int endMarker() {\n");
+        sb.append("        return ").append(LL1Table.END_MARKER).append(";\n");
+        sb.append("    }\n\n");
+        sb.append("    @Override\n");
+        sb.append("    public boolean validate(String input) {\n");
+        sb.append("        java.util.List<String> tokens = grammar.Grammar.tokens(input);\n");
+        sb.append("        int[] ids = new int[tokens.size() + 1];\n");
+        sb.append("        for (int i = 0; i < tokens.size(); i++) {\n");
+        sb.append("            ids[i] = terminalId(tokens.get(i));\n");
+        sb.append("        }\n");
+        sb.append("        ids[tokens.size()] = ").append(LL1Table.END_MARKER).append(";\n");
+        sb.append("        return validate(ids);\n");
+        sb.append("    }\n\n");
+
+        sb.append("    @Override\n");
+        sb.append("    public boolean validate(int[] tokens) {\n");
+        sb.append("        int[] stack = new int[16];\n");
+        sb.append("        int top = 0;\n");
+        sb.append("        stack[top++] = ").append(LL1Table.END_MARKER).append(";\n");
+        sb.append("        stack[top++] = START;\n");
+        sb.append("        int index = 0;\n");
+        // The same cycle check as ExpansionGuard: open[s] while s is on the chain
+        // of expansions since the last token, kept as symbol, position pairs.
+        sb.append("        int unmatched = 0;\n");
+        sb.append("        boolean[] open = null;\n");
+        sb.append("        int[] chain = null;\n");
+        sb.append("        int chained = 0;\n");
+        sb.append("        int token = tokens.length > 0 ? tokens[0] : ").append(LL1Table.END_MARKER).append(";\n");
+        sb.append("        while (top > 0) {\n");
+        sb.append("            int symbol = stack[--top];\n");
+        sb.append("            if (symbol < TERMINALS) {\n");
+        sb.append("                if (symbol != token) {\n");
+        sb.append("                    return false;\n");
+        sb.append("                }\n");
+        sb.append("                if (symbol == ").append(LL1Table.END_MARKER).append(") {\n");
+        sb.append("                    return true;\n");
+        sb.append("                }\n");
+        sb.append("                index++;\n");
+        sb.append("                token = index < tokens.length ? tokens[index] : ").append(LL1Table.END_MARKER).append(";\n");
+        sb.append("                while (chained > 0) {\n");
+        sb.append("                    chained -= 2;\n");
+        sb.append("                    open[chain[chained]] = false;\n");
+        sb.append("                }\n");
+        sb.append("                unmatched = 0;\n");
+        sb.append("                continue;\n");
+        sb.append("            }\n");
+        sb.append("            if (top + MAX_BODY > stack.length) {\n");
+        sb.append("                stack = java.util.Arrays.copyOf(stack, stack.length * 2 + MAX_BODY);\n");
+        sb.append("            }\n");
+        sb.append("            if (++unmatched > GUARD_AFTER) {\n");
+        sb.append("                if (open == null) {\n");
+        sb.append("                    open = new boolean[SYMBOLS];\n");
+        sb.append("                    chain = new int[32];\n");
+        sb.append("                }\n");
+        sb.append("                while (chained > 0 && chain[chained - 1] > top) {\n");
+        sb.append("                    chained -= 2;\n");
+        sb.append("                    open[chain[chained]] = false;\n");
+        sb.append("                }\n");
+        sb.append("                if (open[symbol]) {\n");
+        sb.append("                    return false;\n");
+        sb.append("                }\n");
+        sb.append("                if (chained == chain.length) {\n");
+        sb.append("                    chain = java.util.Arrays.copyOf(chain, chained * 2);\n");
+        sb.append("                }\n");
+        sb.append("                chain[chained++] = symbol;\n");
+        sb.append("                chain[chained++] = top;\n");
+        sb.append("                open[symbol] = true;\n");
+        sb.append("            }\n");
+        sb.append("            top = expand(symbol, token, stack, top, tokens, index);\n");
+        sb.append("            if (top < 0) {\n");
+        sb.append("                return false;\n");
+        sb.append("            }\n");
+        sb.append("        }\n");
+        sb.append("        return false;\n");
+        sb.append("    }\n\n");
+
+        // Returns the new stack top, or -1 when the row has no entry for token.
+        int blocks = (symbolCount - terminalCount + ROWS_PER_BLOCK - 1) / ROWS_PER_BLOCK;
+        sb.append("    private static int expand(int symbol, int token, int[] stack, int top, int[] tokens, int index) {\n");
+        sb.append("        switch ((symbol - TERMINALS) / ").append(ROWS_PER_BLOCK).append(") {\n");
+        for (int block = 0; block < blocks; block++) {
+            sb.append("            case ").append(block).append(":\n");
+            sb.append("                return expandBlock").append(block).append("(symbol, token, stack, top, tokens, index);\n");
+        }
+        sb.append("            default:\n");
+        sb.append("                return -1;\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+
+        for (int block = 0; block < blocks; block++) {
+            int first = terminalCount + block * ROWS_PER_BLOCK;
+            int last = Math.min(symbolCount, first + ROWS_PER_BLOCK);
+            sb.append("\n    private static int expandBlock").append(block)
+              .append("(int symbol, int token, int[] stack, int top, int[] tokens, int index) {\n");
+            sb.append("        switch (symbol) {\n");
+            for (int nt = first; nt < last; nt++) {
+                sb.append("            case ").append(nt).append(": // ")
+                  .append(SourceCompiler.comment(table.symbolName(nt))).append('\n');
+                sb.append("                return row").append(nt).append("(token, stack, top, tokens, index);\n");
+            }
+            sb.append("            default:\n");
+            sb.append("                return -1;\n");
+            sb.append("        }\n");
+            sb.append("    }\n");
+        }
+
+        for (int nt = terminalCount; nt < symbolCount; nt++) {
+            appendRow(sb, table, nt);
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static void appendRow(StringBuilder sb, LL1Table table, int nt) {
+        // Group the lookaheads by the cell they share: a production, in production
+        // order, or a lookahead decision.
+        Map<Integer, List<Integer>> lookaheads = new TreeMap<>();
+        for (int t = 0; t < table.getTerminalCount(); t++) {
+            int production = table.production(nt, t);
+            if (production != LL1Table.NO_PRODUCTION) {
+                lookaheads.computeIfAbsent(production, p -> new ArrayList<>()).add(t);
+            }
+        }
+
+        sb.append("\n    // ").append(SourceCompiler.comment(table.symbolName(nt))).append('\n');
+        sb.append("    private static int row").append(nt)
+          .append("(int token, int[] stack, int top, int[] tokens, int index) {\n");
+        if (lookaheads.isEmpty()) {
+            sb.append("        return -1;\n");
+            sb.append("    }\n");
+            return;
+        }
+        sb.append("        switch (token) {\n");
+        for (Map.Entry<Integer, List<Integer>> entry : lookaheads.entrySet()) {
+            for (int t : entry.getValue()) {
+                sb.append("            case ").append(t).append(":\n");
+            }
+            appendPrediction(sb, table, nt, entry.getKey(), 1, "                ");
+        }
+        sb.append("            default:\n");
+        sb.append("                return -1;\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+    }
+
+    // Pushes the production a cell predicts, choosing by the token depth places
+    // ahead while the cell is a lookahead decision.
+    private static void appendPrediction(StringBuilder sb, LL1Table table, int nt, int cell, int depth,
+                                         String indent) {
+        if (cell >= 0) {
+            int[] body = table.productionBody(cell);
+            sb.append(indent).append("// ").append(SourceCompiler.comment(table.symbolName(nt))).append(" -> ")
+              .append(SourceCompiler.comment(table.productionText(cell))).append('\n');
+            for (int i = 0; i < body.length; i++) {
+                sb.append(indent).append("stack[top").append(i == 0 ? "" : " + " + i).append("] = ")
+                  .append(body[body.length - 1 - i]).append(";\n");
+            }
+            sb.append(indent).append("return top").append(body.length == 0 ? "" : " + " + body.length).append(";\n");
+            return;
+        }
+        int[] nodes = table.getDecisions().getNodes();
+        int node = -2 - cell;
+        int n = nodes[node + 1];
+        sb.append(indent).append("switch (index + ").append(depth).append(" < tokens.length ? tokens[index + ")
+          .append(depth).append("] : ").append(LL1Table.END_MARKER).append(") {\n");
+        for (int i = 0; i < n; i++) {
+            sb.append(indent).append("    case ").append(nodes[node + 2 + i]).append(": {\n");
+            appendPrediction(sb, table, nt, nodes[node + 2 + n + i], depth + 1, indent + "        ");
+            sb.append(indent).append("    }\n");
+        }
+        sb.append(indent).append("    default: {\n");
+        appendPrediction(sb, table, nt, nodes[node], depth + 1, indent + "        ");
+        sb.append(indent).append("    }\n");
+        sb.append(indent).append("}\n");
+    }
+
+    private static synchronized int nextId() {
+        return generated++;
+    }
+}
@@ -1,28 +1,53 @@
 package LL1;
+import grammar.Grammar;
 import java.util.*;
 
 class LL1Parser {
-    private final Map<String, List<List<String>>> rules;
+    private final Grammar grammar;
     private final Set<String> nonTerminals;
     private final Set<String> terminals;
+    private final GrammarAnalysis analysis;
     private final Map<String, Set<String>> first;
     private final Map<String, Set<String>> follow;
 
     public LL1Parser(Map<String, List<List<String>>> rules, String startSymbol) {
-        this.rules = rules;
-        this.nonTerminals = rules.keySet();
+        this(Grammar.of(rules), startSymbol);
+    }
+
+    public LL1Parser(Grammar grammar, String startSymbol) {
+        int start = grammar.symbolId(startSymbol);
+        if (start < 0 || grammar.isTerminal(start)) {
+            throw new IllegalArgumentException("Start symbol " + startSymbol + " has no productions");
+        }
+        this.grammar = grammar;
+        this.nonTerminals = new LinkedHashSet<>(grammar.getNonTerminals());
         this.terminals = findTerminals();
+        this.analysis = new GrammarAnalysis(grammar);
         this.first = new HashMap<>();
         this.follow = new HashMap<>();
 
         for (String nt : nonTerminals) {
-            first.put(nt, new HashSet<>());
+            int id = analysis.symbolId(nt);
+            Set<String> firstSet = toNames(analysis.first(id));
+            if (analysis.isNullable(id)) {
+                firstSet.add(Grammar.EPSILON);
+            }
+            first.put(nt, firstSet);
             follow.put(nt, new HashSet<>());
         }
 
         follow.get(startSymbol).add("$");
     }
 
+    private Set<String> toNames(BitSet terminalIds) {
+        String[] symbols = analysis.getSymbols();
+        Set<String> names = new HashSet<>();
+        for (int t = terminalIds.nextSetBit(0); t >= 0; t = terminalIds.nextSetBit(t + 1)) {
+            names.add(symbols[t]);
+        }
+        return names;
+    }
+
     public Set<String> getNonTerminals() {
         return nonTerminals;
     }
@@ -36,17 +61,7 @@ class LL1Parser {
     }
 
     public Set<String> findTerminals() {
-        Set<String> terminals = new HashSet<>();
-        for (List<List<String>> productions : rules.values()) {
-            for (List<String> production : productions) {
-                for (String symbol : production) {
-                    if (!nonTerminals.contains(symbol) && !symbol.equals("epsilon")) {
-                        terminals.add(symbol);
-                    }
-                }
-            }
-        }
-        return terminals;
+        return new LinkedHashSet<>(grammar.getTerminals());
     }
 
     public Set<String> findFirst(String symbol) {
@@ -54,99 +69,66 @@ class LL1Parser {
             return new HashSet<>(Collections.singletonList(symbol));
         }
 
-        if (symbol.equals("epsilon")) {
-            return new HashSet<>(Collections.singletonList("epsilon"));
+        if (symbol.equals(Grammar.EPSILON)) {
+            return new HashSet<>(Collections.singletonList(Grammar.EPSILON));
         }
 
-        Set<String> firstSet = first.get(symbol);
-        if (!firstSet.isEmpty()) {
-            return firstSet;
-        }
+        return first.getOrDefault(symbol, Collections.emptySet());
+    }
 
-        for (List<String> production : rules.getOrDefault(symbol, Collections.emptyList())) {
-            for (String charSymbol : production) {
-                Set<String> charFirst = findFirst(charSymbol);
-                firstSet.addAll(charFirst);
-                firstSet.remove("epsilon");
-                if (!charFirst.contains("epsilon")) {
-                    break;
-                }
-            }
-            if (production.stream().allMatch(s -> findFirst(s).contains("epsilon"))) {
-                firstSet.add("epsilon");
-            }
+    public void computeFollow(String startSymbol) {
+        int start = analysis.symbolId(startSymbol);
+        if (start == LL1Table.UNKNOWN_SYMBOL || analysis.isTerminal(start)) {
+            throw new IllegalArgumentException("Start symbol " + startSymbol + " has no productions");
+        }
+        analysis.computeFollow(start);
+        for (String nt : nonTerminals) {
+            follow.put(nt, toNames(analysis.follow(analysis.symbolId(nt))));
         }
-
-        return firstSet;
     }
 
-    public void computeFollow(String startSymbol) {
-        boolean updated;
-        do {
-            updated = false;
-            for (String nt : nonTerminals) {
-                for (List<String> production : rules.get(nt)) {
-                    Set<String> trailer = new HashSet<>(follow.get(nt));
-                    for (int i = production.size() - 1; i >= 0; i--) {
-                        String symbol = production.get(i);
-                        if (nonTerminals.contains(symbol)) {
-                            if (follow.get(symbol).addAll(trailer)) {
-                                updated = true;
-                            }
-                            if (findFirst(symbol).contains("epsilon")) {
-                                trailer.addAll(first.get(symbol));
-                                trailer.remove("epsilon");
-                            } else {
-                                trailer = new HashSet<>(first.get(symbol));
-                            }
-                        } else {
-                            trailer = new HashSet<>(findFirst(symbol));
-                        }
-                    }
-                }
+    private Set<String> findFirst(List<String> production) {
+        Set<String> firstSet = new HashSet<>();
+        for (String symbol : production) {
+            Set<String> symbolFirst = findFirst(symbol);
+            firstSet.addAll(symbolFirst);
+            if (!symbolFirst.contains(Grammar.EPSILON)) {
+                firstSet.remove(Grammar.EPSILON);
+                break;
             }
-        } while (updated);
-
-        follow.get(startSymbol).add("$");
+        }
+        return firstSet;
     }
 
     public Map<String, Map<String, String>> generateParsingTable(String startSymbol) {
         computeFollow(startSymbol);
         Map<String, Map<String, String>> parsingTable = new HashMap<>();
+        Map<String, List<List<String>>> rules = grammar.toRules();
         boolean isValid = true;
 
         for (String nt : nonTerminals) {
             parsingTable.put(nt, new HashMap<>());
             for (List<String> production : rules.get(nt)) {
-                Set<String> firstSet = new HashSet<>();
+                Set<String> firstSet = findFirst(production);
                 boolean containsEpsilon = false;
 
-                for (String symbol : production) {
-                    Set<String> symbolFirst = findFirst(symbol);
-                    firstSet.addAll(symbolFirst);
-                    if (!symbolFirst.contains("epsilon")) {
-                        break;
-                    }
-                }
-
-                if (firstSet.contains("epsilon")) {
-                    firstSet.remove("epsilon");
+                if (firstSet.contains(Grammar.EPSILON)) {
+                    firstSet.remove(Grammar.EPSILON);
                     containsEpsilon = true;
                 }
 
+                // On a conflict the first production is kept, as in compileParsingTable.
                 for (String terminal : firstSet) {
-                    if (parsingTable.get(nt).containsKey(terminal)) {
+                    if (parsingTable.get(nt).putIfAbsent(terminal, String.join(" ", production)) != null) {
                         isValid = false;
                     }
-                    parsingTable.get(nt).put(terminal, String.join(" ", production));
                 }
 
                 if (containsEpsilon) {
                     for (String terminal : follow.get(nt)) {
-                        if (parsingTable.get(nt).containsKey(terminal)) {
+                        if (parsingTable.get(nt).putIfAbsent(terminal, Grammar.EPSILON) != null) {
                             isValid = false;
                         }
-                        parsingTable.get(nt).put(terminal, "epsilon");
                     }
                 }
             }
@@ -154,6 +136,71 @@ class LL1Parser {
         return parsingTable;
     }
 
+    public LL1Table compileParsingTable(String startSymbol) {
+        computeFollow(startSymbol);
+
+        int terminalCount = analysis.getTerminalCount();
+        int nonTerminalCount = analysis.getNonTerminalCount();
+        int[] productionHead = analysis.getProductionHead();
+        // Productions come grouped by head, so rows are filled one at a time and
+        // packed as they are done; the dense table never exists.
+        PackedTable.Builder table = new PackedTable.Builder(nonTerminalCount, terminalCount);
+        int[] row = new int[terminalCount];
+        Arrays.fill(row, LL1Table.NO_PRODUCTION);
+        int rowsDone = 0;
+        boolean isValid = true;
+
+        // A cell keeps the first production that predicts it; the others are
+        // recorded as a conflict, for LookaheadAnalysis to resolve or report.
+        long[] conflicts = new long[16];
+        int conflictCount = 0;
+        BitSet predict = new BitSet(terminalCount);
+        for (int p = 0; p < productionHead.length; p++) {
+            if ((p & 1023) == 0) {
+                GrammarAnalysis.checkInterrupted();
+            }
+            for (; rowsDone < productionHead[p] - terminalCount; rowsDone++) {
+                table.addRow(row);
+                Arrays.fill(row, LL1Table.NO_PRODUCTION);
+            }
+            int cell = rowsDone * terminalCount;
+            predict.clear();
+            if (analysis.firstOfBody(p, predict)) {
+                predict.or(analysis.follow(productionHead[p]));
+            }
+            for (int t = predict.nextSetBit(0); t >= 0; t = predict.nextSetBit(t + 1)) {
+                if (row[t] == LL1Table.NO_PRODUCTION) {
+                    row[t] = p;
+                } else {
+                    isValid = false;
+                    if (conflictCount + 2 > conflicts.length) {
+                        conflicts = Arrays.copyOf(conflicts, conflicts.length * 2);
+                    }
+                    conflicts[conflictCount++] = (long) (cell + t) << 32 | row[t];
+                    conflicts[conflictCount++] = (long) (cell + t) << 32 | p;
+                }
+            }
+        }
+        for (; rowsDone < nonTerminalCount; rowsDone++) {
+            table.addRow(row);
+            Arrays.fill(row, LL1Table.NO_PRODUCTION);
+        }
+
+        return new LL1Table(analysis.getSymbols(), terminalCount, analysis.symbolId(startSymbol),
+                            productionHead, analysis.getProductionBody(), analysis.getProductionText(),
+                            table.build(), isValid,
+                            isValid ? null : LookaheadDecisions.unresolved(conflicts, conflictCount, terminalCount));
+    }
+
+    public boolean validateString(List<String> tokens, LL1Table table, List<String> traceTable) {
+        TraceListener listener = traceTable != null ? new TraceTableListener(tokens, table, traceTable) : null;
+        return table.validate(table.encode(tokens), listener);
+    }
+
+    public boolean validateString(List<String> tokens, LL1Table table, TraceSink sink) {
+        return table.validate(table.encode(tokens), sink);
+    }
+
     public boolean validateString(List<String> tokens, Map<String, Map<String, String>> parsingTable, 
                                 String startSymbol, List<String> traceTable) {
         Stack<String> stack = new Stack<>();
@@ -186,7 +233,7 @@ class LL1Parser {
                 List<String> rhs = Arrays.asList(production.split(" "));
                 action = top + " -> " + production;
                 for (int i = rhs.size() - 1; i >= 0; i--) {
-                    if (!rhs.get(i).equals("epsilon")) {
+                    if (!rhs.get(i).equals(Grammar.EPSILON)) {
                         stack.push(rhs.get(i));
                     }
                 }
@@ -203,22 +250,10 @@ class LL1Parser {
     }
 
     private String formatTraceRow(String matched, String stack, String input, String action) {
-        return String.format("%-30s %-40s %-40s %-30s", 
-                             matched, stack, input, action);
-    }    
+        return TraceTableListener.formatTraceRow(matched, stack, input, action);
+    }
 
     public static Map<String, List<List<String>>> parseGrammar(String inputGrammar) {
-        Map<String, List<List<String>>> rules = new HashMap<>();
-        for (String line : inputGrammar.split("\n")) {
-            if (line.trim().isEmpty()) continue;
-            String[] parts = line.split("->");
-            String head = parts[0].trim();
-            List<List<String>> productions = new ArrayList<>();
-            for (String prod : parts[1].split("\\|")) {
-                productions.add(Arrays.asList(prod.trim().split(" ")));
-            }
-            rules.put(head, productions);
-        }
-        return rules;
+        return Grammar.parse(inputGrammar).toRules();
     }
 }
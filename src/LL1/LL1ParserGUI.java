@@ -1,16 +1,40 @@
 package LL1;
+import engine.SyntaxError;
+import grammar.Grammar;
+import lexer.Lexer;
 import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
 import java.awt.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class LL1ParserGUI {
-    private LL1Parser parser;
+    private static final int TRACE_STEPS = 50_000;
+
+    // The current table; once token scanning has been used it carries a lexer,
+    // built once per table.
+    private CompiledGrammar compiledGrammar;
+    // Why the current table's lexer could not be built, so validation does not
+    // try again; null when it was built or has not been tried.
+    private String lexerError;
+    private GrammarEditor grammarEditor;
     private JFrame frame;
     private JTextArea grammarInput;
     private JTextField startSymbolInput;
     private JTextArea outputArea;
     private JTextField inputStringField;
+    private JCheckBox scanTokensCheckBox;
+    private JTable parsingTableView;
+    private JList<String> traceView;
+    private JTabbedPane outputTabs;
+    private JProgressBar progressBar;
+    private JButton generateTableButton;
+    private JButton validateStringButton;
+    private JButton cancelButton;
+    private Task<?> currentTask;
 
     public LL1ParserGUI() {
         frame = new JFrame("LL(1) Parser");
@@ -34,22 +58,50 @@ public class LL1ParserGUI {
         mainPanel.add(grammarPanel, BorderLayout.NORTH);
 
         JPanel actionsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        JButton generateTableButton = new JButton("Generate Parsing Table");
+        generateTableButton = new JButton("Generate Parsing Table");
         generateTableButton.addActionListener(e -> generateParsingTable());
-        JButton validateStringButton = new JButton("Validate String");
+        validateStringButton = new JButton("Validate String");
         validateStringButton.addActionListener(e -> validateInputString());
+        cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+        cancelButton.addActionListener(e -> cancelCurrentTask());
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
 
         actionsPanel.add(generateTableButton);
         actionsPanel.add(new JLabel("Input String:"));
         inputStringField = new JTextField(20);
         actionsPanel.add(inputStringField);
+        scanTokensCheckBox = new JCheckBox("Tokens without spaces");
+        actionsPanel.add(scanTokensCheckBox);
         actionsPanel.add(validateStringButton);
+        actionsPanel.add(cancelButton);
+        actionsPanel.add(progressBar);
 
         mainPanel.add(actionsPanel, BorderLayout.CENTER);
 
+        // Tables and traces can have millions of cells or rows; JTable and JList
+        // only render the rows that are visible.
+        parsingTableView = new JTable();
+        parsingTableView.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        traceView = new JList<>();
+        traceView.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        traceView.setPrototypeCellValue(TraceTableListener.formatTraceRow("", "", "", ""));
+        JPanel tracePanel = new JPanel(new BorderLayout());
+        JLabel traceHeader = new JLabel(TraceTableListener.formatTraceRow("Matched", "Stack", "Input String", "Action"));
+        traceHeader.setFont(traceView.getFont());
+        tracePanel.add(traceHeader, BorderLayout.NORTH);
+        tracePanel.add(new JScrollPane(traceView), BorderLayout.CENTER);
+
         outputArea = new JTextArea(15, 60);
         outputArea.setEditable(false);
-        mainPanel.add(new JScrollPane(outputArea), BorderLayout.SOUTH);
+
+        outputTabs = new JTabbedPane();
+        outputTabs.setPreferredSize(new Dimension(780, 300));
+        outputTabs.addTab("Parsing Table", new JScrollPane(parsingTableView));
+        outputTabs.addTab("Trace Table", tracePanel);
+        outputTabs.addTab("Messages", new JScrollPane(outputArea));
+        mainPanel.add(outputTabs, BorderLayout.SOUTH);
 
         frame.add(mainPanel);
         frame.setVisible(true);
@@ -64,43 +116,72 @@ public class LL1ParserGUI {
             return;
         }
 
-        try {
-            Map<String, List<List<String>>> rules = LL1Parser.parseGrammar(grammar);
-            parser = new LL1Parser(rules, startSymbol);
-            Map<String, Map<String, String>> parsingTable = parser.generateParsingTable(startSymbol);
-
-            StringBuilder tableOutput = new StringBuilder();
-            tableOutput.append("Parsing Table:\n\n");
-
-            Set<String> terminals = parser.findTerminals();
-            terminals.add("$");
+        boolean scanTokens = scanTokensCheckBox.isSelected();
+        progressBar.setIndeterminate(true);
+        progressBar.setString("Generating parsing table...");
+        startTask(new Task<CompiledGrammar>() {
+            private String scanError;
 
-            tableOutput.append("\t");
-            for (String terminal : terminals) {
-                tableOutput.append(terminal).append("\t");
+            @Override
+            protected CompiledGrammar work() {
+                // Regenerating after an edit only reanalyses the rules that changed.
+                Map<String, List<List<String>>> rules = LL1Parser.parseGrammar(grammar);
+                try {
+                    if (grammarEditor == null || !grammarEditor.getStartSymbol().equals(startSymbol)) {
+                        grammarEditor = new GrammarEditor(rules, startSymbol);
+                    } else {
+                        grammarEditor.apply(GrammarDelta.between(grammarEditor.getRules(), rules));
+                    }
+                } catch (RuntimeException e) {
+                    grammarEditor = null;
+                    throw e;
+                }
+                CompiledGrammar compiled = grammarEditor.compile();
+                if (scanTokens) {
+                    try {
+                        return withScanner(compiled);
+                    } catch (IllegalArgumentException e) {
+                        // The table is still good for space-separated input.
+                        scanError = e.getMessage();
+                    }
+                }
+                return compiled;
             }
-            tableOutput.append("\n");
 
-            for (String nonTerminal : parser.getNonTerminals()) {
-                tableOutput.append(nonTerminal).append("\t");
-                for (String terminal : terminals) {
-                    String entry = parsingTable.getOrDefault(nonTerminal, new HashMap<>()).get(terminal);
-                    tableOutput.append(entry != null ? entry : "-").append("\t");
+            @Override
+            protected void report() {
+                try {
+                    compiledGrammar = get();
+                    lexerError = scanError;
+                    parsingTableView.setModel(new ParsingTableModel(compiledGrammar));
+                    outputTabs.setSelectedIndex(0);
+                    appendToOutputArea("Parsing table generated: " + compiledGrammar.getNonTerminals().size()
+                                       + " nonterminals, " + compiledGrammar.getTerminals().size() + " terminals"
+                                       + (compiledGrammar.isLL1() ? "." : " (grammar is not LL(1))."));
+                    for (Conflict conflict : compiledGrammar.getConflicts()) {
+                        appendToOutputArea("Conflict: " + conflict);
+                    }
+                    if (compiledGrammar.getLookahead() > 1) {
+                        appendToOutputArea("Parsing uses up to " + compiledGrammar.getLookahead()
+                                           + " tokens of lookahead.");
+                    }
+                    appendToOutputArea("Parse table: " + compiledGrammar.getTableStats());
+                    if (lexerError != null) {
+                        appendToOutputArea("Tokens cannot be scanned: " + lexerError);
+                    }
+                } catch (CancellationException e) {
+                    appendToOutputArea("Parsing table generation cancelled.");
+                } catch (InterruptedException | ExecutionException e) {
+                    appendToOutputArea("Error generating parsing table: " + causeOf(e).getMessage());
                 }
-                tableOutput.append("\n");
             }
-
-            appendToOutputArea(tableOutput.toString());
-        } catch (Exception e) {
-            appendToOutputArea("Error generating parsing table: " + e.getMessage());
-        }
+        });
     }
 
     private void validateInputString() {
         String inputString = inputStringField.getText().trim();
-        String startSymbol = startSymbolInput.getText().trim();
     
-        if (parser == null) {
+        if (compiledGrammar == null) {
             showAlert("Error", "Please generate the parsing table first.");
             return;
         }
@@ -110,24 +191,166 @@ public class LL1ParserGUI {
             return;
         }
     
-        List<String> tokens = Arrays.asList((inputString + " $").split(" "));
-        List<String> traceTable = new ArrayList<>();
-    
-        try {
-            Map<String, Map<String, String>> parsingTable = parser.generateParsingTable(startSymbol);
-            boolean isValid = parser.validateString(tokens, parsingTable, startSymbol, traceTable);
-    
-            appendToOutputArea("\nTrace Table:\n");
-            appendToOutputArea(String.format("%-30s %-40s %-40s %-30s\n", "Matched", "Stack", "Input String", "Action"));
-            appendToOutputArea("=".repeat(100) + "\n");
-            for (String step : traceTable) {
-                appendToOutputArea(step + "\n");
+        boolean scanTokens = scanTokensCheckBox.isSelected();
+        if (scanTokens && lexerError != null) {
+            appendToOutputArea("Tokens cannot be scanned: " + lexerError);
+            return;
+        }
+
+        CompiledGrammar grammar = compiledGrammar;
+        List<String> tokens = new ArrayList<>();
+        // Only the last steps are kept, as ints; rows are formatted as they scroll
+        // into view.
+        TraceRing trace = new TraceRing(TRACE_STEPS);
+        List<SyntaxError> errors = new ArrayList<>();
+
+        progressBar.setIndeterminate(false);
+        progressBar.setString(null);
+        startTask(new Task<Boolean>() {
+            private CompiledGrammar scanner;
+            private String scanError;
+
+            @Override
+            protected Boolean work() {
+                if (!scanTokens) {
+                    tokens.addAll(Grammar.tokens(inputString));
+                } else {
+                    scanner = grammar.getLexer() != null ? grammar : null;
+                    if (scanner == null) {
+                        try {
+                            scanner = withScanner(grammar);
+                        } catch (IllegalArgumentException e) {
+                            scanError = e.getMessage();
+                            return false;
+                        }
+                    }
+                    tokens.addAll(scanner.getLexer().tokenTexts(inputString));
+                }
+                tokens.add(Grammar.END_MARKER);
+                boolean valid = grammar.validate(tokens, (action, symbol, production, tokenIndex, token, stack,
+                                                          stackDepth) -> {
+                    if (isCancelled()) {
+                        throw new CancellationException();
+                    }
+                    trace.step(action, symbol, production, tokenIndex, token, stack, stackDepth);
+                    setProgress((int) Math.min(100, (long) tokenIndex * 100 / tokens.size()));
+                });
+                if (!valid) {
+                    // The trace stops at the first error; recovery finds the rest.
+                    errors.addAll(grammar.check(tokens));
+                }
+                return valid;
+            }
+
+            @Override
+            protected void report() {
+                // Keep what was built for the next validation, unless the table
+                // was regenerated meanwhile.
+                if (compiledGrammar == grammar) {
+                    if (scanner != null) {
+                        compiledGrammar = scanner;
+                    }
+                    if (scanError != null) {
+                        lexerError = scanError;
+                    }
+                }
+                if (scanError != null) {
+                    appendToOutputArea("Tokens cannot be scanned: " + scanError);
+                    return;
+                }
+                try {
+                    boolean isValid = get();
+                    traceView.setModel(new TraceListModel(trace, grammar, tokens));
+                    outputTabs.setSelectedIndex(1);
+                    appendToOutputArea(isValid ? "The string is VALID." : "The string is INVALID.");
+                    if (trace.size() < trace.getSteps()) {
+                        appendToOutputArea("Trace shows the last " + trace.size() + " of " + trace.getSteps()
+                                           + " steps.");
+                    }
+                    for (SyntaxError error : errors) {
+                        appendToOutputArea("  " + error.getMessage());
+                    }
+                } catch (CancellationException e) {
+                    appendToOutputArea("Validation cancelled.");
+                } catch (InterruptedException | ExecutionException e) {
+                    appendToOutputArea("Error validating string: " + causeOf(e).getMessage());
+                }
+            }
+        });
+    }
+
+    private void startTask(Task<?> task) {
+        currentTask = task;
+        generateTableButton.setEnabled(false);
+        validateStringButton.setEnabled(false);
+        cancelButton.setEnabled(true);
+        progressBar.setValue(0);
+        task.addPropertyChangeListener(event -> {
+            if ("progress".equals(event.getPropertyName())) {
+                progressBar.setValue((Integer) event.getNewValue());
+            }
+        });
+        task.execute();
+    }
+
+    private void cancelCurrentTask() {
+        if (currentTask != null) {
+            currentTask.cancel(true);
+            cancelButton.setEnabled(false);
+            progressBar.setString("Cancelling...");
+        }
+    }
+
+    private void finishTask() {
+        currentTask = null;
+        generateTableButton.setEnabled(true);
+        validateStringButton.setEnabled(true);
+        cancelButton.setEnabled(false);
+        progressBar.setIndeterminate(false);
+        progressBar.setString(null);
+        progressBar.setValue(0);
+    }
+
+    // A worker whose buttons only come back once it has really stopped. done()
+    // runs as soon as a task is cancelled, while an interrupted worker may still
+    // be inside the GrammarEditor, so finishTask() is left to whichever of the
+    // worker and done() claims the task first: the worker when it ran at all.
+    private abstract class Task<T> extends SwingWorker<T, Void> {
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        protected abstract T work() throws Exception;
+
+        // On the EDT, when the result or the cancellation is known.
+        protected abstract void report();
+
+        @Override
+        protected final T doInBackground() throws Exception {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                return work();
+            } finally {
+                SwingUtilities.invokeLater(LL1ParserGUI.this::finishTask);
             }
-    
-            appendToOutputArea(isValid ? "\nThe string is VALID." : "\nThe string is INVALID.");
-        } catch (Exception e) {
-            appendToOutputArea("Error validating string: " + e.getMessage());
         }
+
+        @Override
+        protected final void done() {
+            report();
+            if (claimed.compareAndSet(false, true)) {
+                finishTask();
+            }
+        }
+    }
+
+    // Terminals are matched by spelling, so tokens need no spaces between them.
+    private static CompiledGrammar withScanner(CompiledGrammar grammar) {
+        return grammar.withLexer(Lexer.forTerminals(grammar.getTerminals(), Map.of()));
+    }
+
+    private static Throwable causeOf(Exception e) {
+        return e.getCause() != null ? e.getCause() : e;
     }
     
     private void appendToOutputArea(String text) {
@@ -139,7 +362,71 @@ public class LL1ParserGUI {
         JOptionPane.showMessageDialog(frame, message, title, JOptionPane.ERROR_MESSAGE);
     }
 
+    private static class ParsingTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+
+        private final CompiledGrammar grammar;
+        private final String[] nonTerminals;
+        private final String[] terminals;
+
+        ParsingTableModel(CompiledGrammar grammar) {
+            this.grammar = grammar;
+            this.nonTerminals = grammar.getNonTerminals().toArray(new String[0]);
+            Set<String> columns = new LinkedHashSet<>(grammar.getTerminals());
+            columns.add("$");
+            this.terminals = columns.toArray(new String[0]);
+        }
+
+        @Override
+        public int getRowCount() {
+            return nonTerminals.length;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return terminals.length + 1;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return column == 0 ? "" : terminals[column - 1];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            if (column == 0) {
+                return nonTerminals[row];
+            }
+            String entry = grammar.getEntry(nonTerminals[row], terminals[column - 1]);
+            return entry != null ? entry : "-";
+        }
+    }
+
+    private static class TraceListModel extends AbstractListModel<String> {
+        private static final long serialVersionUID = 1L;
+
+        private final TraceRing trace;
+        private final CompiledGrammar grammar;
+        private final List<String> tokens;
+
+        TraceListModel(TraceRing trace, CompiledGrammar grammar, List<String> tokens) {
+            this.trace = trace;
+            this.grammar = grammar;
+            this.tokens = tokens;
+        }
+
+        @Override
+        public int getSize() {
+            return trace.size();
+        }
+
+        @Override
+        public String getElementAt(int index) {
+            return trace.get(index).format(grammar, tokens);
+        }
+    }
+
     public static void main(String[] args) {
         SwingUtilities.invokeLater(LL1ParserGUI::new);
     }
-}
\ No newline at end of file
+}
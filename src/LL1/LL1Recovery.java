@@ -0,0 +1,191 @@
+package LL1;
+import engine.ParseMetrics;
+import engine.SyntaxError;
+import java.io.IOException;
+import java.util.*;
+
+// Predictive parsing that carries on past syntax errors, so one pass over the
+// input reports all of them.
+//
+// Phrase level: a terminal on the stack that does not match the lookahead is
+// taken as missing and popped, unless the lookahead is not a terminal of the
+// grammar at all, in which case that token is dropped instead.
+// Panic mode: a nonterminal with no entry for the lookahead skips input until a
+// token it can start with, and is then expanded as usual, or one in its FOLLOW
+// set, and is then popped as if it had been parsed.
+//
+// Recovery never consumes more than one stack symbol or token per step, so the
+// pass stays linear. After an error nothing more is reported until a token past
+// it has been matched, which keeps the cascade from a single mistake, such as a
+// terminal taken as missing in front of a dropped token, down to one message.
+final class LL1Recovery {
+    private final LL1Table table;
+    private final BitSet[] follow;
+
+    LL1Recovery(LL1Table table, Map<String, Set<String>> followSets) {
+        this.table = table;
+        int terminalCount = table.getTerminalCount();
+        this.follow = new BitSet[table.getSymbolCount() - terminalCount];
+        for (int nt = terminalCount; nt < table.getSymbolCount(); nt++) {
+            BitSet set = new BitSet(terminalCount);
+            for (String terminal : followSets.getOrDefault(table.symbolName(nt), Set.of())) {
+                int id = table.terminalId(terminal);
+                if (id != LL1Table.UNKNOWN_SYMBOL) {
+                    set.set(id);
+                }
+            }
+            follow[nt - terminalCount] = set;
+        }
+    }
+
+    // text, when known, gives the original spelling of each token for messages.
+    List<SyntaxError> parse(TokenSource source, List<String> text, ParseMetrics metrics) throws IOException {
+        long started = metrics != null ? System.nanoTime() : 0;
+        int terminalCount = table.getTerminalCount();
+        List<SyntaxError> errors = new ArrayList<>();
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = LL1Table.END_MARKER;
+        stack[top++] = table.getStartSymbol();
+
+        LookaheadTokenSource lookahead = null;
+        LookaheadDecisions decisions = table.getDecisions();
+        if (decisions != null && decisions.hasNodes()) {
+            lookahead = new LookaheadTokenSource(source, decisions.getLookahead());
+            source = lookahead;
+        }
+
+        int index = 0;
+        int lastError = -1;
+        // Set by an error and cleared by matching a token past it; errors in
+        // between are the cascade of the first and are not reported.
+        boolean recovering = false;
+        int unmatched = 0;
+        int guarded = -1;
+        ExpansionGuard guard = null;
+        BitSet keys = new BitSet();
+        int token = source.next();
+        while (top > 0) {
+            int symbol = stack[--top];
+
+            if (symbol < terminalCount) {
+                if (symbol == token) {
+                    if (symbol == LL1Table.END_MARKER) {
+                        break;
+                    }
+                    if (index > lastError) {
+                        recovering = false;
+                    }
+                    index++;
+                    token = source.next();
+                    continue;
+                }
+                if (!recovering) {
+                    report(errors, index, token, text, List.of(table.symbolName(symbol)));
+                    lastError = index;
+                    recovering = true;
+                }
+                if (symbol == LL1Table.END_MARKER) {
+                    // The start symbol is complete but input is left; the rest is one error.
+                    while (token != LL1Table.END_MARKER) {
+                        index++;
+                        token = source.next();
+                    }
+                    break;
+                }
+                if (token == LL1Table.UNKNOWN_SYMBOL) {
+                    stack[top++] = symbol;
+                    index++;
+                    token = source.next();
+                }
+                continue;
+            }
+
+            int production = table.production(symbol, token);
+            if (production == LL1Table.NO_PRODUCTION) {
+                if (!recovering) {
+                    report(errors, index, token, text, expected(symbol));
+                    lastError = index;
+                    recovering = true;
+                }
+                BitSet synch = follow[symbol - terminalCount];
+                while (token != LL1Table.END_MARKER && (token == LL1Table.UNKNOWN_SYMBOL || !synch.get(token))
+                       && table.production(symbol, token) == LL1Table.NO_PRODUCTION) {
+                    index++;
+                    token = source.next();
+                }
+                production = table.production(symbol, token);
+                if (production == LL1Table.NO_PRODUCTION) {
+                    continue;
+                }
+            }
+            if (production < LL1Table.NO_PRODUCTION) {
+                // A later token that no candidate allows is reported where it
+                // is, with what the candidates expect there; the default the
+                // decision then picks fails on it again, as part of this error.
+                keys.clear();
+                int distance = decisions.mismatch(production, lookahead, keys);
+                if (distance > 0 && !recovering) {
+                    List<String> expected = new ArrayList<>();
+                    for (int t = keys.nextSetBit(0); t >= 0; t = keys.nextSetBit(t + 1)) {
+                        expected.add(table.symbolName(t));
+                    }
+                    report(errors, index + distance, lookahead.peek(distance), text, expected);
+                    lastError = index + distance;
+                    recovering = true;
+                }
+                production = decisions.predict(production, lookahead);
+            }
+            // Skipped tokens count as progress too, so the guard restarts
+            // whenever the index moves.
+            if (index != guarded) {
+                if (unmatched > ExpansionGuard.GUARD_AFTER) {
+                    guard.reset();
+                }
+                guarded = index;
+                unmatched = 0;
+            }
+            if (++unmatched > ExpansionGuard.GUARD_AFTER) {
+                if (guard == null) {
+                    guard = new ExpansionGuard();
+                }
+                if (!guard.expand(symbol, top)) {
+                    // A left-recursive or cyclic guess that would expand forever;
+                    // nothing after this token can be checked.
+                    if (!recovering) {
+                        report(errors, index, token, text, List.of());
+                    }
+                    break;
+                }
+            }
+            int[] rhs = table.productionBody(production);
+            if (top + rhs.length > stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + rhs.length));
+            }
+            for (int i = rhs.length - 1; i >= 0; i--) {
+                stack[top++] = rhs[i];
+            }
+        }
+
+        if (metrics != null) {
+            metrics.recordParse(System.nanoTime() - started, index, errors.isEmpty());
+        }
+        return errors;
+    }
+
+    private void report(List<SyntaxError> errors, int index, int token, List<String> text, List<String> expected) {
+        String found = text != null && index < text.size() ? text.get(index) : table.symbolName(token);
+        errors.add(new SyntaxError(index, found, expected));
+    }
+
+    // Terminals with an entry in the nonterminal's row, in id order.
+    private List<String> expected(int nonTerminal) {
+        List<String> names = new ArrayList<>();
+        for (int t = 0; t < table.getTerminalCount(); t++) {
+            if (table.production(nonTerminal, t) != LL1Table.NO_PRODUCTION) {
+                names.add(table.symbolName(t));
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,279 @@
+package LL1;
+import engine.ParseMetrics;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+class LL1Table {
+    static final int END_MARKER = 0;
+    static final int NO_PRODUCTION = -1;
+    static final int UNKNOWN_SYMBOL = -1;
+
+    private final String[] symbols;
+    private final Map<String, Integer> symbolIds;
+    private final int terminalCount;
+    private final int startSymbol;
+    private final int[] productionHead;
+    private final int[][] productionBody;
+    private final String[] productionText;
+    private final PackedTable table;
+    private final boolean ll1;
+    private final TerminalLookup terminalLookup;
+    private final LookaheadDecisions decisions;
+
+    LL1Table(String[] symbols, int terminalCount, int startSymbol, int[] productionHead,
+             int[][] productionBody, String[] productionText, int[] table, boolean ll1) {
+        this(symbols, terminalCount, startSymbol, productionHead, productionBody, productionText,
+             PackedTable.pack(table, symbols.length - terminalCount, terminalCount), ll1, null);
+    }
+
+    // The cells may live outside the heap, e.g. in a memory-mapped GrammarFile.
+    // decisions is null for an LL(1) table, otherwise it lists the conflicts and
+    // holds the lookahead tries that cells below NO_PRODUCTION refer to.
+    LL1Table(String[] symbols, int terminalCount, int startSymbol, int[] productionHead,
+             int[][] productionBody, String[] productionText, PackedTable table, boolean ll1,
+             LookaheadDecisions decisions) {
+        this.symbols = symbols;
+        this.terminalCount = terminalCount;
+        this.startSymbol = startSymbol;
+        this.productionHead = productionHead;
+        this.productionBody = productionBody;
+        this.productionText = productionText;
+        this.table = table;
+        this.ll1 = ll1;
+        this.decisions = decisions;
+        this.symbolIds = new HashMap<>();
+        for (int i = 0; i < symbols.length; i++) {
+            symbolIds.put(symbols[i], i);
+        }
+        this.terminalLookup = new TerminalLookup(symbols, terminalCount);
+    }
+
+    public int getStartSymbol() {
+        return startSymbol;
+    }
+
+    public int getTerminalCount() {
+        return terminalCount;
+    }
+
+    public int getSymbolCount() {
+        return symbols.length;
+    }
+
+    public int getProductionCount() {
+        return productionHead.length;
+    }
+
+    public boolean isLL1() {
+        return ll1;
+    }
+
+    public boolean isTerminal(int symbol) {
+        return symbol < terminalCount;
+    }
+
+    public String symbolName(int symbol) {
+        return symbol >= 0 && symbol < symbols.length ? symbols[symbol] : "?";
+    }
+
+    public int symbolId(String name) {
+        Integer id = symbolIds.get(name);
+        return id != null ? id : UNKNOWN_SYMBOL;
+    }
+
+    public int terminalId(String name) {
+        int id = symbolId(name);
+        return id != UNKNOWN_SYMBOL && isTerminal(id) ? id : UNKNOWN_SYMBOL;
+    }
+
+    TerminalLookup getTerminalLookup() {
+        return terminalLookup;
+    }
+
+    public int[] encode(List<String> tokens) {
+        int[] ids = new int[tokens.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = terminalId(tokens.get(i));
+        }
+        return ids;
+    }
+
+    // The cell for nonTerminal and terminal: a production, NO_PRODUCTION, or a
+    // lookahead decision to pass to predict().
+    public int production(int nonTerminal, int terminal) {
+        if (terminal < 0 || terminal >= terminalCount) {
+            return NO_PRODUCTION;
+        }
+        return table.get(nonTerminal - terminalCount, terminal);
+    }
+
+    // The same grammar with other cells, e.g. once its conflicts are resolved.
+    LL1Table withDecisions(PackedTable cells, LookaheadDecisions decisions) {
+        return new LL1Table(symbols, terminalCount, startSymbol, productionHead, productionBody, productionText,
+                            cells, ll1, decisions);
+    }
+
+    LookaheadDecisions getDecisions() {
+        return decisions;
+    }
+
+    List<Conflict> getConflicts() {
+        return decisions != null ? decisions.toConflicts(this) : List.of();
+    }
+
+    int getLookahead() {
+        return decisions != null ? decisions.getResolvedLookahead() : 1;
+    }
+
+    // Text of what a cell predicts; a lookahead decision lists its productions.
+    String cellText(int cell) {
+        if (cell == NO_PRODUCTION) {
+            return null;
+        }
+        if (cell >= 0) {
+            return productionText[cell];
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int production : decisions.productions(cell)) {
+            sb.append(sb.length() == 0 ? "" : " | ").append(productionText[production]);
+        }
+        return sb.toString();
+    }
+
+    String[] getSymbols() {
+        return symbols;
+    }
+
+    PackedTable getCells() {
+        return table;
+    }
+
+    TableStats getStats() {
+        return table.getStats();
+    }
+
+    public int productionHead(int production) {
+        return productionHead[production];
+    }
+
+    public int[] productionBody(int production) {
+        return productionBody[production];
+    }
+
+    public String productionText(int production) {
+        return productionText[production];
+    }
+
+    public boolean validate(int[] input) {
+        return validate(input, null);
+    }
+
+    public boolean validate(int[] input, TraceListener listener) {
+        return validate(input, listener, null);
+    }
+
+    public boolean validate(int[] input, TraceListener listener, ParseMetrics metrics) {
+        try {
+            return validate(new ArrayTokenSource(input), listener, metrics);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public boolean validate(TokenSource source, TraceListener listener) throws IOException {
+        return validate(source, listener, null);
+    }
+
+    // Pulls tokens one at a time, so memory use depends on the stack depth only,
+    // never on the length of the input. Expansions and the deepest stack are
+    // counted in locals and only published when metrics are attached.
+    public boolean validate(TokenSource source, TraceListener listener, ParseMetrics metrics) throws IOException {
+        long started = metrics != null ? System.nanoTime() : 0;
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = END_MARKER;
+        stack[top++] = startSymbol;
+
+        LookaheadTokenSource lookahead = null;
+        if (decisions != null && decisions.hasNodes()) {
+            lookahead = new LookaheadTokenSource(source, decisions.getLookahead());
+            source = lookahead;
+        }
+
+        int index = 0;
+        int expansions = 0;
+        int maxDepth = top;
+        int unmatched = 0;
+        ExpansionGuard guard = null;
+        boolean accepted = false;
+        int token = source.next();
+        while (top > 0) {
+            int symbol = stack[--top];
+
+            if (symbol == END_MARKER && token == END_MARKER) {
+                if (listener != null) {
+                    listener.step(TraceListener.ACCEPT, symbol, NO_PRODUCTION, index, token, stack, top);
+                }
+                accepted = true;
+                break;
+            }
+
+            if (symbol < terminalCount) {
+                if (symbol != token) {
+                    break;
+                }
+                if (listener != null) {
+                    listener.step(TraceListener.MATCH, symbol, NO_PRODUCTION, index, token, stack, top);
+                }
+                index++;
+                token = source.next();
+                if (unmatched > ExpansionGuard.GUARD_AFTER) {
+                    guard.reset();
+                }
+                unmatched = 0;
+                continue;
+            }
+
+            int production = production(symbol, token);
+            if (production < NO_PRODUCTION) {
+                production = decisions.predict(production, lookahead);
+            }
+            if (production == NO_PRODUCTION) {
+                break;
+            }
+            if (++unmatched > ExpansionGuard.GUARD_AFTER) {
+                if (guard == null) {
+                    guard = new ExpansionGuard();
+                }
+                if (!guard.expand(symbol, top)) {
+                    break;
+                }
+            }
+            int[] rhs = productionBody[production];
+            if (listener != null) {
+                listener.step(TraceListener.EXPAND, symbol, production, index, token, stack, top);
+            }
+            expansions++;
+            if (top + rhs.length > stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + rhs.length));
+            }
+            for (int i = rhs.length - 1; i >= 0; i--) {
+                stack[top++] = rhs[i];
+            }
+            if (top > maxDepth) {
+                maxDepth = top;
+            }
+        }
+
+        if (!accepted && listener != null) {
+            listener.step(TraceListener.ERROR, stack[top], NO_PRODUCTION, index, token, stack, top);
+        }
+        if (metrics != null) {
+            metrics.recordParse(System.nanoTime() - started, index, accepted);
+            metrics.recordExpansions(expansions);
+            metrics.recordStackDepth(maxDepth);
+        }
+        return accepted;
+    }
+}
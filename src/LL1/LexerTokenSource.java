@@ -0,0 +1,36 @@
+package LL1;
+import lexer.Lexer;
+import lexer.TokenScanner;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// Feeds the parser straight from a lexer's DFA: kinds map to terminal ids
+// through one array, without a String per token.
+final class LexerTokenSource implements TokenSource {
+    private final TokenScanner scanner;
+    private final int[] ids;
+
+    LexerTokenSource(TokenScanner scanner, int[] ids) {
+        this.scanner = scanner;
+        this.ids = ids;
+    }
+
+    @Override
+    public int next() throws IOException {
+        int kind;
+        try {
+            kind = scanner.next();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (kind >= 0) {
+            return ids[kind];
+        }
+        return kind == Lexer.END ? LL1Table.END_MARKER : LL1Table.UNKNOWN_SYMBOL;
+    }
+
+    @Override
+    public void close() throws IOException {
+        scanner.close();
+    }
+}
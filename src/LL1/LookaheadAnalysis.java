@@ -0,0 +1,258 @@
+package LL1;
+import java.util.*;
+
+// Strong LL(k) resolution of the conflicts in a table. For every conflicting cell
+// of nonterminal A and terminal t, each candidate production p predicts the
+// k-token sequences FIRST_k(body of p) + FOLLOW_k(A) that start with t; the cell
+// becomes a trie over those sequences that stops as soon as one production is
+// left, so each decision looks only as far ahead as it has to.
+//
+// A sequence is packed into a long, 16 bits per token holding terminal id + 1,
+// so k is at most 4. Sets are computed for the whole grammar, and their size can
+// grow with T^k; past BUDGET sequences the analysis gives up and the conflicts
+// stay unresolved, as they would be with k = 1. So does a table with more than
+// MAX_CONFLICTS conflicting cells, which is nowhere near LL(k) anyway.
+final class LookaheadAnalysis {
+    static final int MAX_LOOKAHEAD = 4;
+    private static final long BUDGET = 1 << 18;
+    private static final int MAX_CONFLICTS = 1 << 14;
+
+    private final LL1Table table;
+    private final int k;
+    private final int terminalCount;
+    private final List<Set<Long>> first = new ArrayList<>();
+    private final List<Set<Long>> follow = new ArrayList<>();
+    private long stored;
+    private int[] nodes = new int[64];
+    private int nodeCount;
+    private int deepest;
+    private boolean unresolved;
+
+    private LookaheadAnalysis(LL1Table table, int k) {
+        this.table = table;
+        this.k = k;
+        this.terminalCount = table.getTerminalCount();
+        for (int nt = terminalCount; nt < table.getSymbolCount(); nt++) {
+            first.add(new HashSet<>());
+            follow.add(new HashSet<>());
+        }
+    }
+
+    // Returns table with its conflicts resolved where up to maxLookahead tokens
+    // tell the candidates apart; an LL(1) table is returned as it is.
+    static LL1Table resolve(LL1Table table, int maxLookahead) {
+        if (maxLookahead < 1 || maxLookahead > MAX_LOOKAHEAD) {
+            throw new IllegalArgumentException("Lookahead must be between 1 and " + MAX_LOOKAHEAD);
+        }
+        LookaheadDecisions conflicts = table.getDecisions();
+        if (conflicts == null || maxLookahead == 1 || table.getTerminalCount() >= 0xFFFF
+                || conflicts.getConflictCount() > MAX_CONFLICTS) {
+            return table;
+        }
+        LookaheadAnalysis analysis = new LookaheadAnalysis(table, maxLookahead);
+        if (!analysis.computeFirst() || !analysis.computeFollow()) {
+            return table;
+        }
+        return analysis.build(conflicts.getConflictRecords());
+    }
+
+    private boolean computeFirst() {
+        int productionCount = table.getProductionCount();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < productionCount; p++) {
+                GrammarAnalysis.checkInterrupted();
+                Set<Long> into = first.get(table.productionHead(p) - terminalCount);
+                int before = into.size();
+                into.addAll(firstOf(table.productionBody(p), 0));
+                if (into.size() != before) {
+                    changed = true;
+                    stored += into.size() - before;
+                    if (stored > BUDGET) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean computeFollow() {
+        // FIRST_k of each suffix after a nonterminal does not change below, so it
+        // is worked out once: target, head, suffix set.
+        List<int[]> occurrences = new ArrayList<>();
+        List<Set<Long>> suffixes = new ArrayList<>();
+        for (int p = 0; p < table.getProductionCount(); p++) {
+            int[] body = table.productionBody(p);
+            for (int i = 0; i < body.length; i++) {
+                if (body[i] >= terminalCount) {
+                    occurrences.add(new int[] {body[i], table.productionHead(p)});
+                    suffixes.add(firstOf(body, i + 1));
+                }
+            }
+        }
+
+        follow.get(table.getStartSymbol() - terminalCount).add(append(0L, LL1Table.END_MARKER));
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < occurrences.size(); i++) {
+                GrammarAnalysis.checkInterrupted();
+                Set<Long> into = follow.get(occurrences.get(i)[0] - terminalCount);
+                int before = into.size();
+                into.addAll(concat(suffixes.get(i), follow.get(occurrences.get(i)[1] - terminalCount)));
+                if (into.size() != before) {
+                    changed = true;
+                    stored += into.size() - before;
+                    if (stored > BUDGET) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private LL1Table build(int[] records) {
+        int[] cells = new int[records.length];
+        int[] values = new int[records.length];
+        int changed = 0;
+        int[] resolved = records.clone();
+        for (int i = 0; i < records.length; i += 4 + records[i + 3]) {
+            int nonTerminal = records[i];
+            int terminal = records[i + 1];
+            List<Long> sequences = new ArrayList<>();
+            List<Integer> productions = new ArrayList<>();
+            Set<Long> context = follow.get(nonTerminal - terminalCount);
+            for (int j = 0; j < records[i + 3]; j++) {
+                int production = records[i + 4 + j];
+                for (long sequence : concat(firstOf(table.productionBody(production), 0), context)) {
+                    if (symbol(sequence, 0) == terminal) {
+                        sequences.add(sequence);
+                        productions.add(production);
+                    }
+                }
+            }
+            deepest = 1;
+            unresolved = false;
+            int cell = sequences.isEmpty() ? records[i + 4] : node(sequences, productions, 1);
+            cells[changed] = (nonTerminal - terminalCount) * terminalCount + terminal;
+            values[changed++] = cell;
+            resolved[i + 2] = unresolved ? 0 : deepest;
+        }
+
+        LookaheadDecisions decisions = new LookaheadDecisions(Arrays.copyOf(nodes, nodeCount), resolved);
+        // Records are in cell order, as the packed table wants them.
+        return table.withDecisions(table.getCells().with(Arrays.copyOf(cells, changed), Arrays.copyOf(values, changed)),
+                                   decisions);
+    }
+
+    // The cell value that picks among productions by the token at depth.
+    private int node(List<Long> sequences, List<Integer> productions, int depth) {
+        int lowest = Integer.MAX_VALUE;
+        boolean single = true;
+        for (int production : productions) {
+            single &= production == productions.get(0);
+            lowest = Math.min(lowest, production);
+        }
+        if (single) {
+            return lowest;
+        }
+        if (depth >= k || length(sequences.get(0)) <= depth) {
+            // Out of lookahead, or the sequences end here and are identical.
+            unresolved = true;
+            return lowest;
+        }
+        deepest = Math.max(deepest, depth + 1);
+
+        TreeMap<Integer, List<Integer>> byToken = new TreeMap<>();
+        for (int i = 0; i < sequences.size(); i++) {
+            byToken.computeIfAbsent(symbol(sequences.get(i), depth), token -> new ArrayList<>()).add(i);
+        }
+        int n = byToken.size();
+        int offset = reserve(2 + 2 * n);
+        nodes[offset] = lowest;
+        nodes[offset + 1] = n;
+        int key = 0;
+        for (Map.Entry<Integer, List<Integer>> entry : byToken.entrySet()) {
+            List<Long> childSequences = new ArrayList<>();
+            List<Integer> childProductions = new ArrayList<>();
+            for (int i : entry.getValue()) {
+                childSequences.add(sequences.get(i));
+                childProductions.add(productions.get(i));
+            }
+            nodes[offset + 2 + key] = entry.getKey();
+            int child = node(childSequences, childProductions, depth + 1);
+            nodes[offset + 2 + n + key] = child;
+            key++;
+        }
+        return -2 - offset;
+    }
+
+    private int reserve(int size) {
+        if (nodeCount + size > nodes.length) {
+            nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, nodeCount + size));
+        }
+        int offset = nodeCount;
+        nodeCount += size;
+        return offset;
+    }
+
+    // FIRST_k of body[from..], from the FIRST sets computed so far.
+    private Set<Long> firstOf(int[] body, int from) {
+        Set<Long> result = Set.of(0L);
+        for (int i = from; i < body.length && !allComplete(result); i++) {
+            int symbol = body[i];
+            result = concat(result, symbol < terminalCount ? Set.of(append(0L, symbol))
+                                                          : first.get(symbol - terminalCount));
+        }
+        return result;
+    }
+
+    // Every x + y cut to k tokens; sequences that are already complete stay as they are.
+    private Set<Long> concat(Set<Long> xs, Set<Long> ys) {
+        Set<Long> result = new HashSet<>();
+        for (long x : xs) {
+            if (isComplete(x)) {
+                result.add(x);
+                continue;
+            }
+            int length = length(x);
+            for (long y : ys) {
+                result.add(truncate(x | (y << (16 * length))));
+            }
+        }
+        return result;
+    }
+
+    private boolean allComplete(Set<Long> sequences) {
+        for (long sequence : sequences) {
+            if (!isComplete(sequence)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isComplete(long sequence) {
+        int length = length(sequence);
+        return length >= k || (length > 0 && symbol(sequence, length - 1) == LL1Table.END_MARKER);
+    }
+
+    private long truncate(long sequence) {
+        return k >= 4 ? sequence : sequence & ((1L << (16 * k)) - 1);
+    }
+
+    private static long append(long sequence, int terminal) {
+        return sequence | ((long) (terminal + 1) << (16 * length(sequence)));
+    }
+
+    private static int length(long sequence) {
+        return (64 - Long.numberOfLeadingZeros(sequence) + 15) / 16;
+    }
+
+    private static int symbol(long sequence, int index) {
+        return (int) ((sequence >>> (16 * index)) & 0xFFFF) - 1;
+    }
+}
@@ -0,0 +1,195 @@
+package LL1;
+import java.io.IOException;
+import java.util.*;
+
+// Conflicts of a table and the lookahead tries that resolve them. A table cell
+// below NO_PRODUCTION refers to a trie node: -2 - offset into nodes. A node is
+//
+//   default, n, key[n] (sorted terminal ids), value[n]
+//
+// and is keyed by the token one place further ahead than its parent, the root by
+// the token after the cell's own. A value is a production or another node; a
+// token with no key takes the default, the first production still possible, so
+// prediction always picks something and a wrong guess fails on a later match.
+//
+// conflicts holds one record per conflicting cell:
+//   nonterminal, terminal, lookahead (0 if unresolved), n, production[n]
+final class LookaheadDecisions {
+    private final int[] nodes;
+    private final int[] conflicts;
+    private final int lookahead;
+    private final int resolvedLookahead;
+    private final int conflictCount;
+
+    LookaheadDecisions(int[] nodes, int[] conflicts) {
+        this.nodes = nodes;
+        this.conflicts = conflicts;
+        int count = 0;
+        int resolved = 1;
+        for (int i = 0; i < conflicts.length; i += 4 + conflicts[i + 3]) {
+            count++;
+            resolved = Math.max(resolved, conflicts[i + 2]);
+        }
+        this.conflictCount = count;
+        this.resolvedLookahead = resolved;
+        this.lookahead = 1 + height(nodes);
+    }
+
+    // The LL(1) conflicts of a table, from pairs of cell index (row-major) << 32 |
+    // production, each production predicting that cell; repeats are allowed. The
+    // pairs are sorted in place. Nothing is resolved yet.
+    static LookaheadDecisions unresolved(long[] pairs, int count, int terminalCount) {
+        Arrays.sort(pairs, 0, count);
+        int[] records = new int[4 * count + count];
+        int length = 0;
+        int header = -1;
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && pairs[i] == pairs[i - 1]) {
+                continue;
+            }
+            int cell = (int) (pairs[i] >>> 32);
+            if (header < 0 || i == 0 || cell != (int) (pairs[i - 1] >>> 32)) {
+                header = length;
+                records[length++] = cell / terminalCount + terminalCount;
+                records[length++] = cell % terminalCount;
+                records[length++] = 0;
+                records[length++] = 0;
+            }
+            records[length++] = (int) pairs[i];
+            records[header + 3]++;
+        }
+        return new LookaheadDecisions(new int[0], Arrays.copyOf(records, length));
+    }
+
+    int[] getNodes() {
+        return nodes;
+    }
+
+    int[] getConflictRecords() {
+        return conflicts;
+    }
+
+    int getConflictCount() {
+        return conflictCount;
+    }
+
+    boolean hasNodes() {
+        return nodes.length > 0;
+    }
+
+    // Tokens of lookahead prediction reads, unresolved cells included: the
+    // current token and one per level of the deepest trie; 1 without tries.
+    int getLookahead() {
+        return lookahead;
+    }
+
+    // Tokens of lookahead the resolved cells need; unresolved cells count as 1,
+    // since their tries can still end in a guess.
+    int getResolvedLookahead() {
+        return resolvedLookahead;
+    }
+
+    int predict(int cell, LookaheadTokenSource source) throws IOException {
+        int distance = 1;
+        while (cell < LL1Table.NO_PRODUCTION) {
+            cell = child(-2 - cell, source.peek(distance++));
+        }
+        return cell;
+    }
+
+    // How many places after the current token the input leaves every candidate of
+    // the decision behind, or 0 if it does not within the trie. The keys tried
+    // at that place, all the terminals the candidates allow there, are set in
+    // expected.
+    int mismatch(int cell, LookaheadTokenSource source, BitSet expected) throws IOException {
+        int distance = 1;
+        while (cell < LL1Table.NO_PRODUCTION) {
+            int node = -2 - cell;
+            int n = nodes[node + 1];
+            int token = source.peek(distance);
+            int i = Arrays.binarySearch(nodes, node + 2, node + 2 + n, token);
+            if (i < 0) {
+                for (int key = node + 2; key < node + 2 + n; key++) {
+                    expected.set(nodes[key]);
+                }
+                return distance;
+            }
+            cell = nodes[i + n];
+            distance++;
+        }
+        return 0;
+    }
+
+    // tokens[index] is the current token; past the end the input reads as END_MARKER.
+    int predict(int cell, int[] tokens, int index) {
+        while (cell < LL1Table.NO_PRODUCTION) {
+            index++;
+            cell = child(-2 - cell, index < tokens.length ? tokens[index] : LL1Table.END_MARKER);
+        }
+        return cell;
+    }
+
+    // Levels in the tallest trie. A child is always stored after its parent, so
+    // walking the nodes backwards sees every child first.
+    private static int height(int[] nodes) {
+        List<Integer> offsets = new ArrayList<>();
+        for (int node = 0; node < nodes.length; node += 2 + 2 * nodes[node + 1]) {
+            offsets.add(node);
+        }
+        int[] heights = new int[nodes.length];
+        int max = 0;
+        for (int i = offsets.size() - 1; i >= 0; i--) {
+            int node = offsets.get(i);
+            int n = nodes[node + 1];
+            int height = 1;
+            for (int j = 0; j < n; j++) {
+                int value = nodes[node + 2 + n + j];
+                if (value < LL1Table.NO_PRODUCTION) {
+                    height = Math.max(height, 1 + heights[-2 - value]);
+                }
+            }
+            heights[node] = height;
+            max = Math.max(max, height);
+        }
+        return max;
+    }
+
+    private int child(int node, int token) {
+        int n = nodes[node + 1];
+        int i = Arrays.binarySearch(nodes, node + 2, node + 2 + n, token);
+        return i >= 0 ? nodes[i + n] : nodes[node];
+    }
+
+    // Every production reachable from a cell, in grammar order.
+    int[] productions(int cell) {
+        TreeSet<Integer> found = new TreeSet<>();
+        collect(cell, found);
+        return found.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void collect(int cell, Set<Integer> found) {
+        if (cell >= 0) {
+            found.add(cell);
+            return;
+        }
+        int node = -2 - cell;
+        int n = nodes[node + 1];
+        found.add(nodes[node]);
+        for (int i = 0; i < n; i++) {
+            collect(nodes[node + 2 + n + i], found);
+        }
+    }
+
+    List<Conflict> toConflicts(LL1Table table) {
+        List<Conflict> list = new ArrayList<>();
+        for (int i = 0; i < conflicts.length; i += 4 + conflicts[i + 3]) {
+            List<String> productions = new ArrayList<>();
+            for (int j = 0; j < conflicts[i + 3]; j++) {
+                productions.add(table.productionText(conflicts[i + 4 + j]));
+            }
+            list.add(new Conflict(table.symbolName(conflicts[i]), table.symbolName(conflicts[i + 1]),
+                                  productions, conflicts[i + 2]));
+        }
+        return list;
+    }
+}
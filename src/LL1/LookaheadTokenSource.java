@@ -0,0 +1,43 @@
+package LL1;
+import java.io.IOException;
+
+// Lets a parser look past its current token when a table cell needs more than
+// one token of lookahead. Peeked tokens are buffered and handed out by next().
+final class LookaheadTokenSource implements TokenSource {
+    private final TokenSource source;
+    private final int[] buffer;
+    private final int mask;
+    private int head;
+    private int count;
+
+    LookaheadTokenSource(TokenSource source, int maxLookahead) {
+        this.source = source;
+        this.buffer = new int[Integer.highestOneBit(Math.max(1, maxLookahead) * 2 - 1)];
+        this.mask = buffer.length - 1;
+    }
+
+    @Override
+    public int next() throws IOException {
+        if (count == 0) {
+            return source.next();
+        }
+        int token = buffer[head];
+        head = (head + 1) & mask;
+        count--;
+        return token;
+    }
+
+    // The token distance places after the one last returned by next(), from 1.
+    int peek(int distance) throws IOException {
+        while (count < distance) {
+            buffer[(head + count) & mask] = source.next();
+            count++;
+        }
+        return buffer[(head + distance - 1) & mask];
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
@@ -0,0 +1,215 @@
+package LL1;
+import java.nio.IntBuffer;
+import java.util.*;
+
+// Parse table cells packed by row displacement ("comb-vector" packing). Each row
+// keeps its most common value as a default, usually NO_PRODUCTION; its other
+// cells are overlaid with those of every other row in one slot array, cell t of
+// row r at slot base[r] + t. Every slot records the row that owns it, so a
+// lookup is a couple of reads and a compare, and an empty or foreign slot falls
+// back to the row default. Owner and value sit next to each other, in one cache
+// line.
+//
+// Rows are placed first-fit, those with the most stored cells first, as in Tarjan
+// and Yao's "Storing a sparse table" (1979). There are always at least base +
+// columns slots, so no lookup needs a bounds check.
+final class PackedTable {
+    static final int FREE = -1;
+
+    private final int rows;
+    private final int columns;
+    private final IntBuffer defaults;
+    private final IntBuffer bases;
+    // Interleaved owner, value pairs.
+    private final IntBuffer slots;
+
+    PackedTable(int rows, int columns, IntBuffer defaults, IntBuffer bases, IntBuffer slots) {
+        this.rows = rows;
+        this.columns = columns;
+        this.defaults = defaults;
+        this.bases = bases;
+        this.slots = slots;
+    }
+
+    static PackedTable pack(int[] cells, int rows, int columns) {
+        Builder builder = new Builder(rows, columns);
+        for (int r = 0; r < rows; r++) {
+            builder.addRow(Arrays.copyOfRange(cells, r * columns, (r + 1) * columns));
+        }
+        return builder.build();
+    }
+
+    int get(int row, int column) {
+        int slot = 2 * (bases.get(row) + column);
+        return slots.get(slot) == row ? slots.get(slot + 1) : defaults.get(row);
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    int getSlotCount() {
+        return slots.limit() / 2;
+    }
+
+    // Sections for GrammarFile, each positioned at 0.
+    IntBuffer getDefaults() {
+        return defaults.duplicate().rewind();
+    }
+
+    IntBuffer getBases() {
+        return bases.duplicate().rewind();
+    }
+
+    IntBuffer getSlots() {
+        return slots.duplicate().rewind();
+    }
+
+    void row(int row, int[] into) {
+        Arrays.fill(into, 0, columns, defaults.get(row));
+        int base = bases.get(row);
+        for (int t = 0; t < columns; t++) {
+            int slot = 2 * (base + t);
+            if (slots.get(slot) == row) {
+                into[t] = slots.get(slot + 1);
+            }
+        }
+    }
+
+    // The same table with cells[i], a row * columns + column index, set to
+    // values[i]; cells must be ascending.
+    PackedTable with(int[] cells, int[] values) {
+        Builder builder = new Builder(rows, columns);
+        int[] row = new int[columns];
+        int next = 0;
+        for (int r = 0; r < rows; r++) {
+            row(r, row);
+            for (; next < cells.length && cells[next] / columns == r; next++) {
+                row[cells[next] % columns] = values[next];
+            }
+            builder.addRow(row);
+        }
+        return builder.build();
+    }
+
+    TableStats getStats() {
+        int stored = 0;
+        for (int slot = 0; slot < slots.limit(); slot += 2) {
+            if (slots.get(slot) != FREE) {
+                stored++;
+            }
+        }
+        return new TableStats(rows, columns, stored, getSlotCount());
+    }
+
+    // Takes rows in order, keeping only the cells that differ from each row's
+    // default, and places them all in build().
+    static final class Builder {
+        private final int rows;
+        private final int columns;
+        private final int[] defaults;
+        private final int[] start;
+        private int[] columnOf = new int[64];
+        private int[] valueOf = new int[64];
+        private int stored;
+        private int added;
+        private final Map<Integer, Integer> counts = new HashMap<>();
+
+        Builder(int rows, int columns) {
+            this.rows = rows;
+            this.columns = columns;
+            this.defaults = new int[rows];
+            this.start = new int[rows + 1];
+        }
+
+        // row is copied; the caller may reuse it.
+        void addRow(int[] row) {
+            int empty = 0;
+            int common = LL1Table.NO_PRODUCTION;
+            int commonCount = 0;
+            counts.clear();
+            for (int t = 0; t < columns; t++) {
+                if (row[t] == LL1Table.NO_PRODUCTION) {
+                    empty++;
+                    continue;
+                }
+                int count = counts.merge(row[t], 1, Integer::sum);
+                if (count > commonCount) {
+                    common = row[t];
+                    commonCount = count;
+                }
+            }
+            int fallback = empty >= commonCount ? LL1Table.NO_PRODUCTION : common;
+            defaults[added] = fallback;
+            start[added] = stored;
+            for (int t = 0; t < columns; t++) {
+                if (row[t] != fallback) {
+                    if (stored == columnOf.length) {
+                        columnOf = Arrays.copyOf(columnOf, stored * 2);
+                        valueOf = Arrays.copyOf(valueOf, stored * 2);
+                    }
+                    columnOf[stored] = t;
+                    valueOf[stored++] = row[t];
+                }
+            }
+            start[++added] = stored;
+        }
+
+        PackedTable build() {
+            if (added != rows) {
+                throw new IllegalStateException(added + " of " + rows + " rows added");
+            }
+            Integer[] order = new Integer[rows];
+            for (int r = 0; r < rows; r++) {
+                order[r] = r;
+            }
+            Arrays.sort(order, (a, b) -> (start[b + 1] - start[b]) - (start[a + 1] - start[a]));
+
+            int[] bases = new int[rows];
+            BitSet used = new BitSet();
+            int highest = 0;
+            for (int r : order) {
+                int from = start[r];
+                int to = start[r + 1];
+                if (from == to) {
+                    continue;
+                }
+                int base = 0;
+                search:
+                while (true) {
+                    base = used.nextClearBit(base + columnOf[from]) - columnOf[from];
+                    for (int i = from + 1; i < to; i++) {
+                        if (used.get(base + columnOf[i])) {
+                            base++;
+                            continue search;
+                        }
+                    }
+                    break;
+                }
+                for (int i = from; i < to; i++) {
+                    used.set(base + columnOf[i]);
+                }
+                bases[r] = base;
+                highest = Math.max(highest, base);
+            }
+
+            int[] slots = new int[2 * (highest + columns)];
+            for (int slot = 0; slot < slots.length; slot += 2) {
+                slots[slot] = FREE;
+            }
+            for (int r = 0; r < rows; r++) {
+                for (int i = start[r]; i < start[r + 1]; i++) {
+                    int slot = 2 * (bases[r] + columnOf[i]);
+                    slots[slot] = r;
+                    slots[slot + 1] = valueOf[i];
+                }
+            }
+            return new PackedTable(rows, columns, IntBuffer.wrap(defaults), IntBuffer.wrap(bases),
+                                   IntBuffer.wrap(slots));
+        }
+    }
+}
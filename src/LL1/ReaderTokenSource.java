@@ -0,0 +1,50 @@
+package LL1;
+import grammar.Grammar;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+class ReaderTokenSource implements TokenSource {
+    private final Reader reader;
+    private final TerminalLookup lookup;
+    private final char[] buffer = new char[8192];
+    private char[] token = new char[64];
+    private int position;
+    private int limit;
+
+    ReaderTokenSource(Reader reader, TerminalLookup lookup) {
+        this.reader = reader;
+        this.lookup = lookup;
+    }
+
+    @Override
+    public int next() throws IOException {
+        int length = 0;
+        while (true) {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return length > 0 ? lookup.lookup(token, 0, length) : LL1Table.END_MARKER;
+                }
+            }
+            char c = buffer[position++];
+            if (Grammar.isWhitespace(c)) {
+                if (length > 0) {
+                    return lookup.lookup(token, 0, length);
+                }
+                continue;
+            }
+            if (length == token.length) {
+                token = Arrays.copyOf(token, length * 2);
+            }
+            token[length++] = c;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,63 @@
+package LL1;
+
+// Size of a parse table as stored: the cells a dense matrix would hold against
+// the slots of its comb-vector packing.
+public final class TableStats {
+    private final int rows;
+    private final int columns;
+    private final int storedCells;
+    private final int slots;
+
+    TableStats(int rows, int columns, int storedCells, int slots) {
+        this.rows = rows;
+        this.columns = columns;
+        this.storedCells = storedCells;
+        this.slots = slots;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public long getCells() {
+        return (long) rows * columns;
+    }
+
+    // Cells that differ from their row's default and so take a slot.
+    public int getStoredCells() {
+        return storedCells;
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    // Share of slots that hold a cell.
+    public double getFill() {
+        return slots > 0 ? (double) storedCells / slots : 1;
+    }
+
+    public long getDenseBytes() {
+        return 4 * getCells();
+    }
+
+    // Defaults and bases per row, then an owner and a value per slot.
+    public long getPackedBytes() {
+        return 8L * rows + 8L * slots;
+    }
+
+    public double getCompression() {
+        return (double) getDenseBytes() / getPackedBytes();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d x %d table: %d of %d cells stored in %d slots (%.0f%% full), %d bytes instead of %d (%.1fx)",
+                             rows, columns, storedCells, getCells(), slots, getFill() * 100, getPackedBytes(),
+                             getDenseBytes(), getCompression());
+    }
+}
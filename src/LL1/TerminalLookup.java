@@ -0,0 +1,115 @@
+package LL1;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Maps raw token text to terminal ids straight from a char or byte buffer, so
+// streaming token sources never have to create a String per token.
+class TerminalLookup {
+    private final char[][] chars;
+    private final byte[][] bytes;
+    private final int[] charSlots;
+    private final int[] byteSlots;
+    private final int mask;
+
+    TerminalLookup(String[] symbols, int terminalCount) {
+        this.chars = new char[terminalCount][];
+        this.bytes = new byte[terminalCount][];
+        int capacity = Integer.highestOneBit(Math.max(terminalCount, 4) * 4 - 1) << 1;
+        this.mask = capacity - 1;
+        this.charSlots = new int[capacity];
+        this.byteSlots = new int[capacity];
+        Arrays.fill(charSlots, LL1Table.UNKNOWN_SYMBOL);
+        Arrays.fill(byteSlots, LL1Table.UNKNOWN_SYMBOL);
+
+        for (int id = 0; id < terminalCount; id++) {
+            chars[id] = symbols[id].toCharArray();
+            bytes[id] = symbols[id].getBytes(StandardCharsets.UTF_8);
+            int slot = hash(chars[id], 0, chars[id].length) & mask;
+            while (charSlots[slot] != LL1Table.UNKNOWN_SYMBOL) {
+                slot = (slot + 1) & mask;
+            }
+            charSlots[slot] = id;
+            slot = hash(bytes[id], 0, bytes[id].length) & mask;
+            while (byteSlots[slot] != LL1Table.UNKNOWN_SYMBOL) {
+                slot = (slot + 1) & mask;
+            }
+            byteSlots[slot] = id;
+        }
+    }
+
+    int lookup(char[] buffer, int offset, int length) {
+        for (int slot = hash(buffer, offset, length) & mask; ; slot = (slot + 1) & mask) {
+            int id = charSlots[slot];
+            if (id == LL1Table.UNKNOWN_SYMBOL) {
+                return id;
+            }
+            char[] candidate = chars[id];
+            if (candidate.length == length
+                    && Arrays.equals(candidate, 0, length, buffer, offset, offset + length)) {
+                return id;
+            }
+        }
+    }
+
+    int lookup(byte[] buffer, int offset, int length) {
+        for (int slot = hash(buffer, offset, length) & mask; ; slot = (slot + 1) & mask) {
+            int id = byteSlots[slot];
+            if (id == LL1Table.UNKNOWN_SYMBOL) {
+                return id;
+            }
+            byte[] candidate = bytes[id];
+            if (candidate.length == length
+                    && Arrays.equals(candidate, 0, length, buffer, offset, offset + length)) {
+                return id;
+            }
+        }
+    }
+
+    int lookup(ByteBuffer buffer, int offset, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + buffer.get(offset + i);
+        }
+        for (int slot = mix(h) & mask; ; slot = (slot + 1) & mask) {
+            int id = byteSlots[slot];
+            if (id == LL1Table.UNKNOWN_SYMBOL) {
+                return id;
+            }
+            byte[] candidate = bytes[id];
+            if (candidate.length == length && matches(candidate, buffer, offset)) {
+                return id;
+            }
+        }
+    }
+
+    private static boolean matches(byte[] candidate, ByteBuffer buffer, int offset) {
+        for (int i = 0; i < candidate.length; i++) {
+            if (candidate[i] != buffer.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(char[] buffer, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + buffer[i];
+        }
+        return mix(h);
+    }
+
+    private static int hash(byte[] buffer, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + buffer[i];
+        }
+        return mix(h);
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
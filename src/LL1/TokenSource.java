@@ -0,0 +1,13 @@
+package LL1;
+import java.io.Closeable;
+import java.io.IOException;
+
+public interface TokenSource extends Closeable {
+    // Returns the terminal id of the next token, LL1Table.UNKNOWN_SYMBOL for text that
+    // is not a terminal of the grammar, and LL1Table.END_MARKER once input is exhausted.
+    int next() throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
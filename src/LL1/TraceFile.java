@@ -0,0 +1,138 @@
+package LL1;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+// Streams trace records to a file through one direct buffer, so tracing an input
+// of any length takes constant memory. forEach reads a trace back one step at a
+// time. The file is little-endian:
+//
+//   int magic, int version, int stack limit, then records as in TraceSink
+//
+// A failed write surfaces from the parse as UncheckedIOException.
+public final class TraceFile extends TraceSink {
+    static final int MAGIC = 0x4C4C5452; // "LLTR"
+    static final int VERSION = 1;
+    public static final int DEFAULT_STACK_LIMIT = 256;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private long steps;
+
+    public TraceFile(Path file) throws IOException {
+        this(file, DEFAULT_STACK_LIMIT);
+    }
+
+    // Replaces file.
+    public TraceFile(Path file, int stackLimit) throws IOException {
+        super(stackLimit);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                        StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(stackLimit);
+    }
+
+    @Override
+    void write(int[] record, int length) {
+        try {
+            for (int i = 0; i < length; i++) {
+                if (buffer.remaining() < 4) {
+                    flush();
+                }
+                buffer.putInt(record[i]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        steps++;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Decodes the steps of a trace file in order, holding one buffer's worth of
+    // it at a time.
+    public static void forEach(Path file, Consumer<TraceStep> action) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Reader in = new Reader(channel);
+            if (!in.hasInt() || in.readInt() != MAGIC || !in.hasInt() || in.readInt() != VERSION || !in.hasInt()) {
+                throw new IOException(file + " is not a trace file");
+            }
+            int stackLimit = in.readInt();
+            if (stackLimit < 0) {
+                throw new IOException(file + " is not a trace file");
+            }
+            int[] record = new int[HEADER + stackLimit];
+            for (long step = 0; in.hasInt(); step++) {
+                for (int i = 0; i < HEADER; i++) {
+                    record[i] = in.readInt(file);
+                }
+                int stored = record[HEADER - 1];
+                if (stored < 0 || stored > stackLimit) {
+                    throw new IOException(file + " has a corrupt record at step " + step);
+                }
+                for (int i = 0; i < stored; i++) {
+                    record[HEADER + i] = in.readInt(file);
+                }
+                action.accept(TraceStep.decode(record, 0, step));
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+        Reader(FileChannel channel) {
+            this.channel = channel;
+            buffer.limit(0);
+        }
+
+        boolean hasInt() throws IOException {
+            if (buffer.remaining() >= 4) {
+                return true;
+            }
+            buffer.compact();
+            while (buffer.position() < 4 && channel.read(buffer) >= 0) {
+            }
+            buffer.flip();
+            return buffer.remaining() >= 4;
+        }
+
+        int readInt() {
+            return buffer.getInt();
+        }
+
+        int readInt(Path file) throws IOException {
+            if (!hasInt()) {
+                throw new IOException(file + " ends in the middle of a record");
+            }
+            return buffer.getInt();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package LL1;
+
+interface TraceListener {
+    int MATCH = 0;
+    int EXPAND = 1;
+    int ACCEPT = 2;
+    int ERROR = 3;
+
+    // token is the lookahead terminal. stack holds the symbols left after popping
+    // the current top; it is reused between calls, so implementations must copy
+    // anything they want to keep.
+    void step(int action, int symbol, int production, int tokenIndex, int token, int[] stack, int stackDepth);
+}
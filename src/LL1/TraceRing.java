@@ -0,0 +1,58 @@
+package LL1;
+
+// Keeps the last capacity steps of a parse in one preallocated array, so
+// tracing a long input takes bounded memory. The parse stops at its first error,
+// so those are the steps that led to it.
+public final class TraceRing extends TraceSink {
+    private final int capacity;
+    private final int slotSize;
+    private final int[] slots;
+    private long steps;
+
+    public TraceRing(int capacity) {
+        this(capacity, 32);
+    }
+
+    public TraceRing(int capacity, int stackLimit) {
+        super(stackLimit);
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, not " + capacity);
+        }
+        this.capacity = capacity;
+        this.slotSize = HEADER + stackLimit;
+        this.slots = new int[Math.multiplyExact(capacity, slotSize)];
+    }
+
+    @Override
+    void write(int[] record, int length) {
+        System.arraycopy(record, 0, slots, (int) (steps % capacity) * slotSize, length);
+        steps++;
+    }
+
+    // Steps recorded in all, kept or not.
+    public long getSteps() {
+        return steps;
+    }
+
+    // Steps kept: the last min(getSteps(), capacity).
+    public int size() {
+        return (int) Math.min(steps, capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // The index-th kept step, oldest first.
+    public TraceStep get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Step " + index + " of " + size());
+        }
+        long step = steps - size() + index;
+        return TraceStep.decode(slots, (int) (step % capacity) * slotSize, step);
+    }
+
+    public void clear() {
+        steps = 0;
+    }
+}
@@ -0,0 +1,52 @@
+package LL1;
+import java.io.Closeable;
+import java.io.IOException;
+
+// Receives parse steps as compact int records instead of formatted rows, so a
+// trace costs a few ints per step and text is only produced for the steps someone
+// looks at (see TraceStep). A record is
+//
+//   action, symbol, production, token index, lookahead token, stack depth,
+//   stored symbols n, then the top n stack symbols, bottom first
+//
+// with n at most stackLimit; deeper stacks keep only their top.
+public abstract class TraceSink implements TraceListener, Closeable {
+    static final int HEADER = 7;
+
+    private final int stackLimit;
+    private final int[] record;
+
+    TraceSink(int stackLimit) {
+        if (stackLimit < 0) {
+            throw new IllegalArgumentException("Negative stack limit " + stackLimit);
+        }
+        this.stackLimit = stackLimit;
+        this.record = new int[HEADER + stackLimit];
+    }
+
+    public int getStackLimit() {
+        return stackLimit;
+    }
+
+    @Override
+    public final void step(int action, int symbol, int production, int tokenIndex, int token, int[] stack,
+                           int stackDepth) {
+        int stored = Math.min(stackDepth, stackLimit);
+        record[0] = action;
+        record[1] = symbol;
+        record[2] = production;
+        record[3] = tokenIndex;
+        record[4] = token;
+        record[5] = stackDepth;
+        record[6] = stored;
+        System.arraycopy(stack, stackDepth - stored, record, HEADER, stored);
+        write(record, HEADER + stored);
+    }
+
+    // record is reused for the next step.
+    abstract void write(int[] record, int length);
+
+    @Override
+    public void close() throws IOException {
+    }
+}
@@ -0,0 +1,107 @@
+package LL1;
+import java.util.*;
+
+// One decoded step of a TraceSink record, formatted only on request.
+public final class TraceStep {
+    private final long number;
+    private final int action;
+    private final int symbol;
+    private final int production;
+    private final int tokenIndex;
+    private final int token;
+    private final int stackDepth;
+    private final int[] stackTop;
+
+    private TraceStep(long number, int action, int symbol, int production, int tokenIndex, int token,
+                      int stackDepth, int[] stackTop) {
+        this.number = number;
+        this.action = action;
+        this.symbol = symbol;
+        this.production = production;
+        this.tokenIndex = tokenIndex;
+        this.token = token;
+        this.stackDepth = stackDepth;
+        this.stackTop = stackTop;
+    }
+
+    static TraceStep decode(int[] record, int offset, long number) {
+        int stored = record[offset + 6];
+        int[] stackTop = Arrays.copyOfRange(record, offset + TraceSink.HEADER, offset + TraceSink.HEADER + stored);
+        return new TraceStep(number, record[offset], record[offset + 1], record[offset + 2], record[offset + 3],
+                             record[offset + 4], record[offset + 5], stackTop);
+    }
+
+    // Position of the step in the whole parse, from 0.
+    public long getNumber() {
+        return number;
+    }
+
+    public boolean isMatch() {
+        return action == TraceListener.MATCH;
+    }
+
+    public boolean isExpand() {
+        return action == TraceListener.EXPAND;
+    }
+
+    public boolean isAccept() {
+        return action == TraceListener.ACCEPT;
+    }
+
+    public boolean isError() {
+        return action == TraceListener.ERROR;
+    }
+
+    public int getTokenIndex() {
+        return tokenIndex;
+    }
+
+    public int getStackDepth() {
+        return stackDepth;
+    }
+
+    // A row like TraceTableListener's. tokens, the input as text ending in "$",
+    // fills the matched and remaining input columns; without it the lookahead
+    // terminal stands in for the input.
+    public String format(CompiledGrammar grammar, List<String> tokens) {
+        LL1Table table = grammar.getTable();
+        String matched;
+        String input;
+        String current = tokens != null && tokenIndex < tokens.size() ? tokens.get(tokenIndex)
+                                                                       : table.symbolName(token);
+        if (tokens != null) {
+            int end = Math.min(tokens.size(), tokenIndex + (action == TraceListener.MATCH ? 1 : 0));
+            matched = end > 0 ? String.join(" ", tokens.subList(0, end)) + " " : "";
+            input = String.join(" ", tokens.subList(Math.min(tokenIndex, tokens.size()), tokens.size()));
+        } else {
+            matched = tokenIndex + (action == TraceListener.MATCH ? 1 : 0) + " tokens";
+            input = current + " ...";
+        }
+        StringBuilder stack = new StringBuilder("[");
+        if (stackTop.length < stackDepth) {
+            stack.append("... ").append(stackDepth - stackTop.length).append(" more");
+        }
+        for (int i = 0; i < stackTop.length; i++) {
+            if (stack.length() > 1) {
+                stack.append(", ");
+            }
+            stack.append(table.symbolName(stackTop[i]));
+        }
+        stack.append(']');
+        String actionText;
+        switch (action) {
+            case TraceListener.MATCH:
+                actionText = "Match " + current;
+                break;
+            case TraceListener.EXPAND:
+                actionText = table.symbolName(symbol) + " -> " + table.productionText(production);
+                break;
+            case TraceListener.ACCEPT:
+                actionText = "Accept";
+                break;
+            default:
+                actionText = "Error";
+        }
+        return TraceTableListener.formatTraceRow(matched, stack.toString(), input, actionText);
+    }
+}
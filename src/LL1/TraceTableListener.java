@@ -0,0 +1,54 @@
+package LL1;
+import java.util.*;
+
+class TraceTableListener implements TraceListener {
+    private final List<String> tokens;
+    private final LL1Table table;
+    private final List<String> traceTable;
+    private final StringBuilder matched;
+
+    public TraceTableListener(List<String> tokens, LL1Table table, List<String> traceTable) {
+        this.tokens = tokens;
+        this.table = table;
+        this.traceTable = traceTable;
+        this.matched = new StringBuilder();
+    }
+
+    @Override
+    public void step(int action, int symbol, int production, int tokenIndex, int token, int[] stack,
+                     int stackDepth) {
+        String inputRemaining = String.join(" ", tokens.subList(tokenIndex, tokens.size()));
+        String actionText;
+        switch (action) {
+            case MATCH:
+                matched.append(tokens.get(tokenIndex)).append(' ');
+                actionText = "Match " + tokens.get(tokenIndex);
+                break;
+            case EXPAND:
+                actionText = table.symbolName(symbol) + " -> " + table.productionText(production);
+                break;
+            case ACCEPT:
+                actionText = "Accept";
+                break;
+            default:
+                actionText = "Error";
+        }
+        traceTable.add(formatTraceRow(matched.toString(), formatStack(stack, stackDepth), inputRemaining, actionText));
+    }
+
+    private String formatStack(int[] stack, int stackDepth) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < stackDepth; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(table.symbolName(stack[i]));
+        }
+        return sb.append(']').toString();
+    }
+
+    static String formatTraceRow(String matched, String stack, String input, String action) {
+        return String.format("%-30s %-40s %-40s %-30s",
+                             matched, stack, input, action);
+    }
+}
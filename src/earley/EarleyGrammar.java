@@ -0,0 +1,165 @@
+package earley;
+import engine.ParseMetrics;
+import engine.SyntaxChecker;
+import engine.SyntaxError;
+import grammar.Grammar;
+import lexer.Lexer;
+import java.util.*;
+
+// Immutable, compiled form of a grammar for Earley parsing. Unlike RDPGrammar it
+// is used as written: left recursion needs no rewriting and ambiguity is kept.
+// Any number of EarleyParser instances can share it.
+//
+// Every production p of length L has the dotted items ("slots") slotBase[p] to
+// slotBase[p] + L, one per dot position, so advancing the dot is slot + 1.
+public final class EarleyGrammar {
+    static final int COMPLETE = -1;
+
+    private final Grammar grammar;
+    private final String startSymbol;
+    private final int start;
+    private final int[] slotBase;
+    private final int[] slotNext;
+    private final int[] slotHead;
+    private final int[] slotProduction;
+    private final int[] slotDot;
+
+    public EarleyGrammar(String grammarInput, String startSymbol) {
+        this(Grammar.parse(grammarInput), startSymbol);
+    }
+
+    public EarleyGrammar(Grammar grammar, String startSymbol) {
+        this.grammar = grammar;
+        this.startSymbol = startSymbol;
+        int id = grammar.symbolId(startSymbol);
+        this.start = id >= 0 && !grammar.isTerminal(id) ? id : -1;
+
+        int productionCount = grammar.getProductionCount();
+        this.slotBase = new int[productionCount];
+        int slots = 0;
+        for (int p = 0; p < productionCount; p++) {
+            slotBase[p] = slots;
+            slots += grammar.productionBody(p).length + 1;
+        }
+        this.slotNext = new int[slots];
+        this.slotHead = new int[slots];
+        this.slotProduction = new int[slots];
+        this.slotDot = new int[slots];
+        for (int p = 0; p < productionCount; p++) {
+            int[] body = grammar.productionBody(p);
+            for (int dot = 0; dot <= body.length; dot++) {
+                int slot = slotBase[p] + dot;
+                slotNext[slot] = dot < body.length ? body[dot] : COMPLETE;
+                slotHead[slot] = grammar.productionHead(p);
+                slotProduction[slot] = p;
+                slotDot[slot] = dot;
+            }
+        }
+    }
+
+    public Grammar getGrammar() {
+        return grammar;
+    }
+
+    public String getStartSymbol() {
+        return startSymbol;
+    }
+
+    // -1 when the grammar has no productions for the start symbol.
+    int startId() {
+        return start;
+    }
+
+    int terminalId(String token) {
+        int id = grammar.symbolId(token);
+        return id >= 0 && grammar.isTerminal(id) ? id : -1;
+    }
+
+    int nonTerminalCount() {
+        return grammar.getNonTerminalCount();
+    }
+
+    int symbolCount() {
+        return grammar.getSymbolCount();
+    }
+
+    String symbolName(int symbol) {
+        return grammar.symbolName(symbol);
+    }
+
+    int firstProduction(int nonTerminal) {
+        return grammar.firstProduction(nonTerminal);
+    }
+
+    int slotBase(int production) {
+        return slotBase[production];
+    }
+
+    // The symbol after the dot, or COMPLETE.
+    int next(int slot) {
+        return slotNext[slot];
+    }
+
+    int head(int slot) {
+        return slotHead[slot];
+    }
+
+    int dot(int slot) {
+        return slotDot[slot];
+    }
+
+    int production(int slot) {
+        return slotProduction[slot];
+    }
+
+    // "E -> E + . E"
+    String slotText(int slot) {
+        int production = slotProduction[slot];
+        int[] body = grammar.productionBody(production);
+        StringBuilder sb = new StringBuilder(grammar.symbolName(slotHead[slot])).append(" ->");
+        for (int i = 0; i <= body.length; i++) {
+            if (i == slotDot[slot]) {
+                sb.append(" .");
+            }
+            if (i < body.length) {
+                sb.append(' ').append(grammar.symbolName(body[i]));
+            }
+        }
+        return sb.toString();
+    }
+
+    String productionText(int production) {
+        return grammar.symbolName(grammar.productionHead(production)) + " -> " + grammar.productionText(production);
+    }
+
+    // A thread-safe recognizer; each calling thread gets its own parser state.
+    public SyntaxChecker recognizer() {
+        return recognizer(null);
+    }
+
+    // As above, with every thread's parser recording into the shared metrics.
+    public SyntaxChecker recognizer(ParseMetrics metrics) {
+        return recognizer(metrics, null);
+    }
+
+    // As above, tokenizing input with lexer unless it is null.
+    public SyntaxChecker recognizer(ParseMetrics metrics, Lexer lexer) {
+        ThreadLocal<EarleyParser> parsers = ThreadLocal.withInitial(() -> {
+            EarleyParser parser = new EarleyParser(this);
+            parser.setMetrics(metrics);
+            parser.setLexer(lexer);
+            return parser;
+        });
+        return new SyntaxChecker() {
+            @Override
+            public boolean validate(String input) {
+                return parsers.get().validate(input);
+            }
+
+            @Override
+            public List<SyntaxError> check(String input) {
+                return parsers.get().check(input);
+            }
+        };
+    }
+}
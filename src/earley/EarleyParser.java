@@ -0,0 +1,340 @@
+package earley;
+import engine.ParseMetrics;
+import engine.SyntaxError;
+import grammar.Grammar;
+import lexer.Lexer;
+import lexer.TokenScanner;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+
+// Earley parsing, building the parse forest as it goes with Scott's algorithm
+// ("SPPF-style parsing from Earley recognisers", 2008). Any context-free grammar
+// is accepted, ambiguous and left-recursive ones included. Parsing takes time
+// cubic in the input length at worst, quadratic for unambiguous grammars and
+// linear for most grammars used in practice, LR(k) ones among them.
+//
+// Set i holds the items (slot, origin, node): a dotted production that started
+// at token origin and has matched up to token i, and the forest node for what it
+// has matched so far. Empty productions are handled by remembering, per set,
+// the nonterminals that derived the empty string there.
+//
+// A parser holds the state of one parse at a time; share the EarleyGrammar, not
+// the parser, between threads.
+public final class EarleyParser {
+    private final EarleyGrammar grammar;
+    private final int nonTerminalCount;
+    private ParseMetrics metrics;
+    private Lexer lexer;
+    private int[] lexerIds;
+
+    // Every item of every set, in order; set i runs from setStart[i] to setStart[i + 1].
+    private int[] itemSlot = new int[256];
+    private int[] itemOrigin = new int[256];
+    private int[] itemNode = new int[256];
+    private int[] itemWaiting = new int[256];
+    private int itemCount;
+    private int[] setStart = new int[64];
+    private int set;
+
+    // (slot, origin) to item, for the set being filled.
+    private final LongIntMap items = new LongIntMap();
+    // (set, nonterminal) to the newest item of that set with the nonterminal after
+    // its dot; itemWaiting links to the one before.
+    private final LongIntMap waiting = new LongIntMap();
+    // (label, start) to node, and (node, split) to its newest family with that
+    // split, both for nodes ending at the current position.
+    private final LongIntMap nodes = new LongIntMap();
+    private final LongIntMap families = new LongIntMap();
+    private int[] familyChain = new int[64];
+    private final int[] predicted;
+    private final int[] emptyAt;
+    private final int[] emptyNode;
+
+    private ParseForest forest;
+    private int stoppedAt;
+    private int prefixEnd;
+
+    public EarleyParser(String grammarInput, String startSymbol) {
+        this(new EarleyGrammar(grammarInput, startSymbol));
+    }
+
+    public EarleyParser(EarleyGrammar grammar) {
+        this.grammar = grammar;
+        this.nonTerminalCount = grammar.nonTerminalCount();
+        this.predicted = new int[nonTerminalCount];
+        this.emptyAt = new int[nonTerminalCount];
+        this.emptyNode = new int[nonTerminalCount];
+    }
+
+    public EarleyGrammar getGrammar() {
+        return grammar;
+    }
+
+    // Records every later parse in metrics: latency, and the number of Earley items
+    // as expansions. With null, as by default, none of this is counted.
+    public void setMetrics(ParseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Tokenizes later input with lexer instead of splitting it on whitespace.
+    public void setLexer(Lexer lexer) {
+        this.lexer = lexer;
+        this.lexerIds = lexer != null ? lexer.tokenIds(grammar::terminalId) : null;
+    }
+
+    // The forest of every parse of input, or null when input is not in the language.
+    public ParseForest parse(String input) {
+        return run(encode(input)) ? forest : null;
+    }
+
+    public boolean validate(String input) {
+        boolean valid = run(encode(input));
+        forest = null;
+        return valid;
+    }
+
+    // Earley parsing stops at the first token no item can take, which is where
+    // the input stops being a prefix of any sentence, so this is at most one error.
+    public List<SyntaxError> check(String input) {
+        int[] tokens = encode(input);
+        boolean valid = run(tokens);
+        forest = null;
+        if (valid) {
+            return List.of();
+        }
+        BitSet expected = new BitSet();
+        for (int it = setStart[stoppedAt]; it < setStart[stoppedAt + 1]; it++) {
+            int next = grammar.next(itemSlot[it]);
+            if (next >= nonTerminalCount) {
+                expected.set(next);
+            }
+        }
+        List<String> names = new ArrayList<>();
+        for (int t = expected.nextSetBit(0); t >= 0; t = expected.nextSetBit(t + 1)) {
+            names.add(grammar.symbolName(t));
+        }
+        if (prefixEnd == stoppedAt) {
+            // The start symbol matched up to here; the input could have ended.
+            names.add(Grammar.END_MARKER);
+        }
+        String found = null;
+        if (stoppedAt < tokens.length) {
+            found = lexer != null ? lexer.tokenText(input, stoppedAt) : Grammar.tokens(input).get(stoppedAt);
+        }
+        return List.of(new SyntaxError(stoppedAt, found != null ? found : Grammar.END_MARKER, names));
+    }
+
+    // Terminal ids of the tokens of input, -1 for text that is not a terminal.
+    private int[] encode(String input) {
+        if (lexer == null) {
+            List<String> tokens = Grammar.tokens(input);
+            int[] ids = new int[tokens.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = grammar.terminalId(tokens.get(i));
+            }
+            return ids;
+        }
+        TokenScanner scanner = lexer.scanner(input);
+        int[] ids = new int[16];
+        int count = 0;
+        for (int kind = scanner.next(); kind != Lexer.END; kind = scanner.next()) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = kind >= 0 ? lexerIds[kind] : -1;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private boolean run(int[] ids) {
+        long started = metrics != null ? System.nanoTime() : 0;
+        int root = recognize(ids);
+        if (root != ParseForest.NONE) {
+            forest.setRoot(root);
+        }
+        if (metrics != null) {
+            metrics.recordParse(System.nanoTime() - started, ids.length, root != ParseForest.NONE);
+            metrics.recordExpansions(itemCount);
+        }
+        return root != ParseForest.NONE;
+    }
+
+    // Returns the root node, or NONE with stoppedAt set to the set after which
+    // nothing could be matched.
+    private int recognize(int[] tokens) {
+        int n = tokens.length;
+        forest = new ParseForest(grammar);
+        itemCount = 0;
+        waiting.clear();
+        nodes.clear();
+        families.clear();
+        Arrays.fill(predicted, -1);
+        Arrays.fill(emptyAt, -1);
+        if (setStart.length < n + 2) {
+            setStart = new int[n + 2];
+        }
+        prefixEnd = -1;
+        int start = grammar.startId();
+        beginSet(0);
+        if (start < 0) {
+            stoppedAt = 0;
+            setStart[1] = itemCount;
+            return ParseForest.NONE;
+        }
+        predict(start, 0);
+
+        for (int i = 0; ; i++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Parse interrupted");
+            }
+            for (int it = setStart[i]; it < itemCount; it++) {
+                int next = grammar.next(itemSlot[it]);
+                if (next == EarleyGrammar.COMPLETE) {
+                    complete(it, i);
+                } else if (next < nonTerminalCount) {
+                    if (predicted[next] != i) {
+                        predicted[next] = i;
+                        predict(next, i);
+                    }
+                    if (emptyAt[next] == i) {
+                        // next derived the empty string here before this item arrived.
+                        int after = itemSlot[it] + 1;
+                        add(after, itemOrigin[it], makeNode(after, itemOrigin[it], i, itemNode[it], emptyNode[next]));
+                    }
+                }
+            }
+            int root = nodes.get(key(start, 0));
+            if (root != LongIntMap.MISSING) {
+                prefixEnd = i;
+            }
+            if (i == n) {
+                setStart[n + 1] = itemCount;
+                stoppedAt = n;
+                return root != LongIntMap.MISSING ? root : ParseForest.NONE;
+            }
+
+            int end = itemCount;
+            nodes.clear();
+            families.clear();
+            beginSet(i + 1);
+            int token = tokens[i];
+            int leaf = ParseForest.NONE;
+            // An unknown token, -1, must not match a complete slot.
+            for (int it = token >= 0 ? setStart[i] : end; it < end; it++) {
+                int slot = itemSlot[it];
+                if (grammar.next(slot) == token) {
+                    if (leaf == ParseForest.NONE) {
+                        leaf = forest.addNode(token, i, i + 1);
+                    }
+                    add(slot + 1, itemOrigin[it], makeNode(slot + 1, itemOrigin[it], i + 1, itemNode[it], leaf));
+                }
+            }
+            if (itemCount == end) {
+                stoppedAt = i;
+                return ParseForest.NONE;
+            }
+        }
+    }
+
+    private void complete(int item, int position) {
+        int slot = itemSlot[item];
+        int origin = itemOrigin[item];
+        int head = grammar.head(slot);
+        int node = itemNode[item];
+        if (node == ParseForest.NONE) {
+            // An empty production.
+            node = node(head, position, position);
+            addFamily(node, slot, position, ParseForest.NONE, ParseForest.NONE);
+        }
+        if (origin == position) {
+            emptyAt[head] = position;
+            emptyNode[head] = node;
+        }
+        for (int waiter = waiting.get(key(origin, head)); waiter != LongIntMap.MISSING; waiter = itemWaiting[waiter]) {
+            int after = itemSlot[waiter] + 1;
+            add(after, itemOrigin[waiter], makeNode(after, itemOrigin[waiter], position, itemNode[waiter], node));
+        }
+    }
+
+    private void predict(int nonTerminal, int position) {
+        for (int p = grammar.firstProduction(nonTerminal); p < grammar.firstProduction(nonTerminal + 1); p++) {
+            add(grammar.slotBase(p), position, ParseForest.NONE);
+        }
+    }
+
+    private void beginSet(int index) {
+        set = index;
+        setStart[index] = itemCount;
+        items.clear();
+    }
+
+    private void add(int slot, int origin, int node) {
+        long itemKey = key(slot, origin);
+        if (items.get(itemKey) != LongIntMap.MISSING) {
+            return;
+        }
+        items.put(itemKey, itemCount);
+        if (itemCount == itemSlot.length) {
+            int capacity = itemCount * 2;
+            itemSlot = Arrays.copyOf(itemSlot, capacity);
+            itemOrigin = Arrays.copyOf(itemOrigin, capacity);
+            itemNode = Arrays.copyOf(itemNode, capacity);
+            itemWaiting = Arrays.copyOf(itemWaiting, capacity);
+        }
+        itemSlot[itemCount] = slot;
+        itemOrigin[itemCount] = origin;
+        itemNode[itemCount] = node;
+        int next = grammar.next(slot);
+        if (next != EarleyGrammar.COMPLETE && next < nonTerminalCount) {
+            long waitKey = key(set, next);
+            itemWaiting[itemCount] = waiting.get(waitKey);
+            waiting.put(waitKey, itemCount);
+        }
+        itemCount++;
+    }
+
+    // The node for slot, whose dot has just moved past a symbol matched as right,
+    // over origin to position; left is what the item had matched before. An item
+    // that has matched only its first symbol uses that symbol's node as it is.
+    private int makeNode(int slot, int origin, int position, int left, int right) {
+        boolean complete = grammar.next(slot) == EarleyGrammar.COMPLETE;
+        if (grammar.dot(slot) == 1 && !complete) {
+            return right;
+        }
+        int label = complete ? grammar.head(slot) : grammar.symbolCount() + slot;
+        int node = node(label, origin, position);
+        addFamily(node, slot, forest.start(right), left, right);
+        return node;
+    }
+
+    private int node(int label, int start, int end) {
+        long nodeKey = key(label, start);
+        int node = nodes.get(nodeKey);
+        if (node == LongIntMap.MISSING) {
+            node = forest.addNode(label, start, end);
+            nodes.put(nodeKey, node);
+        }
+        return node;
+    }
+
+    // A family is fixed by its node, slot and split point, the start of its right child.
+    private void addFamily(int node, int slot, int split, int left, int right) {
+        long familyKey = key(node, split);
+        int first = families.get(familyKey);
+        for (int packed = first; packed != LongIntMap.MISSING; packed = familyChain[packed]) {
+            if (forest.packedSlot(packed) == slot) {
+                return;
+            }
+        }
+        int packed = forest.addPacked(node, slot, left, right);
+        if (packed == familyChain.length) {
+            familyChain = Arrays.copyOf(familyChain, packed * 2);
+        }
+        familyChain[packed] = first;
+        families.put(familyKey, packed);
+    }
+
+    private static long key(int high, int low) {
+        return (long) high << 32 | (low & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,77 @@
+package earley;
+import java.util.*;
+
+// Open-addressing map from long keys to non-negative ints, for the sets the
+// parser indexes by pairs of ints. clear() only touches the slots in use, so a
+// map emptied once per input position costs nothing for positions that did not
+// fill it.
+final class LongIntMap {
+    static final int MISSING = -1;
+
+    private long[] keys = new long[16];
+    private int[] values = new int[16];
+    private int[] used = new int[8];
+    private int size;
+
+    LongIntMap() {
+        Arrays.fill(values, MISSING);
+    }
+
+    int get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; values[slot] != MISSING; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return MISSING;
+    }
+
+    void put(long key, int value) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != MISSING) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (size == used.length) {
+            used = Arrays.copyOf(used, size * 2);
+        }
+        used[size++] = slot;
+        if (size * 2 > keys.length) {
+            rehash();
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            values[used[i]] = MISSING;
+        }
+        size = 0;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        int[] oldUsed = used;
+        int oldSize = size;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(values, MISSING);
+        used = new int[oldUsed.length];
+        size = 0;
+        for (int i = 0; i < oldSize; i++) {
+            put(oldKeys[oldUsed[i]], oldValues[oldUsed[i]]);
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
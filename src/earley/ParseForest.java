@@ -0,0 +1,269 @@
+package earley;
+import java.util.*;
+
+// Shared packed parse forest: every parse of an input at once, with common
+// subtrees stored once. Each node covers the tokens start to end. A symbol node
+// is labelled with a grammar symbol; an intermediate node with a dotted item,
+// standing for the first few symbols of a production, which keeps every family
+// binary and the whole forest cubic in the input length at worst.
+//
+// The children of a node come in families ("packed nodes"), one per way of
+// deriving it: a left child (an intermediate or symbol node, or NONE) and a right
+// child (the last symbol, or NONE for an empty production). A node with more than
+// one family is ambiguous.
+public final class ParseForest {
+    public static final int NONE = -1;
+
+    private final EarleyGrammar grammar;
+    private int[] label = new int[64];
+    private int[] start = new int[64];
+    private int[] end = new int[64];
+    private int[] firstPacked = new int[64];
+    private int nodeCount;
+    private int[] packedSlot = new int[64];
+    private int[] packedLeft = new int[64];
+    private int[] packedRight = new int[64];
+    private int[] packedNext = new int[64];
+    private int packedCount;
+    private int root = NONE;
+
+    ParseForest(EarleyGrammar grammar) {
+        this.grammar = grammar;
+    }
+
+    // label is a symbol id, or symbolCount + slot for an intermediate node.
+    int addNode(int nodeLabel, int nodeStart, int nodeEnd) {
+        if (nodeCount == label.length) {
+            int capacity = nodeCount * 2;
+            label = Arrays.copyOf(label, capacity);
+            start = Arrays.copyOf(start, capacity);
+            end = Arrays.copyOf(end, capacity);
+            firstPacked = Arrays.copyOf(firstPacked, capacity);
+        }
+        label[nodeCount] = nodeLabel;
+        start[nodeCount] = nodeStart;
+        end[nodeCount] = nodeEnd;
+        firstPacked[nodeCount] = NONE;
+        return nodeCount++;
+    }
+
+    int addPacked(int node, int slot, int left, int right) {
+        if (packedCount == packedSlot.length) {
+            int capacity = packedCount * 2;
+            packedSlot = Arrays.copyOf(packedSlot, capacity);
+            packedLeft = Arrays.copyOf(packedLeft, capacity);
+            packedRight = Arrays.copyOf(packedRight, capacity);
+            packedNext = Arrays.copyOf(packedNext, capacity);
+        }
+        packedSlot[packedCount] = slot;
+        packedLeft[packedCount] = left;
+        packedRight[packedCount] = right;
+        packedNext[packedCount] = firstPacked[node];
+        firstPacked[node] = packedCount;
+        return packedCount++;
+    }
+
+    int packedSlot(int packed) {
+        return packedSlot[packed];
+    }
+
+    void setRoot(int node) {
+        this.root = node;
+    }
+
+    // The start symbol over the whole input.
+    public int root() {
+        return root;
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int packedCount() {
+        return packedCount;
+    }
+
+    public boolean isIntermediate(int node) {
+        return label[node] >= grammar.symbolCount();
+    }
+
+    public boolean isTerminal(int node) {
+        return !isIntermediate(node) && label[node] >= grammar.nonTerminalCount();
+    }
+
+    // The symbol name, or the dotted item of an intermediate node.
+    public String name(int node) {
+        return isIntermediate(node) ? grammar.slotText(label[node] - grammar.symbolCount())
+                                    : grammar.symbolName(label[node]);
+    }
+
+    public int start(int node) {
+        return start[node];
+    }
+
+    public int end(int node) {
+        return end[node];
+    }
+
+    public int firstPacked(int node) {
+        return firstPacked[node];
+    }
+
+    public int nextPacked(int packed) {
+        return packedNext[packed];
+    }
+
+    public int left(int packed) {
+        return packedLeft[packed];
+    }
+
+    public int right(int packed) {
+        return packedRight[packed];
+    }
+
+    // The production a family belongs to, as "E -> E + E".
+    public String production(int packed) {
+        return grammar.productionText(grammar.production(packedSlot[packed]));
+    }
+
+    public boolean isAmbiguous(int node) {
+        int first = firstPacked[node];
+        return first != NONE && packedNext[first] != NONE;
+    }
+
+    // The symbol nodes a family derives, left to right, taking the first family of
+    // any ambiguous intermediate node on the way.
+    public int[] children(int packed) {
+        List<Integer> reversed = new ArrayList<>();
+        for (int p = packed; p != NONE; ) {
+            if (packedRight[p] != NONE) {
+                reversed.add(packedRight[p]);
+            }
+            int left = packedLeft[p];
+            if (left == NONE) {
+                break;
+            }
+            if (!isIntermediate(left)) {
+                reversed.add(left);
+                break;
+            }
+            p = firstPacked[left];
+        }
+        int[] children = new int[reversed.size()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = reversed.get(children.length - 1 - i);
+        }
+        return children;
+    }
+
+    // Nodes under the root with more than one family.
+    public int ambiguityCount() {
+        int count = 0;
+        for (int node : reachable()) {
+            if (isAmbiguous(node)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Parse trees in the forest; Long.MAX_VALUE when they do not fit in a long,
+    // or are infinitely many because the grammar has a cycle such as A -> A.
+    public long treeCount() {
+        if (root == NONE) {
+            return 0;
+        }
+        long[] counts = new long[nodeCount];
+        byte[] state = new byte[nodeCount];
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            int node = stack.peek();
+            if (state[node] == 0) {
+                state[node] = 1;
+                for (int p = firstPacked[node]; p != NONE; p = packedNext[p]) {
+                    for (int child : new int[] {packedLeft[p], packedRight[p]}) {
+                        if (child == NONE) {
+                            continue;
+                        }
+                        if (state[child] == 0) {
+                            stack.push(child);
+                        } else if (state[child] == 1) {
+                            return Long.MAX_VALUE;
+                        }
+                    }
+                }
+                continue;
+            }
+            stack.pop();
+            if (state[node] == 2) {
+                continue;
+            }
+            state[node] = 2;
+            long count = firstPacked[node] == NONE ? 1 : 0;
+            for (int p = firstPacked[node]; p != NONE; p = packedNext[p]) {
+                long left = packedLeft[p] != NONE ? counts[packedLeft[p]] : 1;
+                long right = packedRight[p] != NONE ? counts[packedRight[p]] : 1;
+                long product = left != 0 && right > Long.MAX_VALUE / left ? Long.MAX_VALUE : left * right;
+                count = count > Long.MAX_VALUE - product ? Long.MAX_VALUE : count + product;
+            }
+            counts[node] = count;
+        }
+        return counts[root];
+    }
+
+    // One parse tree, indented like ParseTree.format, taking the first family of
+    // every ambiguous node; those are marked with how many families they have.
+    public String format() {
+        if (root == NONE) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        Deque<int[]> stack = new ArrayDeque<>();
+        stack.push(new int[] {root, 0});
+        while (!stack.isEmpty()) {
+            int[] entry = stack.pop();
+            int node = entry[0];
+            sb.append(" ".repeat(entry[1] * 2)).append(name(node));
+            if (isTerminal(node)) {
+                sb.append('\n');
+                continue;
+            }
+            int families = 0;
+            for (int p = firstPacked[node]; p != NONE; p = packedNext[p]) {
+                families++;
+            }
+            sb.append(families > 1 ? " (" + families + " ways):\n" : ":\n");
+            int[] children = firstPacked[node] != NONE ? children(firstPacked[node]) : new int[0];
+            for (int i = children.length - 1; i >= 0; i--) {
+                stack.push(new int[] {children[i], entry[1] + 1});
+            }
+        }
+        return sb.toString();
+    }
+
+    private List<Integer> reachable() {
+        List<Integer> nodes = new ArrayList<>();
+        if (root == NONE) {
+            return nodes;
+        }
+        boolean[] seen = new boolean[nodeCount];
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(root);
+        seen[root] = true;
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            nodes.add(node);
+            for (int p = firstPacked[node]; p != NONE; p = packedNext[p]) {
+                for (int child : new int[] {packedLeft[p], packedRight[p]}) {
+                    if (child != NONE && !seen[child]) {
+                        seen[child] = true;
+                        stack.push(child);
+                    }
+                }
+            }
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,8 @@
+package engine;
+
+// Receives one callback per input. Callbacks come from worker threads and are not
+// ordered; error is non-null when the recognizer threw instead of answering.
+@FunctionalInterface
+public interface BatchListener {
+    void result(long index, String input, boolean valid, Throwable error);
+}
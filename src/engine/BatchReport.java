@@ -0,0 +1,26 @@
+package engine;
+import java.util.BitSet;
+
+public final class BatchReport {
+    private final BitSet valid;
+    private final BitSet errors;
+    private final BatchStats stats;
+
+    BatchReport(BitSet valid, BitSet errors, BatchStats stats) {
+        this.valid = valid;
+        this.errors = errors;
+        this.stats = stats;
+    }
+
+    public boolean isValid(int index) {
+        return valid.get(index);
+    }
+
+    public boolean isError(int index) {
+        return errors.get(index);
+    }
+
+    public BatchStats getStats() {
+        return stats;
+    }
+}
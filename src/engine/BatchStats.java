@@ -0,0 +1,45 @@
+package engine;
+
+public final class BatchStats {
+    private final long inputs;
+    private final long valid;
+    private final long errors;
+    private final long elapsedNanos;
+
+    BatchStats(long inputs, long valid, long errors, long elapsedNanos) {
+        this.inputs = inputs;
+        this.valid = valid;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getInputs() {
+        return inputs;
+    }
+
+    public long getValid() {
+        return valid;
+    }
+
+    public long getInvalid() {
+        return inputs - valid - errors;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getInputsPerSecond() {
+        return elapsedNanos > 0 ? inputs * 1e9 / elapsedNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d inputs: %d valid, %d invalid, %d errors in %.1f ms (%.0f inputs/s)",
+                             inputs, valid, getInvalid(), errors, elapsedNanos / 1e6, getInputsPerSecond());
+    }
+}
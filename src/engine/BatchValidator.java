@@ -0,0 +1,153 @@
+package engine;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// Validates many inputs against one shared Recognizer on a fork-join pool. Inputs
+// are handed out in chunks to keep scheduling overhead per input low. An input
+// that makes the recognizer throw, including a StackOverflowError from deeply
+// nested input, is counted as an error for that input only.
+//
+// A validator created with a parallelism owns its pool, and close() shuts it
+// down; a pool passed in, or the common pool, is left running.
+public class BatchValidator implements AutoCloseable {
+    private static final int CHUNK_SIZE = 1024;
+
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+
+    public BatchValidator() {
+        this(ForkJoinPool.commonPool(), false);
+    }
+
+    public BatchValidator(int parallelism) {
+        this(new ForkJoinPool(parallelism), true);
+    }
+
+    public BatchValidator(ForkJoinPool pool) {
+        this(pool, false);
+    }
+
+    private BatchValidator(ForkJoinPool pool, boolean ownsPool) {
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+    }
+
+    public BatchReport validate(Recognizer recognizer, List<String> inputs) {
+        int size = inputs.size();
+        boolean[] valid = new boolean[size];
+        boolean[] errors = new boolean[size];
+        long start = System.nanoTime();
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int from = 0; from < size; from += CHUNK_SIZE) {
+            int chunkStart = from;
+            int chunkEnd = Math.min(size, from + CHUNK_SIZE);
+            tasks.add(pool.submit(() -> {
+                for (int i = chunkStart; i < chunkEnd; i++) {
+                    try {
+                        valid[i] = recognizer.validate(inputs.get(i));
+                    } catch (RuntimeException | StackOverflowError e) {
+                        errors[i] = true;
+                    }
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        BitSet validSet = new BitSet(size);
+        BitSet errorSet = new BitSet(size);
+        long validCount = 0;
+        long errorCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (valid[i]) {
+                validSet.set(i);
+                validCount++;
+            }
+            if (errors[i]) {
+                errorSet.set(i);
+                errorCount++;
+            }
+        }
+        return new BatchReport(validSet, errorSet,
+                               new BatchStats(size, validCount, errorCount, System.nanoTime() - start));
+    }
+
+    // Streams inputs through the pool without materializing them; at most a few
+    // chunks per worker are in flight, so a slow consumer applies backpressure to
+    // the source instead of growing the heap.
+    public BatchStats validate(Recognizer recognizer, Stream<String> inputs, BatchListener listener)
+            throws InterruptedException {
+        int maxInFlight = pool.getParallelism() * 4;
+        Semaphore permits = new Semaphore(maxInFlight);
+        LongAdder count = new LongAdder();
+        LongAdder validCount = new LongAdder();
+        LongAdder errorCount = new LongAdder();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long start = System.nanoTime();
+
+        Iterator<String> iterator = inputs.iterator();
+        long index = 0;
+        while (iterator.hasNext() && failure.get() == null) {
+            String[] chunk = new String[CHUNK_SIZE];
+            int length = 0;
+            while (length < CHUNK_SIZE && iterator.hasNext()) {
+                chunk[length++] = iterator.next();
+            }
+            long chunkIndex = index;
+            int chunkLength = length;
+            index += length;
+
+            permits.acquire();
+            pool.execute(() -> {
+                try {
+                    for (int i = 0; i < chunkLength; i++) {
+                        boolean valid = false;
+                        Throwable error = null;
+                        try {
+                            valid = recognizer.validate(chunk[i]);
+                        } catch (RuntimeException | StackOverflowError e) {
+                            error = e;
+                            errorCount.increment();
+                        }
+                        if (valid) {
+                            validCount.increment();
+                        }
+                        count.increment();
+                        if (listener != null) {
+                            listener.result(chunkIndex + i, chunk[i], valid, error);
+                        }
+                    }
+                } catch (Throwable e) {
+                    // The listener threw, or the VM is out of memory: the batch fails with it.
+                    failure.compareAndSet(null, e);
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+        permits.acquire(maxInFlight);
+        permits.release(maxInFlight);
+
+        Throwable thrown = failure.get();
+        if (thrown instanceof RuntimeException) {
+            throw (RuntimeException) thrown;
+        }
+        if (thrown instanceof Error) {
+            throw (Error) thrown;
+        }
+        return new BatchStats(count.sum(), validCount.sum(), errorCount.sum(), System.nanoTime() - start);
+    }
+
+    // Batches already running finish first; new ones are rejected.
+    @Override
+    public void close() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+}
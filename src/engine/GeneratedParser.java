@@ -0,0 +1,12 @@
+package engine;
+
+// A recognizer whose source was generated for one grammar and compiled. Besides
+// text it accepts tokens already mapped to terminal ids, ending with endMarker().
+public interface GeneratedParser extends Recognizer {
+    // -1 for tokens that are not terminals of the grammar.
+    int terminalId(String token);
+
+    int endMarker();
+
+    boolean validate(int[] tokens);
+}
@@ -0,0 +1,273 @@
+package engine;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Counters for one grammar, shared by every thread that parses with it. Engines
+// only look at a ParseMetrics when one is attached: a parse counts in plain
+// fields and publishes once when it finishes, so the parsing loops never touch
+// an atomic and a parser without metrics does no extra work at all.
+public final class ParseMetrics implements ParseMetricsMXBean {
+    private final String name;
+    private final LongAdder validations = new LongAdder();
+    private final LongAdder validInputs = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder expansions = new LongAdder();
+    private final LongAdder memoHits = new LongAdder();
+    private final LongAdder memoMisses = new LongAdder();
+    private final LongAccumulator maxStackDepth = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxLatency = new LongAccumulator(Math::max, 0);
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final Map<String, LongAdder> backtracks = new ConcurrentHashMap<>();
+    private volatile long startNanos = System.nanoTime();
+    private ObjectName registeredAs;
+
+    public ParseMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Counts validations and their latency for any Recognizer, including generated
+    // parsers that have no hooks of their own. Tokens are counted from the input.
+    public static Recognizer instrument(Recognizer recognizer, ParseMetrics metrics) {
+        return input -> {
+            long start = System.nanoTime();
+            boolean valid = recognizer.validate(input);
+            metrics.recordParse(System.nanoTime() - start, countTokens(input), valid);
+            return valid;
+        };
+    }
+
+    private static int countTokens(String input) {
+        int count = 0;
+        boolean inToken = false;
+        for (int i = 0; i < input.length(); i++) {
+            boolean space = input.charAt(i) == ' ';
+            if (!space && !inToken) {
+                count++;
+            }
+            inToken = !space;
+        }
+        return count;
+    }
+
+    public void recordParse(long nanos, long tokenCount, boolean valid) {
+        validations.increment();
+        if (valid) {
+            validInputs.increment();
+        }
+        tokens.add(tokenCount);
+        latency.record(nanos);
+        maxLatency.accumulate(nanos);
+    }
+
+    public void recordExpansions(long count) {
+        expansions.add(count);
+    }
+
+    public void recordStackDepth(long depth) {
+        maxStackDepth.accumulate(depth);
+    }
+
+    public void recordMemo(long hits, long misses) {
+        memoHits.add(hits);
+        memoMisses.add(misses);
+    }
+
+    // counts[i] failed alternatives of rules[i]; zero entries are skipped.
+    public void recordBacktracks(String[] rules, int[] counts) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                backtracks.computeIfAbsent(rules[i], rule -> new LongAdder()).add(counts[i]);
+            }
+        }
+    }
+
+    // Registers this object with the platform MBean server as
+    // compiler.parser:type=ParseMetrics,name=<name>.
+    public synchronized ObjectName register() {
+        if (registeredAs != null) {
+            return registeredAs;
+        }
+        try {
+            ObjectName objectName = new ObjectName("compiler.parser:type=ParseMetrics,name="
+                                                   + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+            registeredAs = objectName;
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register metrics for " + name, e);
+        }
+    }
+
+    public synchronized void unregister() {
+        if (registeredAs == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredAs);
+        } catch (JMException e) {
+            // Already gone, e.g. replaced by a newer registration under the same name.
+        }
+        registeredAs = null;
+    }
+
+    public long latencyPercentileNanos(double fraction) {
+        return latency.percentile(fraction);
+    }
+
+    @Override
+    public long getValidations() {
+        return validations.sum();
+    }
+
+    @Override
+    public long getValidInputs() {
+        return validInputs.sum();
+    }
+
+    @Override
+    public long getTokens() {
+        return tokens.sum();
+    }
+
+    @Override
+    public double getValidationsPerSecond() {
+        return perSecond(validations.sum());
+    }
+
+    @Override
+    public double getTokensPerSecond() {
+        return perSecond(tokens.sum());
+    }
+
+    private double perSecond(long count) {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed > 0 ? count * 1e9 / elapsed : 0;
+    }
+
+    @Override
+    public double getLatencyP50Micros() {
+        return latency.percentile(0.5) / 1e3;
+    }
+
+    @Override
+    public double getLatencyP90Micros() {
+        return latency.percentile(0.9) / 1e3;
+    }
+
+    @Override
+    public double getLatencyP99Micros() {
+        return latency.percentile(0.99) / 1e3;
+    }
+
+    @Override
+    public double getLatencyMaxMicros() {
+        return maxLatency.get() / 1e3;
+    }
+
+    @Override
+    public long getExpansions() {
+        return expansions.sum();
+    }
+
+    @Override
+    public long getMemoHits() {
+        return memoHits.sum();
+    }
+
+    @Override
+    public long getMemoMisses() {
+        return memoMisses.sum();
+    }
+
+    @Override
+    public double getMemoHitRate() {
+        long hits = memoHits.sum();
+        long lookups = hits + memoMisses.sum();
+        return lookups > 0 ? (double) hits / lookups : 0;
+    }
+
+    @Override
+    public long getMaxStackDepth() {
+        return maxStackDepth.get();
+    }
+
+    @Override
+    public long getBacktracks() {
+        long total = 0;
+        for (LongAdder count : backtracks.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getBacktracksByRule() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> entry : backtracks.entrySet()) {
+            entries.add(Map.entry(entry.getKey(), entry.getValue().sum()));
+        }
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : entries) {
+            sorted.put(entry.getKey(), entry.getValue());
+        }
+        return sorted;
+    }
+
+    @Override
+    public void reset() {
+        validations.reset();
+        validInputs.reset();
+        tokens.reset();
+        expansions.reset();
+        memoHits.reset();
+        memoMisses.reset();
+        maxStackDepth.reset();
+        maxLatency.reset();
+        latency.reset();
+        backtracks.clear();
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s: %d validations (%d valid), %.0f/s, %.0f tokens/s, "
+                                + "latency p50 %.1f us p90 %.1f us p99 %.1f us max %.1f us, "
+                                + "%d expansions, max stack %d",
+                                name, getValidations(), getValidInputs(), getValidationsPerSecond(),
+                                getTokensPerSecond(), getLatencyP50Micros(), getLatencyP90Micros(),
+                                getLatencyP99Micros(), getLatencyMaxMicros(), getExpansions(),
+                                getMaxStackDepth()));
+        if (getMemoHits() + getMemoMisses() > 0) {
+            sb.append(String.format(", memo hit rate %.1f%%", getMemoHitRate() * 100));
+        }
+        Map<String, Long> byRule = getBacktracksByRule();
+        if (!byRule.isEmpty()) {
+            sb.append(", backtracks");
+            int shown = 0;
+            for (Map.Entry<String, Long> entry : byRule.entrySet()) {
+                if (shown++ == 5) {
+                    sb.append(" ...");
+                    break;
+                }
+                sb.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+            }
+        }
+        return sb.toString();
+    }
+}
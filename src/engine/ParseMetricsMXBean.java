@@ -0,0 +1,43 @@
+package engine;
+import java.util.*;
+
+// JMX view of a ParseMetrics. Rates are averaged since creation or the last
+// reset; monitoring tools that poll should prefer differencing the counters.
+public interface ParseMetricsMXBean {
+    long getValidations();
+
+    long getValidInputs();
+
+    long getTokens();
+
+    double getValidationsPerSecond();
+
+    double getTokensPerSecond();
+
+    double getLatencyP50Micros();
+
+    double getLatencyP90Micros();
+
+    double getLatencyP99Micros();
+
+    double getLatencyMaxMicros();
+
+    // LL(1) table expansions, or nonterminal calls for recursive descent.
+    long getExpansions();
+
+    long getMemoHits();
+
+    long getMemoMisses();
+
+    double getMemoHitRate();
+
+    // Deepest parse stack, or deepest nonterminal recursion for recursive descent.
+    long getMaxStackDepth();
+
+    long getBacktracks();
+
+    // Failed alternatives per rule, busiest first (JMX clients may reorder them).
+    Map<String, Long> getBacktracksByRule();
+
+    void reset();
+}
@@ -0,0 +1,7 @@
+package engine;
+
+// A compiled grammar that can answer membership queries from many threads at once.
+@FunctionalInterface
+public interface Recognizer {
+    boolean validate(String input);
+}
@@ -0,0 +1,139 @@
+package engine;
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.*;
+
+// Compiles generated Java source in memory and loads it into a fresh class loader,
+// so each generated parser can be unloaded with the objects that use it.
+public final class SourceCompiler {
+
+    private SourceCompiler() {
+    }
+
+    public static <T> T instantiate(String className, String source, Class<T> type) {
+        Class<?> compiled = compile(className, source);
+        try {
+            return type.cast(compiled.getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate generated class " + className, e);
+        }
+    }
+
+    public static Class<?> compile(String className, String source) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("Compiling generated parsers needs a JDK; no system Java compiler found");
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+        StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+        JavaFileManager fileManager = new ForwardingJavaFileManager<JavaFileManager>(standard) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String name, JavaFileObject.Kind kind,
+                                                       FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("bytes:///" + name.replace('.', '/') + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                        classes.put(name, bytes);
+                        return bytes;
+                    }
+                };
+            }
+        };
+        JavaFileObject file = new SimpleJavaFileObject(
+                URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        List<String> options = List.of("-classpath", classPath(), "-proc:none", "-g:source,lines");
+        boolean compiled = compiler.getTask(null, fileManager, diagnostics, options, null, List.of(file)).call();
+        if (!compiled) {
+            StringBuilder message = new StringBuilder("Generated source for " + className + " does not compile:");
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    message.append("\n  line ").append(diagnostic.getLineNumber()).append(": ")
+                           .append(diagnostic.getMessage(Locale.ROOT));
+                }
+            }
+            throw new IllegalArgumentException(message.toString());
+        }
+
+        ClassLoader loader = new ClassLoader(SourceCompiler.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                ByteArrayOutputStream bytes = classes.get(name);
+                if (bytes == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                byte[] code = bytes.toByteArray();
+                return defineClass(name, code, 0, code.length);
+            }
+        };
+        try {
+            return loader.loadClass(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Generated source did not define " + className, e);
+        }
+    }
+
+    // A Java string literal for text. Backslashes are escaped too, so a grammar
+    // symbol that spells a unicode escape (backslash, 'u', four hex digits) stays
+    // literal; the compiler translates those before anything else.
+    public static String quote(String text) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ' || c == 0x7f) {
+                sb.append(String.format("\\%03o", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    // Text that is safe to place after // in generated source.
+    public static String comment(String text) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            if (c == '\\') {
+                sb.append("\\\\");
+            } else {
+                sb.append(c < ' ' || c == 0x7f ? '?' : c);
+            }
+        }
+        return sb.toString();
+    }
+
+    // The generated code only depends on this package, so the location this class
+    // was loaded from is enough even when java.class.path is not (e.g. in a fat jar
+    // or an application server).
+    private static String classPath() {
+        Set<String> entries = new LinkedHashSet<>();
+        CodeSource codeSource = SourceCompiler.class.getProtectionDomain().getCodeSource();
+        if (codeSource != null && codeSource.getLocation() != null) {
+            try {
+                entries.add(Paths.get(codeSource.getLocation().toURI()).toString());
+            } catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+                // Not a file location; fall back to the class path below.
+            }
+        }
+        entries.addAll(Arrays.asList(System.getProperty("java.class.path", "").split(File.pathSeparator)));
+        entries.remove("");
+        return String.join(File.pathSeparator, entries);
+    }
+}
@@ -0,0 +1,8 @@
+package engine;
+import java.util.*;
+
+// A Recognizer that can also say what is wrong with an input. check reports every
+// error the engine can find in a single pass; an empty list means the input is valid.
+public interface SyntaxChecker extends Recognizer {
+    List<SyntaxError> check(String input);
+}
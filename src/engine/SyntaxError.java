@@ -0,0 +1,44 @@
+package engine;
+import java.util.*;
+
+// One syntax error: the index of the offending token in the input, its text
+// ("$" at the end of input) and the terminals that would have been accepted there.
+public final class SyntaxError {
+    private final int position;
+    private final String found;
+    private final List<String> expected;
+
+    public SyntaxError(int position, String found, List<String> expected) {
+        this.position = position;
+        this.found = found;
+        this.expected = List.copyOf(expected);
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public String getFound() {
+        return found;
+    }
+
+    public List<String> getExpected() {
+        return expected;
+    }
+
+    public String getMessage() {
+        String message = "Token " + position + " '" + found + "'";
+        if (expected.isEmpty()) {
+            return message + " is unexpected";
+        }
+        if (expected.size() == 1) {
+            return message + ": expected " + expected.get(0);
+        }
+        return message + ": expected one of " + String.join(" ", expected);
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
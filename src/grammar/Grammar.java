@@ -0,0 +1,213 @@
+package grammar;
+import java.util.*;
+
+// A context-free grammar with every symbol interned to an int id, shared by the
+// LL(1) and recursive descent engines so that neither has to hash or compare
+// symbol names once the grammar is read.
+//
+// Nonterminals come first, 0..N-1 in the order their rules are defined, then
+// terminals in order of first use. "$" is always a terminal; it is appended last
+// when no production mentions it. Bodies leave out EPSILON, so an empty body is
+// an epsilon production.
+public final class Grammar {
+    public static final String EPSILON = "epsilon";
+    public static final String END_MARKER = "$";
+
+    private final String[] symbols;
+    private final Map<String, Integer> ids;
+    private final int nonTerminalCount;
+    private final boolean implicitEndMarker;
+    private final int[] firstProduction;
+    private final int[] productionHead;
+    private final int[][] productionBody;
+    private final String[] productionText;
+
+    private Grammar(Map<String, List<List<String>>> rules) {
+        this.ids = new HashMap<>();
+        List<String> names = new ArrayList<>(rules.keySet());
+        for (String head : names) {
+            ids.put(head, ids.size());
+        }
+        this.nonTerminalCount = names.size();
+        int productionCount = 0;
+        for (List<List<String>> productions : rules.values()) {
+            productionCount += productions.size();
+            for (List<String> production : productions) {
+                for (String symbol : production) {
+                    if (!symbol.equals(EPSILON) && ids.putIfAbsent(symbol, names.size()) == null) {
+                        names.add(symbol);
+                    }
+                }
+            }
+        }
+        this.implicitEndMarker = ids.putIfAbsent(END_MARKER, names.size()) == null;
+        if (implicitEndMarker) {
+            names.add(END_MARKER);
+        }
+        this.symbols = names.toArray(new String[0]);
+
+        this.firstProduction = new int[nonTerminalCount + 1];
+        this.productionHead = new int[productionCount];
+        this.productionBody = new int[productionCount][];
+        this.productionText = new String[productionCount];
+        int p = 0;
+        int head = 0;
+        for (List<List<String>> productions : rules.values()) {
+            firstProduction[head] = p;
+            for (List<String> production : productions) {
+                int[] body = new int[production.size()];
+                int length = 0;
+                for (String symbol : production) {
+                    if (!symbol.equals(EPSILON)) {
+                        body[length++] = ids.get(symbol);
+                    }
+                }
+                productionHead[p] = head;
+                productionBody[p] = length == body.length ? body : Arrays.copyOf(body, length);
+                productionText[p] = String.join(" ", production);
+                p++;
+            }
+            head++;
+        }
+        firstProduction[nonTerminalCount] = productionCount;
+    }
+
+    public static Grammar of(Map<String, List<List<String>>> rules) {
+        return new Grammar(rules);
+    }
+
+    // Reads rules written one per line as "A -> x y | z | epsilon". Blank lines are
+    // skipped, an empty alternative means epsilon, and a nonterminal may have more
+    // than one line; its alternatives are appended in order.
+    public static Grammar parse(String text) {
+        Map<String, List<List<String>>> rules = new LinkedHashMap<>();
+        String[] lines = text.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            int arrow = line.indexOf("->");
+            String head = arrow > 0 ? line.substring(0, arrow).trim() : "";
+            if (head.isEmpty() || head.contains(" ") || head.equals(EPSILON) || head.equals(END_MARKER)) {
+                throw new IllegalArgumentException("Line " + (i + 1) + " is not a rule: " + line);
+            }
+            List<List<String>> productions = rules.computeIfAbsent(head, h -> new ArrayList<>());
+            for (String alternative : line.substring(arrow + 2).split("\\|", -1)) {
+                String body = alternative.trim();
+                productions.add(body.isEmpty() ? List.of(EPSILON) : List.of(body.split("\\s+")));
+            }
+        }
+        return new Grammar(rules);
+    }
+
+    // Separates tokens of input that is not scanned by a lexer: the ASCII
+    // whitespace characters, the same ones \s matches. Every engine, generated
+    // parsers included, splits text with tokens() and streaming token sources
+    // test single chars or bytes with this, so a text has the same tokens
+    // whichever way it is read.
+    public static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+    }
+
+    // The tokens of input between runs of whitespace; never an empty token, so
+    // blank input has none.
+    public static List<String> tokens(CharSequence input) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i < input.length(); i++) {
+            if (isWhitespace(input.charAt(i))) {
+                if (start >= 0) {
+                    tokens.add(input.subSequence(start, i).toString());
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        if (start >= 0) {
+            tokens.add(input.subSequence(start, input.length()).toString());
+        }
+        return tokens;
+    }
+
+    // The rules as lists of names; every occurrence of a symbol is the same String.
+    public Map<String, List<List<String>>> toRules() {
+        Map<String, List<List<String>>> rules = new LinkedHashMap<>();
+        for (int nt = 0; nt < nonTerminalCount; nt++) {
+            List<List<String>> productions = new ArrayList<>();
+            for (int p = firstProduction[nt]; p < firstProduction[nt + 1]; p++) {
+                List<String> production = new ArrayList<>();
+                for (int symbol : productionBody[p]) {
+                    production.add(symbols[symbol]);
+                }
+                productions.add(production.isEmpty() ? List.of(EPSILON) : production);
+            }
+            rules.put(symbols[nt], productions);
+        }
+        return rules;
+    }
+
+    public int getSymbolCount() {
+        return symbols.length;
+    }
+
+    public int getNonTerminalCount() {
+        return nonTerminalCount;
+    }
+
+    public int getTerminalCount() {
+        return symbols.length - nonTerminalCount;
+    }
+
+    // -1 when name is not a symbol of the grammar.
+    public int symbolId(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    public String symbolName(int symbol) {
+        return symbols[symbol];
+    }
+
+    public boolean isTerminal(int symbol) {
+        return symbol >= nonTerminalCount;
+    }
+
+    public int getEndMarker() {
+        return implicitEndMarker ? symbols.length - 1 : ids.get(END_MARKER);
+    }
+
+    public List<String> getNonTerminals() {
+        return Collections.unmodifiableList(Arrays.asList(symbols).subList(0, nonTerminalCount));
+    }
+
+    // Terminals used by some production; the implicit "$" is not one of them.
+    public List<String> getTerminals() {
+        return Collections.unmodifiableList(
+                Arrays.asList(symbols).subList(nonTerminalCount, symbols.length - (implicitEndMarker ? 1 : 0)));
+    }
+
+    public int getProductionCount() {
+        return productionHead.length;
+    }
+
+    // The productions of a nonterminal are firstProduction(nt) up to, but not
+    // including, firstProduction(nt + 1), in the order they were written.
+    public int firstProduction(int nonTerminal) {
+        return firstProduction[nonTerminal];
+    }
+
+    public int productionHead(int production) {
+        return productionHead[production];
+    }
+
+    public int[] productionBody(int production) {
+        return productionBody[production];
+    }
+
+    // The alternative as written, "epsilon" included.
+    public String productionText(int production) {
+        return productionText[production];
+    }
+}
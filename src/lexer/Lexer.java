@@ -0,0 +1,318 @@
+package lexer;
+import grammar.Grammar;
+import java.io.Reader;
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+// Turns text into token kinds with a minimized DFA, so input no longer has to
+// be pre-spaced and terminals are not limited to literal strings. Kinds are
+// indexes into getTokenNames(); engines map them to their own terminal ids once,
+// with tokenIds, and never create a String per token.
+//
+// Every char is first mapped to an equivalence class: chars that no pattern
+// tells apart share one, which keeps the transition table, states times classes,
+// small. Scanning takes the longest match; on a tie the kind listed first wins,
+// so literals such as keywords beat a pattern for identifiers.
+public final class Lexer {
+    // Kinds returned besides token indexes.
+    public static final int END = -1;
+    public static final int ERROR = -2;
+    public static final String DEFAULT_SKIP = "\\s+";
+
+    static final int DEAD = 0;
+    static final int NONE = -1;
+    private static final int MAX_STATES = 1 << 16;
+
+    private final String[] names;
+    private final char[] classMap;
+    private final int classCount;
+    private final int[] transitions;
+    private final int[] accept;
+    private final int start;
+    private final int skip;
+
+    private Lexer(String[] names, char[] classMap, int classCount, int[] transitions, int[] accept, int start,
+                  int skip) {
+        this.names = names;
+        this.classMap = classMap;
+        this.classCount = classCount;
+        this.transitions = transitions;
+        this.accept = accept;
+        this.start = start;
+        this.skip = skip;
+    }
+
+    // A lexer for the terminals of grammar: those named in patterns match their
+    // regular expression, the rest match their own spelling. Whitespace between
+    // tokens is skipped.
+    public static Lexer forGrammar(Grammar grammar, Map<String, String> patterns) {
+        return forTerminals(grammar.getTerminals(), patterns);
+    }
+
+    public static Lexer forTerminals(Collection<String> terminals, Map<String, String> patterns) {
+        List<String> literals = new ArrayList<>();
+        for (String terminal : terminals) {
+            if (!patterns.containsKey(terminal) && !terminal.equals(Grammar.END_MARKER)
+                    && !terminal.equals(Grammar.EPSILON)) {
+                literals.add(terminal);
+            }
+        }
+        for (String name : patterns.keySet()) {
+            if (!terminals.contains(name)) {
+                throw new IllegalArgumentException("Pattern for " + name + ", which is not a terminal");
+            }
+        }
+        return compile(literals, patterns, DEFAULT_SKIP);
+    }
+
+    // Literals come first, then patterns in iteration order; text matching skip,
+    // if not null, separates tokens and is dropped.
+    public static Lexer compile(List<String> literals, Map<String, String> patterns, String skip) {
+        String[] names = new String[literals.size() + patterns.size()];
+        Nfa nfa = new Nfa();
+        int nfaStart = nfa.addState();
+        int kind = 0;
+        for (String literal : literals) {
+            if (literal.isEmpty()) {
+                throw new IllegalArgumentException("Empty literal token");
+            }
+            names[kind] = literal;
+            add(nfa, nfaStart, Regex.literal(nfa, literal), kind++);
+        }
+        for (Map.Entry<String, String> pattern : patterns.entrySet()) {
+            names[kind] = pattern.getKey();
+            add(nfa, nfaStart, Regex.compile(nfa, pattern.getKey(), pattern.getValue()), kind++);
+        }
+        int skipKind = NONE;
+        if (skip != null) {
+            skipKind = kind;
+            add(nfa, nfaStart, Regex.compile(nfa, "skipped text", skip), skipKind);
+        }
+        return build(names, nfa, nfaStart, skipKind);
+    }
+
+    private static void add(Nfa nfa, int start, int[] fragment, int kind) {
+        nfa.addEpsilon(start, fragment[0]);
+        nfa.setAccept(fragment[1], kind);
+    }
+
+    private static Lexer build(String[] names, Nfa nfa, int nfaStart, int skipKind) {
+        // Class boundaries: every char where some range starts or ends.
+        BitSet cuts = new BitSet(0x10001);
+        cuts.set(0);
+        cuts.set(0x10000);
+        for (int s = 0; s < nfa.size(); s++) {
+            int[] ranges = nfa.ranges(s);
+            if (ranges != null) {
+                for (int i = 0; i < ranges.length; i += 2) {
+                    cuts.set(ranges[i]);
+                    cuts.set(ranges[i + 1] + 1);
+                }
+            }
+        }
+        char[] classMap = new char[0x10000];
+        int classCount = 0;
+        for (int cut = 0, next; cut < 0x10000; cut = next) {
+            next = cuts.nextSetBit(cut + 1);
+            Arrays.fill(classMap, cut, next, (char) classCount++);
+        }
+
+        // Subset construction; state 0 is the dead state, the empty set.
+        Map<BitSet, Integer> ids = new HashMap<>();
+        List<BitSet> states = new ArrayList<>();
+        states.add(new BitSet());
+        ids.put(states.get(0), DEAD);
+        BitSet initial = new BitSet();
+        initial.set(nfaStart);
+        nfa.close(initial);
+        states.add(initial);
+        ids.put(initial, 1);
+        int[] transitions = new int[classCount * 64];
+        int[] accept = new int[64];
+        accept[DEAD] = NONE;
+        BitSet[] moves = new BitSet[classCount];
+        int[] touched = new int[classCount];
+        for (int d = 1; d < states.size(); d++) {
+            BitSet set = states.get(d);
+            int kind = NONE;
+            int touchedCount = 0;
+            for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+                int accepted = nfa.accept(s);
+                if (accepted != NONE && (kind == NONE || accepted < kind)) {
+                    kind = accepted;
+                }
+                int[] ranges = nfa.ranges(s);
+                if (ranges == null) {
+                    continue;
+                }
+                for (int i = 0; i < ranges.length; i += 2) {
+                    for (int c = classMap[ranges[i]]; c <= classMap[ranges[i + 1]]; c++) {
+                        if (moves[c] == null) {
+                            moves[c] = new BitSet();
+                            touched[touchedCount++] = c;
+                        }
+                        moves[c].set(nfa.target(s));
+                    }
+                }
+            }
+            if (d == 1 && kind != NONE) {
+                String name = kind < names.length ? names[kind] : "skipped text";
+                throw new IllegalArgumentException("Pattern for " + name + " matches the empty string");
+            }
+            if (d == accept.length) {
+                accept = Arrays.copyOf(accept, d * 2);
+                transitions = Arrays.copyOf(transitions, d * 2 * classCount);
+            }
+            accept[d] = kind;
+            for (int i = 0; i < touchedCount; i++) {
+                int c = touched[i];
+                BitSet move = moves[c];
+                moves[c] = null;
+                nfa.close(move);
+                Integer id = ids.get(move);
+                if (id == null) {
+                    if (states.size() == MAX_STATES) {
+                        throw new IllegalArgumentException("Token patterns need more than " + MAX_STATES
+                                                           + " DFA states");
+                    }
+                    id = states.size();
+                    states.add(move);
+                    ids.put(move, id);
+                }
+                transitions[d * classCount + c] = id;
+            }
+        }
+        return minimize(names, classMap, classCount, transitions, accept, states.size(), skipKind);
+    }
+
+    // Moore's partition refinement: split blocks of states until states in one
+    // block accept the same kind and move to the same blocks on every class.
+    private static Lexer minimize(String[] names, char[] classMap, int classCount, int[] transitions, int[] accept,
+                                  int stateCount, int skipKind) {
+        int[] block = new int[stateCount];
+        Map<Integer, Integer> byKind = new HashMap<>();
+        for (int s = 0; s < stateCount; s++) {
+            block[s] = byKind.computeIfAbsent(accept[s], k -> byKind.size());
+        }
+        int blockCount = byKind.size();
+        while (true) {
+            Map<List<Integer>, Integer> signatures = new HashMap<>();
+            int[] refined = new int[stateCount];
+            for (int s = 0; s < stateCount; s++) {
+                List<Integer> signature = new ArrayList<>(classCount + 1);
+                signature.add(block[s]);
+                for (int c = 0; c < classCount; c++) {
+                    signature.add(block[transitions[s * classCount + c]]);
+                }
+                Integer id = signatures.get(signature);
+                if (id == null) {
+                    id = signatures.size();
+                    signatures.put(signature, id);
+                }
+                refined[s] = id;
+            }
+            block = refined;
+            if (signatures.size() == blockCount) {
+                break;
+            }
+            blockCount = signatures.size();
+        }
+
+        // Renumber so that the dead state's block is 0 again.
+        int[] number = new int[blockCount];
+        Arrays.fill(number, -1);
+        number[block[DEAD]] = DEAD;
+        int count = 1;
+        for (int s = 0; s < stateCount; s++) {
+            if (number[block[s]] < 0) {
+                number[block[s]] = count++;
+            }
+        }
+        int[] minimalTransitions = new int[count * classCount];
+        int[] minimalAccept = new int[count];
+        for (int s = 0; s < stateCount; s++) {
+            int m = number[block[s]];
+            minimalAccept[m] = accept[s];
+            for (int c = 0; c < classCount; c++) {
+                minimalTransitions[m * classCount + c] = number[block[transitions[s * classCount + c]]];
+            }
+        }
+        return new Lexer(names, classMap, classCount, minimalTransitions, minimalAccept, number[block[1]],
+                         skipKind);
+    }
+
+    public List<String> getTokenNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    public int getStateCount() {
+        return accept.length;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    // The id of every kind under id, e.g. a parser's terminal lookup.
+    public int[] tokenIds(ToIntFunction<String> id) {
+        int[] ids = new int[names.length];
+        for (int kind = 0; kind < names.length; kind++) {
+            ids[kind] = id.applyAsInt(names[kind]);
+        }
+        return ids;
+    }
+
+    public TokenScanner scanner(CharSequence input) {
+        return new TokenScanner(this, input);
+    }
+
+    public TokenScanner scanner(Reader reader) {
+        return new TokenScanner(this, reader);
+    }
+
+    // The text of every token, for messages and trace tables; unmatched text
+    // comes out one char at a time.
+    public List<String> tokenTexts(CharSequence input) {
+        List<String> texts = new ArrayList<>();
+        TokenScanner scanner = scanner(input);
+        while (scanner.next() != END) {
+            texts.add(scanner.tokenText());
+        }
+        return texts;
+    }
+
+    // The text of token index, or null when input has fewer tokens.
+    public String tokenText(CharSequence input, int index) {
+        TokenScanner scanner = scanner(input);
+        for (int i = 0; scanner.next() != END; i++) {
+            if (i == index) {
+                return scanner.tokenText();
+            }
+        }
+        return null;
+    }
+
+    char[] classMap() {
+        return classMap;
+    }
+
+    int classCount() {
+        return classCount;
+    }
+
+    int[] transitions() {
+        return transitions;
+    }
+
+    int[] accept() {
+        return accept;
+    }
+
+    int start() {
+        return start;
+    }
+
+    int skip() {
+        return skip;
+    }
+}
@@ -0,0 +1,94 @@
+package lexer;
+import java.util.*;
+
+// Thompson NFA over UTF-16 chars, built from every token pattern at once. A state
+// has either epsilon edges or one edge taken on any char of a set of ranges.
+final class Nfa {
+    static final int NONE = -1;
+
+    private int[][] epsilon = new int[64][];
+    private int[] epsilonCount = new int[64];
+    private int[][] ranges = new int[64][];
+    private int[] target = new int[64];
+    private int[] accept = new int[64];
+    private int size;
+
+    int addState() {
+        if (size == target.length) {
+            int capacity = size * 2;
+            epsilon = Arrays.copyOf(epsilon, capacity);
+            epsilonCount = Arrays.copyOf(epsilonCount, capacity);
+            ranges = Arrays.copyOf(ranges, capacity);
+            target = Arrays.copyOf(target, capacity);
+            accept = Arrays.copyOf(accept, capacity);
+        }
+        accept[size] = NONE;
+        return size++;
+    }
+
+    void addEpsilon(int from, int to) {
+        int[] edges = epsilon[from];
+        if (edges == null) {
+            edges = epsilon[from] = new int[2];
+        } else if (epsilonCount[from] == edges.length) {
+            edges = epsilon[from] = Arrays.copyOf(edges, edges.length * 2);
+        }
+        edges[epsilonCount[from]++] = to;
+    }
+
+    // set holds sorted, disjoint inclusive ranges as lo, hi pairs.
+    void addRanges(int from, int[] set, int to) {
+        ranges[from] = set;
+        target[from] = to;
+    }
+
+    void setAccept(int state, int kind) {
+        accept[state] = kind;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int epsilonCount(int state) {
+        return epsilonCount[state];
+    }
+
+    int epsilon(int state, int index) {
+        return epsilon[state][index];
+    }
+
+    int[] ranges(int state) {
+        return ranges[state];
+    }
+
+    int target(int state) {
+        return target[state];
+    }
+
+    int accept(int state) {
+        return accept[state];
+    }
+
+    // Adds the states reachable from set over epsilon edges to it.
+    void close(BitSet set) {
+        int[] stack = new int[Math.max(16, set.cardinality())];
+        int top = 0;
+        for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+            stack[top++] = s;
+        }
+        while (top > 0) {
+            int state = stack[--top];
+            for (int i = 0; i < epsilonCount[state]; i++) {
+                int next = epsilon[state][i];
+                if (!set.get(next)) {
+                    set.set(next);
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top * 2);
+                    }
+                    stack[top++] = next;
+                }
+            }
+        }
+    }
+}
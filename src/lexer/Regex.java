@@ -0,0 +1,367 @@
+package lexer;
+import java.util.*;
+
+// Reads a token pattern into the shared NFA. The syntax is the common subset of
+// java.util.regex: alternation, grouping, the quantifiers * + ? {n} {n,} {n,m},
+// character classes with ranges and negation, '.', and the escapes \d \w \s
+// (and their negations), \n \r \t \f and \\uXXXX. Patterns work on UTF-16 chars;
+// a character outside the BMP is two of them.
+final class Regex {
+    private static final int MAX_CHAR = 0xFFFF;
+    private static final int MAX_REPEAT = 1000;
+    private static final int[] DIGIT = {'0', '9'};
+    private static final int[] WORD = {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+    private static final int[] SPACE = {'\t', '\r', ' ', ' '};
+
+    private static final int CHARS = 0;
+    private static final int EMPTY = 1;
+    private static final int CONCAT = 2;
+    private static final int ALTERNATION = 3;
+    private static final int REPEAT = 4;
+
+    private static final class Node {
+        final int type;
+        final int[] set;
+        final Node left;
+        final Node right;
+        final int min;
+        final int max;
+
+        Node(int type, int[] set, Node left, Node right, int min, int max) {
+            this.type = type;
+            this.set = set;
+            this.left = left;
+            this.right = right;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    private final String name;
+    private final String pattern;
+    private int position;
+
+    private Regex(String name, String pattern) {
+        this.name = name;
+        this.pattern = pattern;
+    }
+
+    // Adds pattern to nfa and returns its start and end states.
+    static int[] compile(Nfa nfa, String name, String pattern) {
+        Regex regex = new Regex(name, pattern);
+        Node node = regex.alternation();
+        if (regex.position < pattern.length()) {
+            throw regex.error("unbalanced ')'");
+        }
+        return build(nfa, node);
+    }
+
+    // A chain of states matching text exactly.
+    static int[] literal(Nfa nfa, String text) {
+        int start = nfa.addState();
+        int end = start;
+        for (int i = 0; i < text.length(); i++) {
+            int next = nfa.addState();
+            nfa.addRanges(end, new int[] {text.charAt(i), text.charAt(i)}, next);
+            end = next;
+        }
+        return new int[] {start, end};
+    }
+
+    private static int[] build(Nfa nfa, Node node) {
+        switch (node.type) {
+            case CHARS: {
+                int start = nfa.addState();
+                int end = nfa.addState();
+                nfa.addRanges(start, node.set, end);
+                return new int[] {start, end};
+            }
+            case EMPTY: {
+                int state = nfa.addState();
+                return new int[] {state, state};
+            }
+            case CONCAT: {
+                int[] left = build(nfa, node.left);
+                int[] right = build(nfa, node.right);
+                nfa.addEpsilon(left[1], right[0]);
+                return new int[] {left[0], right[1]};
+            }
+            case ALTERNATION: {
+                int start = nfa.addState();
+                int end = nfa.addState();
+                for (Node branch : new Node[] {node.left, node.right}) {
+                    int[] fragment = build(nfa, branch);
+                    nfa.addEpsilon(start, fragment[0]);
+                    nfa.addEpsilon(fragment[1], end);
+                }
+                return new int[] {start, end};
+            }
+            default: {
+                int start = nfa.addState();
+                int end = start;
+                for (int i = 0; i < node.min; i++) {
+                    int[] copy = build(nfa, node.left);
+                    nfa.addEpsilon(end, copy[0]);
+                    end = copy[1];
+                }
+                if (node.max < 0) {
+                    int[] loop = build(nfa, node.left);
+                    int exit = nfa.addState();
+                    nfa.addEpsilon(end, loop[0]);
+                    nfa.addEpsilon(end, exit);
+                    nfa.addEpsilon(loop[1], loop[0]);
+                    nfa.addEpsilon(loop[1], exit);
+                    return new int[] {start, exit};
+                }
+                // Each optional copy may be skipped straight to the end.
+                int exit = nfa.addState();
+                for (int i = node.min; i < node.max; i++) {
+                    int[] copy = build(nfa, node.left);
+                    nfa.addEpsilon(end, copy[0]);
+                    nfa.addEpsilon(end, exit);
+                    end = copy[1];
+                }
+                nfa.addEpsilon(end, exit);
+                return new int[] {start, exit};
+            }
+        }
+    }
+
+    private Node alternation() {
+        Node node = concatenation();
+        while (peek() == '|') {
+            position++;
+            node = new Node(ALTERNATION, null, node, concatenation(), 0, 0);
+        }
+        return node;
+    }
+
+    private Node concatenation() {
+        Node node = null;
+        while (position < pattern.length() && peek() != '|' && peek() != ')') {
+            Node next = repetition();
+            node = node == null ? next : new Node(CONCAT, null, node, next, 0, 0);
+        }
+        return node != null ? node : new Node(EMPTY, null, null, null, 0, 0);
+    }
+
+    private Node repetition() {
+        Node node = atom();
+        while (position < pattern.length()) {
+            char c = peek();
+            int min;
+            int max;
+            if (c == '*') {
+                min = 0;
+                max = -1;
+            } else if (c == '+') {
+                min = 1;
+                max = -1;
+            } else if (c == '?') {
+                min = 0;
+                max = 1;
+            } else if (c == '{') {
+                position++;
+                min = number();
+                max = min;
+                if (peek() == ',') {
+                    position++;
+                    max = peek() == '}' ? -1 : number();
+                }
+                if (peek() != '}') {
+                    throw error("expected '}'");
+                }
+                if (max >= 0 && max < min || Math.max(min, max) > MAX_REPEAT) {
+                    throw error("bad repetition");
+                }
+            } else {
+                break;
+            }
+            position++;
+            node = new Node(REPEAT, null, node, null, min, max);
+        }
+        return node;
+    }
+
+    private Node atom() {
+        char c = pattern.charAt(position++);
+        switch (c) {
+            case '(': {
+                Node node = alternation();
+                if (peek() != ')') {
+                    throw error("expected ')'");
+                }
+                position++;
+                return node;
+            }
+            case '[':
+                return chars(characterClass());
+            case '.':
+                return chars(complement(new int[] {'\n', '\n'}));
+            case '\\':
+                return chars(escape());
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+                throw error("nothing to repeat");
+            default:
+                return chars(new int[] {c, c});
+        }
+    }
+
+    private int[] characterClass() {
+        boolean negated = peek() == '^';
+        if (negated) {
+            position++;
+        }
+        List<int[]> parts = new ArrayList<>();
+        boolean first = true;
+        while (first || peek() != ']') {
+            if (position >= pattern.length()) {
+                throw error("expected ']'");
+            }
+            first = false;
+            char c = pattern.charAt(position++);
+            int[] item;
+            if (c == '\\') {
+                item = escape();
+            } else {
+                item = new int[] {c, c};
+            }
+            if (peek() == '-' && position + 1 < pattern.length() && pattern.charAt(position + 1) != ']') {
+                if (item.length != 2 || item[0] != item[1]) {
+                    throw error("bad range");
+                }
+                position++;
+                char high = pattern.charAt(position++);
+                int end = high == '\\' ? single(escape()) : high;
+                if (end < item[0]) {
+                    throw error("bad range");
+                }
+                item = new int[] {item[0], end};
+            }
+            parts.add(item);
+        }
+        position++;
+        int[] set = union(parts);
+        return negated ? complement(set) : set;
+    }
+
+    private int single(int[] set) {
+        if (set.length != 2 || set[0] != set[1]) {
+            throw error("bad range");
+        }
+        return set[0];
+    }
+
+    private int[] escape() {
+        if (position >= pattern.length()) {
+            throw error("trailing '\\'");
+        }
+        char c = pattern.charAt(position++);
+        switch (c) {
+            case 'd':
+                return DIGIT;
+            case 'D':
+                return complement(DIGIT);
+            case 'w':
+                return WORD;
+            case 'W':
+                return complement(WORD);
+            case 's':
+                return SPACE;
+            case 'S':
+                return complement(SPACE);
+            case 'n':
+                return new int[] {'\n', '\n'};
+            case 'r':
+                return new int[] {'\r', '\r'};
+            case 't':
+                return new int[] {'\t', '\t'};
+            case 'f':
+                return new int[] {'\f', '\f'};
+            case 'u': {
+                if (position + 4 > pattern.length()) {
+                    throw error("bad \\u escape");
+                }
+                try {
+                    int code = Integer.parseInt(pattern.substring(position, position + 4), 16);
+                    position += 4;
+                    return new int[] {code, code};
+                } catch (NumberFormatException e) {
+                    throw error("bad \\u escape");
+                }
+            }
+            default:
+                if (Character.isLetterOrDigit(c)) {
+                    throw error("unknown escape \\" + c);
+                }
+                return new int[] {c, c};
+        }
+    }
+
+    private int number() {
+        int start = position;
+        while (position < pattern.length() && Character.isDigit(pattern.charAt(position))
+                && position - start < 5) {
+            position++;
+        }
+        if (position == start) {
+            throw error("expected a number");
+        }
+        return Integer.parseInt(pattern.substring(start, position));
+    }
+
+    private char peek() {
+        return position < pattern.length() ? pattern.charAt(position) : '\0';
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Bad pattern for " + name + " at " + position + ": " + message
+                                            + " in " + pattern);
+    }
+
+    private static Node chars(int[] set) {
+        return new Node(CHARS, set, null, null, 0, 0);
+    }
+
+    private static int[] union(List<int[]> parts) {
+        List<int[]> ranges = new ArrayList<>();
+        for (int[] part : parts) {
+            for (int i = 0; i < part.length; i += 2) {
+                ranges.add(new int[] {part[i], part[i + 1]});
+            }
+        }
+        ranges.sort(Comparator.comparingInt(range -> range[0]));
+        int[] set = new int[ranges.size() * 2];
+        int length = 0;
+        for (int[] range : ranges) {
+            if (length > 0 && range[0] <= set[length - 1] + 1) {
+                set[length - 1] = Math.max(set[length - 1], range[1]);
+            } else {
+                set[length++] = range[0];
+                set[length++] = range[1];
+            }
+        }
+        return Arrays.copyOf(set, length);
+    }
+
+    private static int[] complement(int[] set) {
+        int[] result = new int[set.length + 2];
+        int length = 0;
+        int next = 0;
+        for (int i = 0; i < set.length; i += 2) {
+            if (set[i] > next) {
+                result[length++] = next;
+                result[length++] = set[i] - 1;
+            }
+            next = set[i + 1] + 1;
+        }
+        if (next <= MAX_CHAR) {
+            result[length++] = next;
+            result[length++] = MAX_CHAR;
+        }
+        return Arrays.copyOf(result, length);
+    }
+}
@@ -0,0 +1,160 @@
+package lexer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+// One pass of a Lexer over some input. next() walks the transition table one
+// char at a time and remembers the last accepting state, so the longest match
+// costs one table lookup per char and backs up at most to where it ended.
+//
+// Input from a Reader is read in chunks; the token being scanned is moved to the
+// front of the buffer before the next chunk, so memory use is bounded by the
+// longest token. A read failure surfaces as UncheckedIOException.
+public final class TokenScanner implements Closeable {
+    private final char[] classMap;
+    private final int classCount;
+    private final int[] transitions;
+    private final int[] accept;
+    private final int start;
+    private final int skip;
+    private final Reader reader;
+    private boolean exhausted;
+    private char[] buffer;
+    private int position;
+    private int limit;
+    // Chars dropped from the front of buffer so far.
+    private long base;
+    private int tokenStart;
+    private int tokenLength;
+
+    private TokenScanner(Lexer lexer, Reader reader, char[] buffer, int limit) {
+        this.classMap = lexer.classMap();
+        this.classCount = lexer.classCount();
+        this.transitions = lexer.transitions();
+        this.accept = lexer.accept();
+        this.start = lexer.start();
+        this.skip = lexer.skip();
+        this.reader = reader;
+        this.exhausted = reader == null;
+        this.buffer = buffer;
+        this.limit = limit;
+    }
+
+    TokenScanner(Lexer lexer, CharSequence input) {
+        this(lexer, null, toChars(input), input.length());
+    }
+
+    TokenScanner(Lexer lexer, Reader reader) {
+        this(lexer, reader, new char[8192], 0);
+    }
+
+    private static char[] toChars(CharSequence input) {
+        if (input instanceof String) {
+            return ((String) input).toCharArray();
+        }
+        char[] chars = new char[input.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = input.charAt(i);
+        }
+        return chars;
+    }
+
+    // The kind of the next token, Lexer.ERROR for a char no token can start
+    // with, or Lexer.END once input is exhausted.
+    public int next() {
+        while (true) {
+            if (position == limit && !fill()) {
+                tokenStart = position;
+                tokenLength = 0;
+                return Lexer.END;
+            }
+            int state = start;
+            int kind = Lexer.ERROR;
+            int end = position + 1;
+            int i = position;
+            while (true) {
+                if (i == limit) {
+                    // fill() may drop what is before position even when it
+                    // then finds the end of input.
+                    int before = position;
+                    boolean filled = fill();
+                    i -= before - position;
+                    end -= before - position;
+                    if (!filled) {
+                        break;
+                    }
+                }
+                state = transitions[state * classCount + classMap[buffer[i]]];
+                if (state == Lexer.DEAD) {
+                    break;
+                }
+                i++;
+                int accepted = accept[state];
+                if (accepted != Lexer.NONE) {
+                    kind = accepted;
+                    end = i;
+                }
+            }
+            tokenStart = position;
+            tokenLength = end - position;
+            position = end;
+            if (kind != skip) {
+                return kind;
+            }
+        }
+    }
+
+    // Offset of the last token from the start of input, in chars.
+    public long tokenStart() {
+        return base + tokenStart;
+    }
+
+    public int tokenLength() {
+        return tokenLength;
+    }
+
+    // Allocates; meant for messages, not for every token.
+    public String tokenText() {
+        return new String(buffer, tokenStart, tokenLength);
+    }
+
+    // Reads more input after limit, first dropping what is before position;
+    // false at end of input.
+    private boolean fill() {
+        if (exhausted) {
+            return false;
+        }
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            base += position;
+            limit -= position;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        try {
+            int read;
+            do {
+                read = reader.read(buffer, limit, buffer.length - limit);
+            } while (read == 0);
+            if (read < 0) {
+                exhausted = true;
+                return false;
+            }
+            limit += read;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package rdp;
+import grammar.Grammar;
+import java.util.*;
+
+// Rewrites left-recursive rules (A -> A a | b becomes A -> b A', A' -> a A' | epsilon)
+// so that recursive descent always consumes input before recursing. The parsers
+// run each A' it creates as a loop (see RDPGrammar.isLoop), so a long
+// left-associative chain does not nest one call per operator. Indirect recursion
+// is first turned into direct recursion by substitution, but only for the
+// nonterminals that actually sit on a left-recursive cycle.
+class LeftRecursion {
+
+    static final class Result {
+        final Map<String, List<List<String>>> rules;
+        // Names of the A' rules the rewrite added.
+        final Set<String> tails;
+
+        Result(Map<String, List<List<String>>> rules, Set<String> tails) {
+            this.rules = rules;
+            this.tails = tails;
+        }
+    }
+
+    static Result eliminate(Map<String, List<List<String>>> grammar) {
+        Set<String> nullable = findNullable(grammar);
+        List<String> order = new ArrayList<>(grammar.keySet());
+        Map<String, Set<String>> recursive = findLeftRecursive(grammar, nullable, order);
+        if (recursive.isEmpty()) {
+            return new Result(grammar, Set.of());
+        }
+
+        Map<String, List<List<String>>> rules = new LinkedHashMap<>();
+        for (Map.Entry<String, List<List<String>>> entry : grammar.entrySet()) {
+            rules.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        Map<String, String> tails = new HashMap<>();
+
+        List<String> done = new ArrayList<>();
+        for (String head : order) {
+            if (!recursive.containsKey(head)) {
+                continue;
+            }
+            for (String earlier : done) {
+                if (!recursive.get(head).contains(earlier) || !recursive.get(earlier).contains(head)) {
+                    continue;
+                }
+                List<List<String>> expanded = new ArrayList<>();
+                for (List<String> production : rules.get(head)) {
+                    if (production.get(0).equals(earlier)) {
+                        for (List<String> replacement : rules.get(earlier)) {
+                            expanded.add(concat(replacement, production.subList(1, production.size())));
+                        }
+                    } else {
+                        expanded.add(production);
+                    }
+                }
+                rules.put(head, expanded);
+            }
+            eliminateDirect(head, rules, tails);
+            done.add(head);
+        }
+
+        Map<String, List<List<String>>> result = new LinkedHashMap<>();
+        for (String head : order) {
+            result.put(head, rules.get(head));
+            String tail = tails.get(head);
+            if (tail != null) {
+                result.put(tail, rules.get(tail));
+            }
+        }
+        return new Result(result, new HashSet<>(tails.values()));
+    }
+
+    private static void eliminateDirect(String head, Map<String, List<List<String>>> rules, Map<String, String> tails) {
+        List<List<String>> recursiveTails = new ArrayList<>();
+        List<List<String>> bases = new ArrayList<>();
+        for (List<String> production : rules.get(head)) {
+            if (production.get(0).equals(head)) {
+                if (production.size() > 1) {
+                    recursiveTails.add(production.subList(1, production.size()));
+                }
+            } else {
+                bases.add(production);
+            }
+        }
+        if (recursiveTails.isEmpty()) {
+            rules.put(head, bases);
+            return;
+        }
+        if (bases.isEmpty()) {
+            throw new IllegalArgumentException("Left-recursive rule " + head + " has no non-recursive alternative");
+        }
+
+        String tail = head + "'";
+        while (rules.containsKey(tail)) {
+            tail += "'";
+        }
+        List<String> tailSymbol = List.of(tail);
+
+        List<List<String>> headProductions = new ArrayList<>();
+        for (List<String> base : bases) {
+            headProductions.add(isEpsilon(base) ? tailSymbol : concat(base, tailSymbol));
+        }
+        List<List<String>> tailProductions = new ArrayList<>();
+        for (List<String> recursiveTail : recursiveTails) {
+            tailProductions.add(concat(recursiveTail, tailSymbol));
+        }
+        tailProductions.add(List.of(Grammar.EPSILON));
+
+        rules.put(head, headProductions);
+        rules.put(tail, tailProductions);
+        tails.put(head, tail);
+    }
+
+    // Maps every left-recursive nonterminal to the nonterminals it can reach
+    // through left corners.
+    private static Map<String, Set<String>> findLeftRecursive(Map<String, List<List<String>>> grammar,
+                                                              Set<String> nullable, List<String> order) {
+        Map<String, Set<String>> leftCorners = new HashMap<>();
+        Map<String, Set<String>> hiddenCorners = new HashMap<>();
+        for (String head : order) {
+            Set<String> corners = new LinkedHashSet<>();
+            Set<String> hidden = new HashSet<>();
+            for (List<String> production : grammar.get(head)) {
+                for (int i = 0; i < production.size(); i++) {
+                    String symbol = production.get(i);
+                    if (grammar.containsKey(symbol)) {
+                        corners.add(symbol);
+                        if (i > 0) {
+                            hidden.add(symbol);
+                        }
+                    }
+                    if (!nullable.contains(symbol) && !symbol.equals(Grammar.EPSILON)) {
+                        break;
+                    }
+                }
+            }
+            leftCorners.put(head, corners);
+            hiddenCorners.put(head, hidden);
+        }
+
+        Map<String, Set<String>> recursive = new LinkedHashMap<>();
+        for (String head : order) {
+            Set<String> reachable = reachable(head, leftCorners);
+            if (!reachable.contains(head)) {
+                continue;
+            }
+            recursive.put(head, reachable);
+            for (String hidden : hiddenCorners.get(head)) {
+                if (hidden.equals(head) || reachable(hidden, leftCorners).contains(head)) {
+                    throw new IllegalArgumentException("Rule " + head
+                            + " is left-recursive through a nullable prefix and cannot be rewritten");
+                }
+            }
+        }
+        return recursive;
+    }
+
+    private static Set<String> reachable(String from, Map<String, Set<String>> edges) {
+        Set<String> seen = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>(edges.get(from));
+        while (!pending.isEmpty()) {
+            String next = pending.pop();
+            if (seen.add(next)) {
+                pending.addAll(edges.get(next));
+            }
+        }
+        return seen;
+    }
+
+    private static Set<String> findNullable(Map<String, List<List<String>>> grammar) {
+        Set<String> nullable = new HashSet<>();
+        boolean updated;
+        do {
+            updated = false;
+            for (Map.Entry<String, List<List<String>>> entry : grammar.entrySet()) {
+                if (nullable.contains(entry.getKey())) {
+                    continue;
+                }
+                for (List<String> production : entry.getValue()) {
+                    if (production.stream().allMatch(s -> s.equals(Grammar.EPSILON) || nullable.contains(s))) {
+                        nullable.add(entry.getKey());
+                        updated = true;
+                        break;
+                    }
+                }
+            }
+        } while (updated);
+        return nullable;
+    }
+
+    private static boolean isEpsilon(List<String> production) {
+        return production.size() == 1 && production.get(0).equals(Grammar.EPSILON);
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        List<String> result = new ArrayList<>();
+        for (String symbol : first) {
+            if (!symbol.equals(Grammar.EPSILON)) {
+                result.add(symbol);
+            }
+        }
+        for (String symbol : second) {
+            if (!symbol.equals(Grammar.EPSILON)) {
+                result.add(symbol);
+            }
+        }
+        if (result.isEmpty()) {
+            result.add(Grammar.EPSILON);
+        }
+        return result;
+    }
+}
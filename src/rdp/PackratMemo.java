@@ -0,0 +1,92 @@
+package rdp;
+import java.util.*;
+
+// Results of (nonterminal, token index) attempts. Small inputs get a dense table
+// with one slot per pair; once that would exceed the entry limit the memo turns
+// into a fixed-size direct-mapped cache where a new entry evicts whatever shared
+// its slot, so memory stays bounded and evicted pairs are simply re-parsed.
+//
+// A parser keeps one memo for all its parses. Every entry carries the parse it
+// was written in, so reset() forgets the last parse without touching the arrays,
+// which are only reallocated when a longer input needs more slots.
+class PackratMemo {
+    static final int UNKNOWN = -2;
+    static final int FAILED = -1;
+
+    private final int nonTerminals;
+    private final int maxEntries;
+    private int positions;
+    private boolean dense;
+    private long[] keys;
+    private int[] stamps = new int[0];
+    private int[] ends = new int[0];
+    private int[] alternatives = new int[0];
+    private int generation;
+    private int mask;
+
+    PackratMemo(int nonTerminals, int maxEntries) {
+        this.nonTerminals = nonTerminals;
+        this.maxEntries = maxEntries;
+    }
+
+    // Starts a parse over positions token indices with no entries.
+    void reset(int positions) {
+        this.positions = positions;
+        long needed = (long) nonTerminals * positions;
+        this.dense = needed <= maxEntries;
+        int capacity;
+        if (dense) {
+            capacity = (int) needed;
+        } else {
+            capacity = Integer.highestOneBit(Math.max(maxEntries, 16));
+            this.mask = capacity - 1;
+            if (keys == null || keys.length < capacity) {
+                keys = new long[capacity];
+            }
+        }
+        if (stamps.length < capacity) {
+            stamps = new int[capacity];
+            ends = new int[capacity];
+            alternatives = new int[capacity];
+        }
+        if (++generation == 0) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+
+    int end(int nonTerminal, int position) {
+        int slot = slot(nonTerminal, position);
+        if (stamps[slot] != generation || !dense && keys[slot] != key(nonTerminal, position)) {
+            return UNKNOWN;
+        }
+        return ends[slot];
+    }
+
+    // Only meaningful right after end() returned a success for the same pair.
+    int alternative(int nonTerminal, int position) {
+        return alternatives[slot(nonTerminal, position)];
+    }
+
+    void put(int nonTerminal, int position, int end, int alternative) {
+        int slot = slot(nonTerminal, position);
+        if (!dense) {
+            keys[slot] = key(nonTerminal, position);
+        }
+        stamps[slot] = generation;
+        ends[slot] = end;
+        alternatives[slot] = alternative;
+    }
+
+    private long key(int nonTerminal, int position) {
+        return (long) nonTerminal * positions + position;
+    }
+
+    private int slot(int nonTerminal, int position) {
+        if (dense) {
+            return nonTerminal * positions + position;
+        }
+        long h = key(nonTerminal, position) * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+}
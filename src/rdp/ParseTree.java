@@ -0,0 +1,232 @@
+package rdp;
+import java.util.*;
+
+// Parse tree stored as parallel int arrays. Nodes are appended in pre-order, so a
+// failed alternative is discarded by truncating back to the size it started at.
+public class ParseTree {
+    public static final int NONE = -1;
+
+    private final String[] symbolNames;
+    private final int terminalBase;
+    private int[] symbol;
+    private int[] parent;
+    private int[] firstChild;
+    private int[] lastChild;
+    private int[] nextSibling;
+    private int[] spanStart;
+    private int[] spanEnd;
+    private int size;
+
+    ParseTree(String[] symbolNames, int terminalBase) {
+        this.symbolNames = symbolNames;
+        this.terminalBase = terminalBase;
+        allocate(64);
+    }
+
+    private void allocate(int capacity) {
+        symbol = new int[capacity];
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        lastChild = new int[capacity];
+        nextSibling = new int[capacity];
+        spanStart = new int[capacity];
+        spanEnd = new int[capacity];
+    }
+
+    private void grow() {
+        int capacity = symbol.length * 2;
+        symbol = Arrays.copyOf(symbol, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        lastChild = Arrays.copyOf(lastChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        spanStart = Arrays.copyOf(spanStart, capacity);
+        spanEnd = Arrays.copyOf(spanEnd, capacity);
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    int add(int parentNode, int symbolId, int start) {
+        if (size == symbol.length) {
+            grow();
+        }
+        int node = size++;
+        symbol[node] = symbolId;
+        parent[node] = parentNode;
+        firstChild[node] = NONE;
+        lastChild[node] = NONE;
+        nextSibling[node] = NONE;
+        spanStart[node] = start;
+        spanEnd[node] = start;
+        if (parentNode != NONE) {
+            if (lastChild[parentNode] == NONE) {
+                firstChild[parentNode] = node;
+            } else {
+                nextSibling[lastChild[parentNode]] = node;
+            }
+            lastChild[parentNode] = node;
+        }
+        return node;
+    }
+
+    void close(int node, int end) {
+        spanEnd[node] = end;
+    }
+
+    // Drops every node from mark on. Only the parent of the first dropped node can
+    // still point into the dropped range, because nodes are added in pre-order.
+    void truncate(int mark) {
+        if (mark >= size) {
+            return;
+        }
+        int owner = parent[mark];
+        size = mark;
+        if (owner == NONE) {
+            return;
+        }
+        if (firstChild[owner] >= mark) {
+            firstChild[owner] = NONE;
+            lastChild[owner] = NONE;
+            return;
+        }
+        int child = firstChild[owner];
+        while (nextSibling[child] != NONE && nextSibling[child] < mark) {
+            child = nextSibling[child];
+        }
+        nextSibling[child] = NONE;
+        lastChild[owner] = child;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int root() {
+        return size > 0 ? 0 : NONE;
+    }
+
+    public int symbol(int node) {
+        return symbol[node];
+    }
+
+    public String name(int node) {
+        return symbolNames[symbol[node]];
+    }
+
+    public boolean isTerminal(int node) {
+        return symbol[node] >= terminalBase;
+    }
+
+    public int parent(int node) {
+        return parent[node];
+    }
+
+    public int depth(int node) {
+        int depth = 0;
+        for (int p = parent[node]; p != NONE; p = parent[p]) {
+            depth++;
+        }
+        return depth;
+    }
+
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    public int spanStart(int node) {
+        return spanStart[node];
+    }
+
+    public int spanEnd(int node) {
+        return spanEnd[node];
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        Cursor cursor = cursor();
+        if (!cursor.isValid()) {
+            return "";
+        }
+        int depth = 0;
+        while (true) {
+            sb.append(" ".repeat(depth * 2)).append(cursor.name());
+            sb.append(cursor.isTerminal() ? "\n" : ":\n");
+            if (cursor.gotoFirstChild()) {
+                depth++;
+                continue;
+            }
+            while (!cursor.gotoNextSibling()) {
+                if (!cursor.gotoParent()) {
+                    return sb.toString();
+                }
+                depth--;
+            }
+        }
+    }
+
+    public class Cursor {
+        private int node;
+
+        private Cursor() {
+            this.node = root();
+        }
+
+        public boolean isValid() {
+            return node != NONE;
+        }
+
+        public int node() {
+            return node;
+        }
+
+        public int symbol() {
+            return ParseTree.this.symbol(node);
+        }
+
+        public String name() {
+            return ParseTree.this.name(node);
+        }
+
+        public boolean isTerminal() {
+            return ParseTree.this.isTerminal(node);
+        }
+
+        public int spanStart() {
+            return ParseTree.this.spanStart(node);
+        }
+
+        public int spanEnd() {
+            return ParseTree.this.spanEnd(node);
+        }
+
+        public boolean gotoFirstChild() {
+            return move(firstChild[node]);
+        }
+
+        public boolean gotoNextSibling() {
+            return move(nextSibling[node]);
+        }
+
+        public boolean gotoParent() {
+            return move(parent[node]);
+        }
+
+        private boolean move(int target) {
+            if (target == NONE) {
+                return false;
+            }
+            node = target;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package rdp;
+import engine.GeneratedParser;
+import engine.SourceCompiler;
+
+// Emits a recursive descent recognizer specialized to one grammar: a method per
+// nonterminal that tries its alternatives in order, with terminal checks inlined
+// as constant comparisons. It follows the same ordered-choice rules as
+// RecursiveDescentParser, after left recursion has been rewritten and with tail
+// rules run as loops, but builds no parse tree. With packrat on, results are
+// memoized like PackratMemo does, in a small class emitted alongside, so the
+// generated source needs nothing from this package.
+public final class RDPCodeGenerator {
+    private static int generated;
+
+    private RDPCodeGenerator() {
+    }
+
+    public static GeneratedParser compile(RDPGrammar grammar, boolean packrat) {
+        String className = "GeneratedRDPParser" + nextId();
+        return SourceCompiler.instantiate(className, generateSource(grammar, className, packrat),
+                                          GeneratedParser.class);
+    }
+
+    public static String generateSource(RDPGrammar grammar, String className, boolean packrat) {
+        int nonTerminalCount = grammar.nonTerminalCount();
+        String[] names = grammar.symbolNames();
+        int start = grammar.startId();
+        String memo = packrat ? ", memo" : "";
+
+        StringBuilder sb = new StringBuilder();
+        int dot = className.lastIndexOf('.');
+        if (dot > 0) {
+            sb.append("package ").append(className, 0, dot).append(";\n\n");
+        }
+        sb.append("// Generated recursive descent parser for start symbol ")
+          .append(SourceCompiler.comment(grammar.getStartSymbol())).append(". Do not edit.\n");
+        sb.append("public final class ").append(className.substring(dot + 1))
+          .append(" implements engine.GeneratedParser {\n");
+        sb.append("    private static final int FIRST_TERMINAL = ").append(nonTerminalCount).append(";\n");
+        sb.append("    private static final int END = ").append(grammar.endMarker()).append(";\n");
+        sb.append("    private static final String[] NAMES = {\n");
+        for (int t = nonTerminalCount; t < names.length; t++) {
+            sb.append("        ").append(SourceCompiler.quote(names[t])).append(",\n");
+        }
+        sb.append("    };\n");
+        sb.append("    private static final java.util.Map<String, Integer> IDS = new java.util.HashMap<>();\n\n");
+        sb.append("    static {\n");
+        sb.append("        for (int i = 0; i < NAMES.length; i++) {\n");
+        sb.append("            IDS.put(NAMES[i], FIRST_TERMINAL + i);\n");
+        sb.append("        }\n");
+        sb.append("    }\n\n");
+
+        sb.append("    @Override\n");
+        sb.append("    public int terminalId(String token) {\n");
+        sb.append("        Integer id = IDS.get(token);\n");
+        sb.append("        return id != null ? id : -1;\n");
+        sb.append("    }\n\n");
+        sb.append("    @Override\n");
+        sb.append("    public int endMarker() {\n");
+        sb.append("        return END;\n");
+        sb.append("    }\n\n");
+        sb.append("    @Override\n");
+        sb.append("    public boolean validate(String input) {\n");
+        sb.append("        java.util.List<String> tokens = grammar.Grammar.tokens(input);\n");
+        sb.append("        int[] ids = new int[tokens.size() + 1];\n");
+        sb.append("        for (int i = 0; i < tokens.size(); i++) {\n");
+        sb.append("            ids[i] = terminalId(tokens.get(i));\n");
+        sb.append("        }\n");
+        sb.append("        ids[tokens.size()] = END;\n");
+        sb.append("        return validate(ids);\n");
+        sb.append("    }\n\n");
+
+        sb.append("    @Override\n");
+        sb.append("    public boolean validate(int[] tokens) {\n");
+        if (start < 0) {
+            sb.append("        return false;\n");
+        } else {
+            if (packrat) {
+                sb.append("        Memo memo = new Memo(tokens.length + 1);\n");
+            }
+            sb.append("        int end = p").append(start).append("(tokens, 0").append(memo).append(");\n");
+            sb.append("        return end >= 0 && end < tokens.length && tokens[end] == END;\n");
+        }
+        sb.append("    }\n");
+
+        for (int nt = 0; nt < nonTerminalCount; nt++) {
+            appendNonTerminal(sb, grammar, nt, packrat);
+        }
+        if (packrat) {
+            appendMemo(sb, nonTerminalCount);
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    // Returns the end position of the first alternative that matches at pos, or -1.
+    private static void appendNonTerminal(StringBuilder sb, RDPGrammar grammar, int nt, boolean packrat) {
+        String[] names = grammar.symbolNames();
+        int nonTerminalCount = grammar.nonTerminalCount();
+        String memo = packrat ? ", memo" : "";
+
+        sb.append("\n    // ").append(SourceCompiler.comment(names[nt])).append('\n');
+        sb.append("    private static int p").append(nt).append("(int[] in, int pos")
+          .append(packrat ? ", Memo memo" : "").append(") {\n");
+        if (packrat) {
+            sb.append("        int memoized = memo.end(").append(nt).append(", pos);\n");
+            sb.append("        if (memoized != Memo.UNKNOWN) {\n");
+            sb.append("            return memoized;\n");
+            sb.append("        }\n");
+        }
+        int[][] alternatives = grammar.productions(nt);
+        if (grammar.isLoop(nt)) {
+            appendLoop(sb, grammar, nt, packrat);
+            return;
+        }
+        boolean declared = false;
+        for (int a = 0; a < alternatives.length; a++) {
+            int[] production = alternatives[a];
+            sb.append("        // ").append(SourceCompiler.comment(names[nt])).append(" ->");
+            for (int symbol : production) {
+                sb.append(' ').append(SourceCompiler.comment(names[symbol]));
+            }
+            sb.append(production.length == 0 ? " epsilon\n" : "\n");
+            if (production.length == 0) {
+                sb.append(packrat ? "        memo.put(" + nt + ", pos, pos);\n" : "");
+                sb.append("        return pos;\n");
+                // Later alternatives are unreachable.
+                break;
+            }
+            if (!declared) {
+                sb.append("        int p;\n");
+                declared = true;
+            }
+            sb.append("        a").append(a).append(": {\n");
+            sb.append("            p = pos;\n");
+            for (int symbol : production) {
+                if (symbol < nonTerminalCount) {
+                    sb.append("            p = p").append(symbol).append("(in, p").append(memo).append(");\n");
+                    sb.append("            if (p < 0) {\n");
+                } else {
+                    sb.append("            if (p >= in.length || in[p++] != ").append(symbol).append(") { // ")
+                      .append(SourceCompiler.comment(names[symbol])).append('\n');
+                }
+                sb.append("                break a").append(a).append(";\n");
+                sb.append("            }\n");
+            }
+            if (packrat) {
+                sb.append("            memo.put(").append(nt).append(", pos, p);\n");
+            }
+            sb.append("            return p;\n");
+            sb.append("        }\n");
+            if (a == alternatives.length - 1) {
+                if (packrat) {
+                    sb.append("        memo.put(").append(nt).append(", pos, -1);\n");
+                }
+                sb.append("        return -1;\n");
+            }
+        }
+        if (alternatives.length == 0) {
+            sb.append("        return -1;\n");
+        }
+        sb.append("    }\n");
+    }
+
+    // A tail rule, repeated like RecursiveDescentParser.recognizeLoop: the body
+    // of pN after the memo lookup.
+    private static void appendLoop(StringBuilder sb, RDPGrammar grammar, int nt, boolean packrat) {
+        String[] names = grammar.symbolNames();
+        int nonTerminalCount = grammar.nonTerminalCount();
+        String memo = packrat ? ", memo" : "";
+        int[][] alternatives = grammar.productions(nt);
+
+        if (packrat) {
+            sb.append("        int start = pos;\n");
+        }
+        sb.append("        int p;\n");
+        sb.append("        repeat:\n");
+        sb.append("        while (true) {\n");
+        for (int a = 0; a < alternatives.length - 1; a++) {
+            int[] production = alternatives[a];
+            sb.append("            // ").append(SourceCompiler.comment(names[nt])).append(" ->");
+            for (int symbol : production) {
+                sb.append(' ').append(SourceCompiler.comment(names[symbol]));
+            }
+            sb.append(", repeated\n");
+            sb.append("            a").append(a).append(": {\n");
+            sb.append("                p = pos;\n");
+            for (int i = 0; i < production.length - 1; i++) {
+                int symbol = production[i];
+                if (symbol < nonTerminalCount) {
+                    sb.append("                p = p").append(symbol).append("(in, p").append(memo).append(");\n");
+                    sb.append("                if (p < 0) {\n");
+                } else {
+                    sb.append("                if (p >= in.length || in[p++] != ").append(symbol).append(") { // ")
+                      .append(SourceCompiler.comment(names[symbol])).append('\n');
+                }
+                sb.append("                    break a").append(a).append(";\n");
+                sb.append("                }\n");
+            }
+            sb.append("                if (p == pos) {\n");
+            sb.append("                    break repeat;\n");
+            sb.append("                }\n");
+            sb.append("                pos = p;\n");
+            sb.append("                continue repeat;\n");
+            sb.append("            }\n");
+        }
+        sb.append("            break;\n");
+        sb.append("        }\n");
+        if (packrat) {
+            sb.append("        memo.put(").append(nt).append(", start, pos);\n");
+        }
+        sb.append("        return pos;\n");
+        sb.append("    }\n");
+    }
+
+    private static void appendMemo(StringBuilder sb, int nonTerminalCount) {
+        sb.append("\n    // Dense (nonterminal, position) table while it fits in LIMIT entries,\n");
+        sb.append("    // otherwise a direct-mapped cache of LIMIT entries.\n");
+        sb.append("    private static final class Memo {\n");
+        sb.append("        static final int UNKNOWN = -2;\n");
+        sb.append("        static final int LIMIT = ").append(RecursiveDescentParser.DEFAULT_MEMO_LIMIT).append(";\n");
+        sb.append("        final int positions;\n");
+        sb.append("        final long[] keys;\n");
+        sb.append("        final int[] ends;\n");
+        sb.append("        final int mask;\n\n");
+        sb.append("        Memo(int positions) {\n");
+        sb.append("            this.positions = positions;\n");
+        sb.append("            long needed = (long) ").append(nonTerminalCount).append(" * positions;\n");
+        sb.append("            if (needed <= LIMIT) {\n");
+        sb.append("                this.keys = null;\n");
+        sb.append("                this.mask = 0;\n");
+        sb.append("                this.ends = new int[(int) needed];\n");
+        sb.append("            } else {\n");
+        sb.append("                this.keys = new long[LIMIT];\n");
+        sb.append("                java.util.Arrays.fill(keys, -1L);\n");
+        sb.append("                this.mask = LIMIT - 1;\n");
+        sb.append("                this.ends = new int[LIMIT];\n");
+        sb.append("            }\n");
+        sb.append("            java.util.Arrays.fill(ends, UNKNOWN);\n");
+        sb.append("        }\n\n");
+        sb.append("        int end(int nonTerminal, int position) {\n");
+        sb.append("            long key = (long) nonTerminal * positions + position;\n");
+        sb.append("            if (keys == null) {\n");
+        sb.append("                return ends[(int) key];\n");
+        sb.append("            }\n");
+        sb.append("            int slot = slot(key);\n");
+        sb.append("            return keys[slot] == key ? ends[slot] : UNKNOWN;\n");
+        sb.append("        }\n\n");
+        sb.append("        void put(int nonTerminal, int position, int end) {\n");
+        sb.append("            long key = (long) nonTerminal * positions + position;\n");
+        sb.append("            if (keys == null) {\n");
+        sb.append("                ends[(int) key] = end;\n");
+        sb.append("                return;\n");
+        sb.append("            }\n");
+        sb.append("            int slot = slot(key);\n");
+        sb.append("            keys[slot] = key;\n");
+        sb.append("            ends[slot] = end;\n");
+        sb.append("        }\n\n");
+        sb.append("        private int slot(long key) {\n");
+        sb.append("            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+    }
+
+    private static synchronized int nextId() {
+        return generated++;
+    }
+}
@@ -1,14 +1,28 @@
 package rdp;
+import engine.SyntaxError;
+import grammar.Grammar;
+import lexer.Lexer;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 public class RDPGUI extends JFrame {
     private final JTextArea grammarInputArea;
     private final JTextField startSymbolField;
     private final JTextField inputStringField;
+    private final JCheckBox packratCheckBox;
+    private final JCheckBox scanTokensCheckBox;
     private final JTextArea resultArea;
+    private final JList<String> treeView;
+    private final JButton validateButton;
+    private final JButton cancelButton;
+    private final JProgressBar progressBar;
+    private SwingWorker<List<SyntaxError>, Void> currentTask;
 
     public RDPGUI() {
         setTitle("Recursive Descent Parser");
@@ -26,12 +40,26 @@ public class RDPGUI extends JFrame {
         JLabel inputStringLabel = new JLabel("Input String:");
         inputStringField = new JTextField(20);
 
-        JButton validateButton = new JButton("Validate using RDP");
+        packratCheckBox = new JCheckBox("Packrat memoization");
+        scanTokensCheckBox = new JCheckBox("Tokens without spaces");
 
-        resultArea = new JTextArea(12, 50);
+        validateButton = new JButton("Validate using RDP");
+        cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+
+        resultArea = new JTextArea(5, 50);
         resultArea.setEditable(false);
         JScrollPane resultScrollPane = new JScrollPane(resultArea);
 
+        // The tree can have millions of nodes; JList only renders the visible rows.
+        treeView = new JList<>();
+        treeView.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        treeView.setPrototypeCellValue("                                        ");
+        JScrollPane treeScrollPane = new JScrollPane(treeView);
+        treeScrollPane.setPreferredSize(new Dimension(560, 200));
+
         JPanel inputPanel = new JPanel();
         inputPanel.setLayout(new BoxLayout(inputPanel, BoxLayout.Y_AXIS));
         inputPanel.add(grammarLabel);
@@ -43,14 +71,22 @@ public class RDPGUI extends JFrame {
         smallInputPanel.add(startSymbolField);
         smallInputPanel.add(inputStringLabel);
         smallInputPanel.add(inputStringField);
+        smallInputPanel.add(packratCheckBox);
+        smallInputPanel.add(scanTokensCheckBox);
 
         inputPanel.add(Box.createVerticalStrut(10));
         inputPanel.add(smallInputPanel);
         inputPanel.add(Box.createVerticalStrut(10));
-        inputPanel.add(validateButton);
+        JPanel actionsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        actionsPanel.add(validateButton);
+        actionsPanel.add(cancelButton);
+        actionsPanel.add(progressBar);
+        inputPanel.add(actionsPanel);
         inputPanel.add(Box.createVerticalStrut(10));
         inputPanel.add(new JLabel("Output:"));
         inputPanel.add(resultScrollPane);
+        inputPanel.add(new JLabel("Parse Tree:"));
+        inputPanel.add(treeScrollPane);
 
         add(inputPanel);
 
@@ -60,6 +96,11 @@ public class RDPGUI extends JFrame {
                 validateInput();
             }
         });
+        cancelButton.addActionListener(e -> {
+            if (currentTask != null) {
+                currentTask.cancel(true);
+            }
+        });
     }
 
     private void validateInput() {
@@ -72,18 +113,78 @@ public class RDPGUI extends JFrame {
             return;
         }
     
-        try {
-            RecursiveDescentParser parser = new RecursiveDescentParser(grammar, startSymbol);
-            boolean isValid = parser.validateString(inputString);
-    
-            String formattedTree = parser.getFormattedParseTree();
-    
-            resultArea.append("Input String: " + inputString + "\n");
-            resultArea.append("Parse Tree:\n" + formattedTree + "\n");
-            resultArea.append("Result: " + (isValid ? "VALID" : "INVALID") + "\n");
-            resultArea.append("-----------------------------------------------------\n");
-        } catch (Exception ex) {
-            resultArea.append("Error: " + ex.getMessage() + "\n");
+        boolean packrat = packratCheckBox.isSelected();
+        boolean scanTokens = scanTokensCheckBox.isSelected();
+        RecursiveDescentParser[] parser = new RecursiveDescentParser[1];
+        // The parser publishes its progress from the worker thread; poll it
+        // instead of calling back into Swing from every parse step.
+        Timer progressTimer = new Timer(100, e -> {
+            if (parser[0] != null) {
+                progressBar.setValue(parser[0].getProgress());
+            }
+        });
+
+        currentTask = new SwingWorker<List<SyntaxError>, Void>() {
+            @Override
+            protected List<SyntaxError> doInBackground() {
+                parser[0] = new RecursiveDescentParser(grammar, startSymbol, packrat);
+                if (scanTokens) {
+                    // Terminals are matched by spelling, so tokens need no spaces between them.
+                    parser[0].setLexer(Lexer.forGrammar(Grammar.parse(grammar), Map.of()));
+                }
+                return parser[0].check(inputString);
+            }
+
+            @Override
+            protected void done() {
+                progressTimer.stop();
+                try {
+                    List<SyntaxError> errors = get();
+                    treeView.setModel(new TreeListModel(parser[0].getParseTree()));
+                    resultArea.append("Input String: " + inputString + "\n");
+                    resultArea.append("Result: " + (errors.isEmpty() ? "VALID" : "INVALID") + "\n");
+                    for (SyntaxError error : errors) {
+                        resultArea.append(error.getMessage() + "\n");
+                    }
+                } catch (CancellationException ex) {
+                    resultArea.append("Validation cancelled.\n");
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    resultArea.append("Error: " + cause.getMessage() + "\n");
+                }
+                resultArea.append("-----------------------------------------------------\n");
+                currentTask = null;
+                validateButton.setEnabled(true);
+                cancelButton.setEnabled(false);
+                progressBar.setValue(0);
+            }
+        };
+        validateButton.setEnabled(false);
+        cancelButton.setEnabled(true);
+        progressBar.setValue(0);
+        progressTimer.start();
+        currentTask.execute();
+    }
+
+    // Nodes are stored in pre-order, so row i of the indented tree listing is node i.
+    private static class TreeListModel extends AbstractListModel<String> {
+        private static final long serialVersionUID = 1L;
+
+        private final ParseTree tree;
+
+        TreeListModel(ParseTree tree) {
+            this.tree = tree;
+        }
+
+        @Override
+        public int getSize() {
+            return tree.size();
+        }
+
+        @Override
+        public String getElementAt(int node) {
+            String indent = " ".repeat(tree.depth(node) * 2);
+            return indent + tree.name(node) + (tree.isTerminal(node) ? "" : ":");
         }
     }
     
@@ -0,0 +1,127 @@
+package rdp;
+import engine.ParseMetrics;
+import engine.SyntaxChecker;
+import engine.SyntaxError;
+import grammar.Grammar;
+import lexer.Lexer;
+import java.util.*;
+
+// Immutable, compiled form of an RDP grammar. It can be shared by any number of
+// RecursiveDescentParser instances, which hold the per-parse state.
+public final class RDPGrammar {
+    private final String startSymbol;
+    private final Grammar grammar;
+    private final String[] symbolNames;
+    private final int[][][] productions;
+    private final boolean[] loops;
+
+    public RDPGrammar(String grammarInput, String startSymbol) {
+        LeftRecursion.Result rewritten = LeftRecursion.eliminate(Grammar.parse(grammarInput).toRules());
+        this.grammar = Grammar.of(rewritten.rules);
+        this.startSymbol = startSymbol;
+        this.symbolNames = new String[grammar.getSymbolCount()];
+        for (int id = 0; id < symbolNames.length; id++) {
+            symbolNames[id] = grammar.symbolName(id);
+        }
+        this.productions = new int[grammar.getNonTerminalCount()][][];
+        for (int nt = 0; nt < productions.length; nt++) {
+            int first = grammar.firstProduction(nt);
+            productions[nt] = new int[grammar.firstProduction(nt + 1) - first][];
+            for (int p = 0; p < productions[nt].length; p++) {
+                productions[nt][p] = grammar.productionBody(first + p);
+            }
+        }
+        this.loops = new boolean[productions.length];
+        for (int nt = 0; nt < productions.length; nt++) {
+            loops[nt] = rewritten.tails.contains(symbolNames[nt]) && isLoop(nt, productions[nt]);
+        }
+    }
+
+    // A -> a1 A | ... | an A | epsilon, as LeftRecursion writes its tail rules.
+    // Under ordered choice the recursive call always succeeds, so A is the same as
+    // repeating a1 | ... | an until none matches, and the parsers run it as that
+    // loop instead of recursing once per repetition. Only the tails LeftRecursion
+    // added are run that way; a right-recursive rule the grammar spells out keeps
+    // its nested parse tree.
+    private static boolean isLoop(int nt, int[][] alternatives) {
+        int last = alternatives.length - 1;
+        if (last < 1 || alternatives[last].length != 0) {
+            return false;
+        }
+        for (int a = 0; a < last; a++) {
+            int[] body = alternatives[a];
+            if (body.length < 2 || body[body.length - 1] != nt) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getStartSymbol() {
+        return startSymbol;
+    }
+
+    // -1 when the grammar has no productions for the start symbol.
+    int startId() {
+        int id = grammar.symbolId(startSymbol);
+        return id >= 0 && !grammar.isTerminal(id) ? id : -1;
+    }
+
+    int terminalId(String token) {
+        int id = grammar.symbolId(token);
+        return id >= 0 && grammar.isTerminal(id) ? id : -1;
+    }
+
+    int nonTerminalCount() {
+        return grammar.getNonTerminalCount();
+    }
+
+    int endMarker() {
+        return grammar.getEndMarker();
+    }
+
+    int[][] productions(int nonTerminal) {
+        return productions[nonTerminal];
+    }
+
+    // Whether nonTerminal is a tail rule parsed as a loop; its alternatives other
+    // than the last, epsilon, are then repeated without their final symbol.
+    boolean isLoop(int nonTerminal) {
+        return loops[nonTerminal];
+    }
+
+    String[] symbolNames() {
+        return symbolNames;
+    }
+
+    // A thread-safe recognizer; each calling thread gets its own parser state.
+    public SyntaxChecker recognizer(boolean packrat) {
+        return recognizer(packrat, null);
+    }
+
+    // As above, with every thread's parser recording into the shared metrics.
+    public SyntaxChecker recognizer(boolean packrat, ParseMetrics metrics) {
+        return recognizer(packrat, metrics, null);
+    }
+
+    // As above, tokenizing input with lexer unless it is null.
+    public SyntaxChecker recognizer(boolean packrat, ParseMetrics metrics, Lexer lexer) {
+        ThreadLocal<RecursiveDescentParser> parsers = ThreadLocal.withInitial(() -> {
+            RecursiveDescentParser parser = new RecursiveDescentParser(this, packrat);
+            parser.setMetrics(metrics);
+            parser.setLexer(lexer);
+            return parser;
+        });
+        return new SyntaxChecker() {
+            @Override
+            public boolean validate(String input) {
+                return parsers.get().validateString(input);
+            }
+
+            @Override
+            public List<SyntaxError> check(String input) {
+                return parsers.get().check(input);
+            }
+        };
+    }
+}
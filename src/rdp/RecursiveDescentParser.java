@@ -1,133 +1,495 @@
 package rdp;
+import engine.ParseMetrics;
+import engine.SyntaxError;
+import grammar.Grammar;
+import lexer.Lexer;
+import lexer.TokenScanner;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 
 public class RecursiveDescentParser {
-    private final Map<String, List<List<String>>> grammar;
-    private final String startSymbol;
-    private List<String> inputString;
+    public static final int DEFAULT_MEMO_LIMIT = 1 << 20;
+
+    private final RDPGrammar grammar;
+    private final boolean packrat;
+    private final int memoLimit;
+    private final int nonTerminalCount;
+    private final int endMarker;
+    private int[] inputString;
     private int currentTokenIndex;
-    private final Map<String, Object> parseTree;
+    // Created by the first packrat parse and reused by the later ones.
+    private PackratMemo memo;
+    private final ParseTree parseTree;
+    private int calls;
+    private volatile int progress;
+    private ParseMetrics metrics;
+    private int[] backtracks;
+    private int depth;
+    private int maxDepth;
+    private int memoHits;
+    private int memoMisses;
+    private BitSet expected;
+    private int furthest;
+    private int matchedEnd;
+    private Lexer lexer;
+    private int[] lexerIds;
 
     public RecursiveDescentParser(String grammarInput, String startSymbol) {
-        this.grammar = parseGrammar(grammarInput);
-        this.startSymbol = startSymbol;
-        this.parseTree = new LinkedHashMap<>();
+        this(new RDPGrammar(grammarInput, startSymbol), false, DEFAULT_MEMO_LIMIT);
     }
 
-    private Map<String, List<List<String>>> parseGrammar(String grammarInput) {
-        Map<String, List<List<String>>> rules = new LinkedHashMap<>();
-        String[] lines = grammarInput.split("\\n");
+    public RecursiveDescentParser(String grammarInput, String startSymbol, boolean packrat) {
+        this(new RDPGrammar(grammarInput, startSymbol), packrat, DEFAULT_MEMO_LIMIT);
+    }
 
-        for (String line : lines) {
-            String[] parts = line.split("->");
-            String head = parts[0].trim();
-            String[] productions = parts[1].split("\\|");
+    public RecursiveDescentParser(String grammarInput, String startSymbol, boolean packrat, int memoLimit) {
+        this(new RDPGrammar(grammarInput, startSymbol), packrat, memoLimit);
+    }
 
-            rules.putIfAbsent(head, new ArrayList<>());
-            for (String production : productions) {
-                List<String> symbols = Arrays.asList(production.trim().split(" "));
-                rules.get(head).add(symbols);
-            }
-        }
-        return rules;
+    public RecursiveDescentParser(RDPGrammar grammar, boolean packrat) {
+        this(grammar, packrat, DEFAULT_MEMO_LIMIT);
+    }
+
+    public RecursiveDescentParser(RDPGrammar grammar, boolean packrat, int memoLimit) {
+        this.grammar = grammar;
+        this.packrat = packrat;
+        this.memoLimit = memoLimit;
+        this.nonTerminalCount = grammar.nonTerminalCount();
+        this.endMarker = grammar.endMarker();
+        this.parseTree = new ParseTree(grammar.symbolNames(), nonTerminalCount);
+    }
+
+    public RDPGrammar getGrammar() {
+        return grammar;
+    }
+
+    public boolean isPackrat() {
+        return packrat;
+    }
+
+    // Records every later parse in metrics: latency, nonterminal calls, the deepest
+    // recursion, failed alternatives per rule and, with packrat, memo hits. With
+    // null, as by default, none of this is counted.
+    public void setMetrics(ParseMetrics metrics) {
+        this.metrics = metrics;
+        this.backtracks = metrics != null ? new int[nonTerminalCount] : null;
+    }
+
+    // Tokenizes later input with lexer instead of splitting it on single spaces.
+    // With null, as by default, input must be pre-spaced.
+    public void setLexer(Lexer lexer) {
+        this.lexer = lexer;
+        this.lexerIds = lexer != null ? lexer.tokenIds(grammar::terminalId) : null;
     }
 
     public boolean validateString(String inputString) {
-        this.inputString = new ArrayList<>(List.of(inputString.split(" ")));
-        this.inputString.add("$");
+        int tokens = tokenize(inputString);
         this.currentTokenIndex = 0;
-        this.parseTree.clear();
-        this.parseTree.put(this.startSymbol, new ArrayList<>());
+        this.parseTree.reset();
+        this.calls = 0;
+        this.progress = 0;
+        this.matchedEnd = -1;
+        long started = 0;
+        if (this.metrics != null) {
+            started = System.nanoTime();
+            Arrays.fill(this.backtracks, 0);
+            this.depth = 0;
+            this.maxDepth = 0;
+            this.memoHits = 0;
+            this.memoMisses = 0;
+        }
 
-        boolean valid = parseNonTerminal(this.startSymbol, (List<Object>) this.parseTree.get(this.startSymbol));
-        boolean atEnd = currentToken().equals("$");
+        int start = grammar.startId();
+        if (start < 0) {
+            return false;
+        }
+        int root = this.parseTree.add(ParseTree.NONE, start, 0);
+
+        boolean valid;
+        if (packrat) {
+            if (this.memo == null) {
+                this.memo = new PackratMemo(nonTerminalCount, memoLimit);
+            }
+            this.memo.reset(this.inputString.length + 1);
+            valid = recognize(start, 0) >= 0;
+            if (valid) {
+                this.currentTokenIndex = buildTree(start, 0, root);
+            }
+        } else {
+            valid = parseNonTerminal(start, root);
+        }
+        if (valid) {
+            this.parseTree.close(root, this.currentTokenIndex);
+        }
+        this.matchedEnd = valid ? this.currentTokenIndex : -1;
+        boolean atEnd = currentToken() == endMarker;
+        this.progress = 100;
+        if (this.metrics != null) {
+            publish(System.nanoTime() - started, tokens, valid && atEnd);
+        }
 
         return valid && atEnd;
     }
 
-    private boolean parseNonTerminal(String nonTerminal, List<Object> subtree) {
+    // Fills inputString with terminal ids and the end marker; returns the number
+    // of tokens.
+    private int tokenize(String input) {
+        if (this.lexer == null) {
+            List<String> tokens = Grammar.tokens(input);
+            this.inputString = new int[tokens.size() + 1];
+            for (int i = 0; i < tokens.size(); i++) {
+                this.inputString[i] = grammar.terminalId(tokens.get(i));
+            }
+            this.inputString[tokens.size()] = endMarker;
+            return tokens.size();
+        }
+        TokenScanner scanner = this.lexer.scanner(input);
+        int[] ids = new int[16];
+        int count = 0;
+        for (int kind = scanner.next(); kind != Lexer.END; kind = scanner.next()) {
+            if (count + 1 == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+            ids[count++] = kind >= 0 ? this.lexerIds[kind] : -1;
+        }
+        ids[count] = endMarker;
+        this.inputString = Arrays.copyOf(ids, count + 1);
+        return count;
+    }
+
+    private void publish(long nanos, int tokens, boolean valid) {
+        this.metrics.recordParse(nanos, tokens, valid);
+        this.metrics.recordExpansions(this.calls);
+        this.metrics.recordStackDepth(this.maxDepth);
+        this.metrics.recordBacktracks(this.grammar.symbolNames(), this.backtracks);
+        if (this.packrat) {
+            this.metrics.recordMemo(this.memoHits, this.memoMisses);
+        }
+    }
+
+    // Validates input and, if it is invalid, reports where: the furthest token any
+    // alternative got to, with every terminal that was tried there. Ordered choice
+    // cannot resume after a failure, so this is at most one error.
+    public List<SyntaxError> check(String inputString) {
+        this.expected = new BitSet();
+        this.furthest = -1;
+        try {
+            if (validateString(inputString)) {
+                return List.of();
+            }
+            if (this.matchedEnd >= 0) {
+                // The start symbol matched a prefix only.
+                expect(this.matchedEnd, endMarker);
+            }
+            int position = Math.max(0, this.furthest);
+            String[] names = this.grammar.symbolNames();
+            List<String> expectedNames = new ArrayList<>();
+            for (int t = this.expected.nextSetBit(0); t >= 0; t = this.expected.nextSetBit(t + 1)) {
+                expectedNames.add(names[t]);
+            }
+            String found = tokenText(inputString, position);
+            if (found == null) {
+                found = names[endMarker];
+            }
+            return List.of(new SyntaxError(position, found, expectedNames));
+        } finally {
+            this.expected = null;
+        }
+    }
+
+    private String tokenText(String input, int position) {
+        if (this.lexer != null) {
+            return this.lexer.tokenText(input, position);
+        }
+        List<String> tokens = Grammar.tokens(input);
+        return position < tokens.size() ? tokens.get(position) : null;
+    }
+
+    private void expect(int position, int terminal) {
+        if (position > this.furthest) {
+            this.furthest = position;
+            this.expected.clear();
+        }
+        if (position == this.furthest) {
+            this.expected.set(terminal);
+        }
+    }
+
+    // Packrat recognition: returns the end position of nonTerminal at position, or
+    // PackratMemo.FAILED. Every (nonterminal, position) pair is parsed at most once
+    // while its memo entry survives, so the whole parse is linear in the input.
+    private int recognize(int nonTerminal, int position) {
+        checkpoint(position);
+        int memoized = this.memo.end(nonTerminal, position);
+        if (memoized != PackratMemo.UNKNOWN) {
+            if (this.metrics != null) {
+                this.memoHits++;
+            }
+            return memoized;
+        }
+        if (this.metrics != null) {
+            this.memoMisses++;
+            enter();
+        }
+
+        int[][] alternatives = this.grammar.productions(nonTerminal);
+        int end = PackratMemo.FAILED;
+        int alternative = 0;
+        if (this.grammar.isLoop(nonTerminal)) {
+            end = recognizeLoop(nonTerminal, position);
+            alternative = alternatives.length - 1;
+        }
+        for (; end < 0 && alternative < alternatives.length; alternative++) {
+            end = recognizeSequence(alternatives[alternative], alternatives[alternative].length, position);
+            if (end >= 0) {
+                break;
+            }
+            if (this.metrics != null) {
+                this.backtracks[nonTerminal]++;
+            }
+        }
+        if (end >= 0) {
+            this.memo.put(nonTerminal, position, end, alternative);
+        } else {
+            this.memo.put(nonTerminal, position, PackratMemo.FAILED, -1);
+        }
+        if (this.metrics != null) {
+            this.depth--;
+        }
+        return end;
+    }
+
+    // Repeats the alternatives of a loop rule at position until none matches or
+    // one matches without consuming anything; returns where the last one ended.
+    private int recognizeLoop(int nonTerminal, int position) {
+        int[][] alternatives = this.grammar.productions(nonTerminal);
+        while (true) {
+            checkpoint(position);
+            int end = PackratMemo.FAILED;
+            for (int a = 0; a < alternatives.length - 1 && end < 0; a++) {
+                end = recognizeSequence(alternatives[a], alternatives[a].length - 1, position);
+                if (end < 0 && this.metrics != null) {
+                    this.backtracks[nonTerminal]++;
+                }
+            }
+            if (end <= position) {
+                return position;
+            }
+            position = end;
+        }
+    }
+
+    // Matches the first length symbols of production.
+    private int recognizeSequence(int[] production, int length, int position) {
+        for (int i = 0; i < length; i++) {
+            int symbol = production[i];
+            if (symbol < nonTerminalCount) {
+                position = recognize(symbol, position);
+                if (position < 0) {
+                    return PackratMemo.FAILED;
+                }
+            } else {
+                if (position >= this.inputString.length || this.inputString[position] != symbol) {
+                    if (this.expected != null) {
+                        expect(position, symbol);
+                    }
+                    return PackratMemo.FAILED;
+                }
+                position++;
+            }
+        }
+        return position;
+    }
+
+    // Rebuilds the tree of a successful packrat parse from the memoized choices,
+    // producing the same shape as parseNonTerminal.
+    private int buildTree(int nonTerminal, int position, int node) {
+        if (this.grammar.isLoop(nonTerminal)) {
+            return buildLoop(nonTerminal, position, node);
+        }
+        if (this.memo.end(nonTerminal, position) == PackratMemo.UNKNOWN) {
+            recognize(nonTerminal, position);
+        }
+        int[] production = this.grammar.productions(nonTerminal)[this.memo.alternative(nonTerminal, position)];
+
+        for (int symbol : production) {
+            int child = this.parseTree.add(node, symbol, position);
+            if (symbol < nonTerminalCount) {
+                position = buildTree(symbol, position, child);
+            } else {
+                position++;
+            }
+            this.parseTree.close(child, position);
+        }
+        return position;
+    }
+
+    // Every repetition of a loop rule goes under node, in input order. The
+    // alternatives are recognized again to find which one each repetition took;
+    // what they call is memoized, so that costs little more than the lookups.
+    private int buildLoop(int nonTerminal, int position, int node) {
+        int[][] alternatives = this.grammar.productions(nonTerminal);
+        while (true) {
+            int[] production = null;
+            int end = PackratMemo.FAILED;
+            for (int a = 0; a < alternatives.length - 1 && end < 0; a++) {
+                production = alternatives[a];
+                end = recognizeSequence(production, production.length - 1, position);
+            }
+            if (end <= position) {
+                return position;
+            }
+            for (int i = 0; i < production.length - 1; i++) {
+                int symbol = production[i];
+                int child = this.parseTree.add(node, symbol, position);
+                if (symbol < nonTerminalCount) {
+                    position = buildTree(symbol, position, child);
+                } else {
+                    position++;
+                }
+                this.parseTree.close(child, position);
+            }
+        }
+    }
+
+    private boolean parseNonTerminal(int nonTerminal, int node) {
+        checkpoint(this.currentTokenIndex);
+        if (this.metrics != null) {
+            enter();
+        }
+        if (this.grammar.isLoop(nonTerminal)) {
+            parseLoop(nonTerminal, node);
+            if (this.metrics != null) {
+                this.depth--;
+            }
+            return true;
+        }
         int originalIndex = this.currentTokenIndex;
-        List<List<String>> productions = this.grammar.getOrDefault(nonTerminal, new ArrayList<>());
+        int mark = this.parseTree.size();
 
-        for (List<String> production : productions) {
-            List<Object> tempTree = new ArrayList<>();
+        boolean matched = false;
+        for (int[] production : this.grammar.productions(nonTerminal)) {
             this.currentTokenIndex = originalIndex;
 
             boolean allMatched = true;
-            for (String symbol : production) {
-                if (!parseSymbol(symbol, tempTree)) {
+            for (int symbol : production) {
+                if (!parseSymbol(symbol, node)) {
                     allMatched = false;
                     break;
                 }
             }
 
             if (allMatched) {
-                subtree.add(Map.of(nonTerminal, tempTree));
-                return true;
+                matched = true;
+                break;
+            }
+            this.parseTree.truncate(mark);
+            if (this.metrics != null) {
+                this.backtracks[nonTerminal]++;
+            }
+        }
+        if (this.metrics != null) {
+            this.depth--;
+        }
+        return matched;
+    }
+
+    // The plain-mode counterpart of recognizeLoop: each repetition adds its
+    // symbols under node, and a failed or empty one is dropped again.
+    private void parseLoop(int nonTerminal, int node) {
+        int[][] alternatives = this.grammar.productions(nonTerminal);
+        repeat:
+        while (true) {
+            checkpoint(this.currentTokenIndex);
+            int start = this.currentTokenIndex;
+            int mark = this.parseTree.size();
+            for (int a = 0; a < alternatives.length - 1; a++) {
+                this.currentTokenIndex = start;
+                int[] production = alternatives[a];
+                boolean allMatched = true;
+                for (int i = 0; i < production.length - 1; i++) {
+                    if (!parseSymbol(production[i], node)) {
+                        allMatched = false;
+                        break;
+                    }
+                }
+                if (allMatched && this.currentTokenIndex > start) {
+                    continue repeat;
+                }
+                this.parseTree.truncate(mark);
+                if (allMatched) {
+                    break;
+                }
+                if (this.metrics != null) {
+                    this.backtracks[nonTerminal]++;
+                }
             }
+            this.currentTokenIndex = start;
+            return;
         }
-        return false;
     }
 
-    private boolean parseSymbol(String symbol, List<Object> subtree) {
-        if (this.grammar.containsKey(symbol)) {
-            List<Object> childTree = new ArrayList<>();
-            if (parseNonTerminal(symbol, childTree)) {
-                subtree.add(Map.of(symbol, childTree));
+    private void enter() {
+        if (++this.depth > this.maxDepth) {
+            this.maxDepth = this.depth;
+        }
+    }
+
+    private boolean parseSymbol(int symbol, int parent) {
+        if (symbol < nonTerminalCount) {
+            int child = this.parseTree.add(parent, symbol, this.currentTokenIndex);
+            if (parseNonTerminal(symbol, child)) {
+                this.parseTree.close(child, this.currentTokenIndex);
                 return true;
             }
             return false;
-        } else if (symbol.equals("epsilon")) {
-            return true;
         } else { // Terminal
-            if (currentToken().equals(symbol)) {
-                subtree.add(symbol);
+            if (currentToken() == symbol) {
+                int leaf = this.parseTree.add(parent, symbol, this.currentTokenIndex);
                 this.currentTokenIndex++;
+                this.parseTree.close(leaf, this.currentTokenIndex);
                 return true;
             }
+            if (this.expected != null) {
+                expect(this.currentTokenIndex, symbol);
+            }
             return false;
         }
     }
 
-    private String currentToken() {
-        if (this.currentTokenIndex < this.inputString.size()) {
-            return this.inputString.get(this.currentTokenIndex);
+    // Every 1024 calls: publish how far into the input the parse has got and stop
+    // if the parsing thread was interrupted, so a GUI can show progress and cancel
+    // an exponential backtracking parse.
+    private void checkpoint(int position) {
+        if ((++this.calls & 1023) != 0) {
+            return;
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Parse interrupted");
+        }
+        int percent = (int) ((long) position * 100 / this.inputString.length);
+        if (percent > this.progress) {
+            this.progress = percent;
         }
-        return null;
     }
 
-    public Map<String, Object> getParseTree() {
-        return this.parseTree;
+    // Furthest point reached by the current or last parse, in percent of the input.
+    public int getProgress() {
+        return this.progress;
     }
 
-    public String formatParseTree(Object tree, int level, StringBuilder sb) {
-        if (tree instanceof Map) {
-            Map<?, ?> map = (Map<?, ?>) tree;
-            for (Map.Entry<?, ?> entry : map.entrySet()) {
-                indent(sb, level);
-                sb.append(entry.getKey()).append(":\n");
-                formatParseTree(entry.getValue(), level + 1, sb);
-            }
-        } else if (tree instanceof List) {
-            List<?> list = (List<?>) tree;
-            for (Object item : list) {
-                formatParseTree(item, level, sb);
-            }
-        } else {
-            indent(sb, level);
-            sb.append(tree).append("\n");
+    private int currentToken() {
+        if (this.currentTokenIndex < this.inputString.length) {
+            return this.inputString[this.currentTokenIndex];
         }
-    
-        return sb.toString();
+        return -1;
     }
-    
-    private void indent(StringBuilder sb, int level) {
-        sb.append(" ".repeat(level * 2));
+
+    public ParseTree getParseTree() {
+        return this.parseTree;
     }
-    
+
     public String getFormattedParseTree() {
-        StringBuilder sb = new StringBuilder();
-        return formatParseTree(this.parseTree, 0, sb);
+        return this.parseTree.format();
     }
-    
 }
@@ -0,0 +1,176 @@
+package service;
+import engine.ParseMetrics;
+import engine.SyntaxError;
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Phaser;
+
+// Line-delimited front end for ParserService, over stdin/stdout or a TCP port.
+//
+//   COMPILE <id> <name> <engine> <start> <rule> ; <rule> ; ...
+//   VALIDATE <id> <name> <input tokens>
+//   CHECK <id> <name> <input tokens>
+//   METRICS <id> <name>
+//
+// <engine> is ll1, rdp, packrat or earley, or one of ll1-generated,
+// rdp-generated and packrat-generated; see ParserService.compile.
+//
+// Each request is answered with "<id> OK", "<id> VALID", "<id> INVALID",
+// "<id> SYNTAX <count> <error> ; <error> ...", "<id> METRICS <summary>" or
+// "<id> ERROR <message>". CHECK answers VALID or SYNTAX. Replies are written as
+// soon as they are ready, so they can come back in a different order than the
+// requests.
+public class ParserServer {
+    private final ParserService service;
+
+    public ParserServer(ParserService service) {
+        this.service = service;
+    }
+
+    public void serve(InputStream in, OutputStream out) throws IOException, InterruptedException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        Phaser inFlight = new Phaser(1);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.equals("QUIT")) {
+                break;
+            }
+            inFlight.register();
+            handle(line, writer).whenComplete((result, error) -> inFlight.arriveAndDeregister());
+        }
+        inFlight.arriveAndAwaitAdvance();
+        synchronized (writer) {
+            writer.flush();
+        }
+    }
+
+    private CompletableFuture<?> handle(String line, Writer writer) throws InterruptedException {
+        String[] parts = line.split(" ", 3);
+        String id = parts.length > 1 ? parts[1] : "-";
+        try {
+            switch (parts[0]) {
+                case "COMPILE": {
+                    String[] fields = parts[2].split(" ", 4);
+                    String grammar = fields[3].replace(";", "\n");
+                    return service.compile(fields[0], fields[1], fields[2], grammar)
+                                  .handle((result, error) -> reply(writer, id, error != null ? error : "OK"));
+                }
+                case "VALIDATE": {
+                    String[] fields = parts[2].split(" ", 2);
+                    return service.validate(fields[0], fields.length > 1 ? fields[1] : "")
+                                  .handle((valid, error) -> reply(writer, id,
+                                          error != null ? error : valid ? "VALID" : "INVALID"));
+                }
+                case "CHECK": {
+                    String[] fields = parts[2].split(" ", 2);
+                    return service.check(fields[0], fields.length > 1 ? fields[1] : "")
+                                  .handle((errors, error) -> reply(writer, id,
+                                          error != null ? error : describe(errors)));
+                }
+                case "METRICS": {
+                    ParseMetrics metrics = service.getMetrics(parts[2].trim());
+                    reply(writer, id, metrics != null ? "METRICS " + metrics
+                            : new IllegalArgumentException("No metrics for " + parts[2].trim()));
+                    break;
+                }
+                default:
+                    reply(writer, id, new IllegalArgumentException("Unknown command " + parts[0]));
+            }
+        } catch (RuntimeException e) {
+            reply(writer, id, new IllegalArgumentException("Malformed request: " + line));
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static String describe(List<SyntaxError> errors) {
+        if (errors.isEmpty()) {
+            return "VALID";
+        }
+        StringBuilder sb = new StringBuilder("SYNTAX ").append(errors.size());
+        for (int i = 0; i < errors.size(); i++) {
+            sb.append(i == 0 ? " " : " ; ").append(errors.get(i).getMessage());
+        }
+        return sb.toString();
+    }
+
+    private static Void reply(Writer writer, String id, Object result) {
+        String text;
+        if (result instanceof Throwable) {
+            Throwable error = (Throwable) result;
+            if (error instanceof CompletionException && error.getCause() != null) {
+                error = error.getCause();
+            }
+            text = "ERROR " + String.valueOf(error.getMessage()).replace('\n', ' ');
+        } else {
+            text = result.toString();
+        }
+        synchronized (writer) {
+            try {
+                writer.write(id + " " + text + "\n");
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return null;
+    }
+
+    // Usage: ParserServer [--port N] [--workers N] [--queue N] [--metrics true]
+    public static void main(String[] args) throws Exception {
+        int port = -1;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int queue = 1024;
+        boolean metrics = false;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--workers":
+                    workers = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--queue":
+                    queue = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--metrics":
+                    metrics = Boolean.parseBoolean(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        ParserService service = new ParserService(workers, queue, metrics);
+        ParserServer server = new ParserServer(service);
+        if (port < 0) {
+            server.serve(System.in, System.out);
+            service.close();
+            return;
+        }
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                Thread connection = new Thread(() -> {
+                    try (socket) {
+                        server.serve(socket.getInputStream(), socket.getOutputStream());
+                    } catch (IOException e) {
+                        // The client went away; its replies have nowhere to go.
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, "parser-connection");
+                connection.start();
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package service;
+import LL1.CompiledGrammar;
+import LL1.LL1CodeGenerator;
+import earley.EarleyGrammar;
+import engine.ParseMetrics;
+import engine.Recognizer;
+import engine.SyntaxChecker;
+import engine.SyntaxError;
+import grammar.Grammar;
+import lexer.Lexer;
+import rdp.RDPCodeGenerator;
+import rdp.RDPGrammar;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+// Headless entry point: compiles named grammars and validates inputs against them
+// on a bounded worker pool. Submitting blocks once queueCapacity requests are
+// pending, which pushes back on whoever is feeding requests in.
+public class ParserService implements AutoCloseable {
+    private final ExecutorService workers;
+    private final Semaphore pending;
+    private final Map<String, CompletableFuture<Recognizer>> grammars = new ConcurrentHashMap<>();
+    private final Map<String, ParseMetrics> metrics;
+
+    public ParserService(int workerCount, int queueCapacity) {
+        this(workerCount, queueCapacity, false);
+    }
+
+    // With collectMetrics, every grammar records into a ParseMetrics that is also
+    // registered over JMX under the grammar's name.
+    public ParserService(int workerCount, int queueCapacity, boolean collectMetrics) {
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "parser-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pending = new Semaphore(queueCapacity);
+        this.metrics = collectMetrics ? new ConcurrentHashMap<>() : null;
+    }
+
+    // engine is "ll1", "rdp", "packrat" or, for ambiguous grammars, "earley". The
+    // first three may end in "-generated" to compile a parser specialized to the
+    // grammar. Validations submitted for the same name afterwards wait for this
+    // compilation instead of failing.
+    public CompletableFuture<Recognizer> compile(String name, String engine, String startSymbol, String grammar)
+            throws InterruptedException {
+        return compile(name, engine, startSymbol, grammar, null);
+    }
+
+    // As above, but input is read by a lexer: terminals named in tokens match their
+    // regular expression, the others their spelling, and input need not be
+    // pre-spaced. Generated parsers take whitespace-separated input only.
+    public CompletableFuture<Recognizer> compile(String name, String engine, String startSymbol, String grammar,
+                                                 Map<String, String> tokens) throws InterruptedException {
+        ParseMetrics grammarMetrics = null;
+        if (metrics != null) {
+            grammarMetrics = metrics.computeIfAbsent(name, key -> new ParseMetrics(key));
+            grammarMetrics.register();
+            // Counts from an earlier version of the grammar would be misleading.
+            grammarMetrics.reset();
+        }
+        ParseMetrics recorder = grammarMetrics;
+        CompletableFuture<Recognizer> compiled = submit(() -> compile(engine, startSymbol, grammar, tokens, recorder));
+        grammars.put(name, compiled);
+        return compiled;
+    }
+
+    // null when metrics are off or nothing was compiled under name.
+    public ParseMetrics getMetrics(String name) {
+        return metrics != null ? metrics.get(name) : null;
+    }
+
+    public CompletableFuture<Boolean> validate(String name, String input) throws InterruptedException {
+        return apply(name, recognizer -> recognizer.validate(input));
+    }
+
+    // Every syntax error in input, for engines that recover from errors; generated
+    // parsers only answer validate.
+    public CompletableFuture<List<SyntaxError>> check(String name, String input) throws InterruptedException {
+        return apply(name, recognizer -> {
+            if (!(recognizer instanceof SyntaxChecker)) {
+                throw new IllegalArgumentException("Grammar " + name + " cannot report syntax errors");
+            }
+            return ((SyntaxChecker) recognizer).check(input);
+        });
+    }
+
+    private <T> CompletableFuture<T> apply(String name, Function<Recognizer, T> request)
+            throws InterruptedException {
+        CompletableFuture<Recognizer> grammar = grammars.get(name);
+        if (grammar == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Unknown grammar " + name));
+        }
+        pending.acquire();
+        return grammar.thenApplyAsync(request, workers)
+                      .whenComplete((result, error) -> pending.release());
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> task) throws InterruptedException {
+        pending.acquire();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        workers.execute(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                pending.release();
+            }
+        });
+        return future;
+    }
+
+    private static Recognizer compile(String engine, String startSymbol, String grammar, Map<String, String> tokens,
+                                      ParseMetrics metrics) {
+        Lexer lexer = tokens != null ? Lexer.forGrammar(Grammar.parse(grammar), tokens) : null;
+        switch (engine) {
+            case "ll1":
+                return CompiledGrammar.forGrammar(grammar, startSymbol).withMetrics(metrics).withLexer(lexer);
+            case "rdp":
+                return new RDPGrammar(grammar, startSymbol).recognizer(false, metrics, lexer);
+            case "packrat":
+                return new RDPGrammar(grammar, startSymbol).recognizer(true, metrics, lexer);
+            case "earley":
+                return new EarleyGrammar(grammar, startSymbol).recognizer(metrics, lexer);
+            default:
+                break;
+        }
+        if (lexer != null) {
+            throw new IllegalArgumentException("Engine " + engine + " cannot use token patterns");
+        }
+        Recognizer generated;
+        switch (engine) {
+            case "ll1-generated":
+                generated = LL1CodeGenerator.compile(CompiledGrammar.forGrammar(grammar, startSymbol));
+                break;
+            case "rdp-generated":
+                generated = RDPCodeGenerator.compile(new RDPGrammar(grammar, startSymbol), false);
+                break;
+            case "packrat-generated":
+                generated = RDPCodeGenerator.compile(new RDPGrammar(grammar, startSymbol), true);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown engine " + engine);
+        }
+        // Generated parsers have no hooks; only validations and latency are counted.
+        return metrics != null ? ParseMetrics.instrument(generated, metrics) : generated;
+    }
+
+    @Override
+    public void close() {
+        workers.shutdown();
+        if (metrics != null) {
+            for (ParseMetrics grammarMetrics : metrics.values()) {
+                grammarMetrics.unregister();
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package LL1;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledGrammarTest {
+    private static final String LIST = "S -> a S | epsilon";
+
+    @Test
+    void emptyInputIsTheEmptySentence() {
+        CompiledGrammar grammar = CompiledGrammar.forGrammar(LIST, "S");
+        assertTrue(grammar.validate(""));
+        assertTrue(grammar.validate("   "));
+        assertEquals(List.of(), grammar.check(""));
+        assertFalse(CompiledGrammar.forGrammar("S -> a", "S").validate(""));
+    }
+
+    @Test
+    void extraSpacesGiveNoEmptyTokens() {
+        CompiledGrammar grammar = CompiledGrammar.forGrammar(LIST, "S");
+        assertTrue(grammar.validate(" a  a "));
+        assertEquals(List.of(), grammar.check("a  a"));
+        assertEquals("[Token 1 'b': expected one of $ a]", grammar.check("a  b").toString());
+    }
+
+    @Test
+    void sameTextSharesOneCompiledGrammar() {
+        assertSame(CompiledGrammar.forGrammar(LIST, "S"), CompiledGrammar.forGrammar("S ->  a S |  epsilon\n", " S"));
+    }
+}
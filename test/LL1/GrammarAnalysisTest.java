@@ -0,0 +1,101 @@
+package LL1;
+import grammar.Grammar;
+import grammar.RandomGrammars;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GrammarAnalysisTest {
+    @Test
+    void leftRecursiveGrammar() {
+        assertMatchesNaive("E -> E + T | T\nT -> T * F | F\nF -> ( E ) | id", "E");
+    }
+
+    @Test
+    void mutuallyRecursiveGrammar() {
+        assertMatchesNaive("A -> B a | c\nB -> C b | A d\nC -> A e | B f | g", "A");
+    }
+
+    // Every FOLLOW set on a cycle of nullable nonterminals flows into the others.
+    @Test
+    void nullableCycle() {
+        String rules = "S -> A s\nA -> B x | B | epsilon\nB -> C y | C\nC -> A z | A | epsilon";
+        assertMatchesNaive(rules, "S");
+        CompiledGrammar grammar = CompiledGrammar.compile(Grammar.parse(rules), "S");
+        assertEquals(Set.of("s", "x", "y", "z"), grammar.getFollow().get("C"));
+        assertEquals(grammar.getFollow().get("A"), grammar.getFollow().get("B"));
+    }
+
+    @Test
+    void randomGrammars() {
+        Random random = new Random(3);
+        for (int round = 0; round < 300; round++) {
+            Map<String, List<List<String>>> rules = RandomGrammars.rules(random, 2 + random.nextInt(5), 4);
+            assertMatchesNaive(RandomGrammars.text(rules), "A");
+        }
+    }
+
+    private static void assertMatchesNaive(String text, String start) {
+        Map<String, List<List<String>>> rules = Grammar.parse(text).toRules();
+        CompiledGrammar grammar = CompiledGrammar.compile(rules, start);
+        Map<String, Set<String>> first = new HashMap<>();
+        Map<String, Set<String>> follow = new HashMap<>();
+        naive(rules, start, first, follow);
+        for (String nt : rules.keySet()) {
+            assertEquals(first.get(nt), grammar.getFirst().get(nt), "FIRST(" + nt + ") in\n" + text);
+            assertEquals(follow.get(nt), grammar.getFollow().get(nt), "FOLLOW(" + nt + ") in\n" + text);
+        }
+    }
+
+    // The textbook algorithm: apply every rule to every production until nothing
+    // changes. FIRST sets hold epsilon for nullable nonterminals.
+    private static void naive(Map<String, List<List<String>>> rules, String start,
+                              Map<String, Set<String>> first, Map<String, Set<String>> follow) {
+        for (String nt : rules.keySet()) {
+            first.put(nt, new HashSet<>());
+            follow.put(nt, new HashSet<>());
+        }
+        follow.get(start).add(Grammar.END_MARKER);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<String, List<List<String>>> rule : rules.entrySet()) {
+                for (List<String> body : rule.getValue()) {
+                    changed |= first.get(rule.getKey()).addAll(firstOf(body, rules, first));
+                    for (int i = 0; i < body.size(); i++) {
+                        Set<String> into = follow.get(body.get(i));
+                        if (into == null) {
+                            continue;
+                        }
+                        Set<String> rest = firstOf(body.subList(i + 1, body.size()), rules, first);
+                        if (rest.remove(Grammar.EPSILON)) {
+                            changed |= into.addAll(follow.get(rule.getKey()));
+                        }
+                        changed |= into.addAll(rest);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Set<String> firstOf(List<String> symbols, Map<String, List<List<String>>> rules,
+                                       Map<String, Set<String>> first) {
+        Set<String> result = new HashSet<>();
+        for (String symbol : symbols) {
+            if (symbol.equals(Grammar.EPSILON)) {
+                continue;
+            }
+            if (!rules.containsKey(symbol)) {
+                result.add(symbol);
+                return result;
+            }
+            result.addAll(first.get(symbol));
+            if (!result.remove(Grammar.EPSILON)) {
+                return result;
+            }
+        }
+        result.add(Grammar.EPSILON);
+        return result;
+    }
+}
@@ -0,0 +1,124 @@
+package LL1;
+import grammar.Grammar;
+import grammar.RandomGrammars;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GrammarEditorTest {
+    private static final int TERMINALS = 3;
+
+    // After every edit the editor must agree with compiling its rules from scratch.
+    @Test
+    void incrementalEditsMatchFullRecompile() {
+        Random random = new Random(19);
+        for (int round = 0; round < 200; round++) {
+            Map<String, List<List<String>>> rules = RandomGrammars.rules(random, 2 + random.nextInt(3), TERMINALS);
+            GrammarEditor editor = new GrammarEditor(rules, "A");
+            assertMatchesRecompile(editor, random, round);
+            for (int edit = 0; edit < 5; edit++) {
+                Map<String, List<List<String>>> edited = edit(random, editor.getRules());
+                editor.apply(GrammarDelta.between(editor.getRules(), edited));
+                assertEquals(edited, editor.getRules());
+                assertMatchesRecompile(editor, random, round);
+            }
+        }
+    }
+
+    @Test
+    void onlyAffectedRowsAreRebuilt() {
+        Map<String, List<List<String>>> rules = new LinkedHashMap<>();
+        rules.put("S", List.of(List.of("A", "B")));
+        rules.put("A", List.of(List.of("a")));
+        rules.put("B", List.of(List.of("b"), List.of("C")));
+        rules.put("C", List.of(List.of("c")));
+        GrammarEditor editor = new GrammarEditor(rules, "S");
+        // FIRST(C) is unchanged, so no other row can be.
+        assertEquals(Set.of("C"), editor.apply(new GrammarDelta().replace("C", List.of(List.of("c", "a")))));
+        assertTrue(editor.compile().validate("a c a"));
+        // A new FIRST(C) reaches B and S through their bodies, and FOLLOW(A) through B.
+        Set<String> rebuilt = editor.apply(new GrammarDelta().add("C", List.of("a")));
+        assertEquals(Set.of("A", "B", "C", "S"), rebuilt);
+        assertEquals("C", editor.getEntry("B", "a"));
+        assertTrue(editor.compile().validate("a a"));
+    }
+
+    private static void assertMatchesRecompile(GrammarEditor editor, Random random, int round) {
+        Map<String, List<List<String>>> rules = editor.getRules();
+        String context = "round " + round + ":\n" + RandomGrammars.text(rules);
+        CompiledGrammar expected = CompiledGrammar.compile(rules, "A");
+        CompiledGrammar actual = editor.compile();
+
+        assertEquals(expected.isLL1(), editor.isLL1(), context);
+        assertEquals(expected.isLL1(), actual.isLL1(), context);
+        assertEquals(new HashSet<>(expected.getTerminals()), new HashSet<>(actual.getTerminals()), context);
+        for (String nt : rules.keySet()) {
+            assertEquals(expected.getFirst().get(nt), editor.getFirst(nt), "FIRST(" + nt + ") " + context);
+            assertEquals(expected.getFollow().get(nt), editor.getFollow(nt), "FOLLOW(" + nt + ") " + context);
+            List<String> columns = new ArrayList<>(expected.getTerminals());
+            columns.add(Grammar.END_MARKER);
+            for (String terminal : columns) {
+                assertEquals(expected.getEntry(nt, terminal), actual.getEntry(nt, terminal),
+                             "M[" + nt + ", " + terminal + "] " + context);
+            }
+        }
+        // Conflicts are listed in terminal id order, which depends on edit history.
+        assertEquals(conflicts(expected), conflicts(actual), context);
+        assertEquals(expected.getLookahead(), actual.getLookahead(), context);
+        for (List<String> input : RandomGrammars.inputs(random, rules, TERMINALS, 10)) {
+            List<String> tokens = new ArrayList<>(input);
+            tokens.add(Grammar.END_MARKER);
+            assertEquals(expected.validate(tokens), actual.validate(tokens), input + " " + context);
+        }
+    }
+
+    private static Set<String> conflicts(CompiledGrammar grammar) {
+        Set<String> conflicts = new HashSet<>();
+        for (Conflict conflict : grammar.getConflicts()) {
+            conflicts.add(conflict.toString());
+        }
+        return conflicts;
+    }
+
+    // One random change: a production added, removed or replaced, a new
+    // nonterminal, or a nonterminal other than the start symbol dropped.
+    private static Map<String, List<List<String>>> edit(Random random, Map<String, List<List<String>>> rules) {
+        Map<String, List<List<String>>> edited = new LinkedHashMap<>();
+        for (Map.Entry<String, List<List<String>>> entry : rules.entrySet()) {
+            edited.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        List<String> heads = new ArrayList<>(edited.keySet());
+        String head = heads.get(random.nextInt(heads.size()));
+        int nonTerminals = heads.size();
+        List<List<String>> productions = edited.get(head);
+        switch (random.nextInt(5)) {
+            case 0:
+                productions.add(RandomGrammars.production(random, nonTerminals, TERMINALS));
+                break;
+            case 1:
+                if (productions.size() > 1) {
+                    productions.remove(random.nextInt(productions.size()));
+                }
+                break;
+            case 2:
+                productions.set(random.nextInt(productions.size()),
+                                RandomGrammars.production(random, nonTerminals, TERMINALS));
+                break;
+            case 3:
+                String added = RandomGrammars.nonTerminal(nonTerminals);
+                if (!edited.containsKey(added) && nonTerminals < 6) {
+                    edited.put(added, new ArrayList<>(List.of(RandomGrammars.production(random, nonTerminals,
+                                                                                        TERMINALS))));
+                    productions.add(List.of(RandomGrammars.terminal(0), added));
+                }
+                break;
+            default:
+                if (!head.equals("A")) {
+                    edited.remove(head);
+                }
+                break;
+        }
+        return edited;
+    }
+}
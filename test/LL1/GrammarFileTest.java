@@ -0,0 +1,77 @@
+package LL1;
+import grammar.Grammar;
+import grammar.RandomGrammars;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GrammarFileTest {
+    private static final int TERMINALS = 3;
+
+    @Test
+    void loadedGrammarMatchesSaved() throws IOException {
+        Random random = new Random(23);
+        Path file = Files.createTempFile("grammar", ".ll1");
+        try {
+            for (int round = 0; round < 50; round++) {
+                Map<String, List<List<String>>> rules = RandomGrammars.rules(random, 2 + random.nextInt(4), TERMINALS);
+                CompiledGrammar saved = CompiledGrammar.compile(rules, "A");
+                saved.save(file);
+                CompiledGrammar loaded = CompiledGrammar.load(file);
+                String context = "round " + round + ":\n" + RandomGrammars.text(rules);
+
+                assertEquals(saved.getStartSymbol(), loaded.getStartSymbol(), context);
+                assertEquals(saved.getNonTerminals(), loaded.getNonTerminals(), context);
+                assertEquals(saved.getTerminals(), loaded.getTerminals(), context);
+                assertEquals(saved.getFirst(), loaded.getFirst(), context);
+                assertEquals(saved.getFollow(), loaded.getFollow(), context);
+                assertEquals(saved.isLL1(), loaded.isLL1(), context);
+                assertEquals(saved.getConflicts().toString(), loaded.getConflicts().toString(), context);
+                assertEquals(saved.getLookahead(), loaded.getLookahead(), context);
+                assertEquals(saved.getSourceChecksum(), loaded.getSourceChecksum(), context);
+                List<String> columns = new ArrayList<>(saved.getTerminals());
+                columns.add(Grammar.END_MARKER);
+                for (String nt : saved.getNonTerminals()) {
+                    for (String terminal : columns) {
+                        assertEquals(saved.getEntry(nt, terminal), loaded.getEntry(nt, terminal), context);
+                    }
+                }
+                for (List<String> input : RandomGrammars.inputs(random, rules, TERMINALS, 10)) {
+                    String text = String.join(" ", input);
+                    assertEquals(saved.validate(text), loaded.validate(text), text + " " + context);
+                    assertEquals(saved.check(text).toString(), loaded.check(text).toString(), text + " " + context);
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void loadOrCompileRebuildsOnlyForAnotherGrammar() throws IOException {
+        Path file = Files.createTempFile("grammar", ".ll1");
+        try {
+            Files.write(file, new byte[] {1, 2, 3});
+            CompiledGrammar first = CompiledGrammar.loadOrCompile(file, "S -> a S | b", "S");
+            assertTrue(first.validate("a a b"));
+            long size = Files.size(file);
+            assertTrue(size > 3);
+
+            // Same grammar written differently: the file is used as it is.
+            CompiledGrammar again = CompiledGrammar.loadOrCompile(file, "S ->  a S\nS -> b", "S");
+            assertEquals(first.getSourceChecksum(), again.getSourceChecksum());
+            assertTrue(again.validate("a b"));
+
+            CompiledGrammar other = CompiledGrammar.loadOrCompile(file, "S -> a S | c", "S");
+            assertFalse(other.validate("a b"));
+            assertTrue(other.validate("a c"));
+            assertEquals(other.getSourceChecksum(), CompiledGrammar.load(file).getSourceChecksum());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package LL1;
+import engine.GeneratedParser;
+import grammar.RandomGrammars;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LL1CodeGeneratorTest {
+    private static final int TERMINALS = 3;
+
+    // Conflicting grammars included: the generated parser must make the same
+    // guesses as the table it was generated from.
+    @Test
+    void generatedParserMatchesTable() {
+        Random random = new Random(7);
+        for (int round = 0; round < 40; round++) {
+            Map<String, List<List<String>>> rules = RandomGrammars.rules(random, 2 + random.nextInt(3), TERMINALS);
+            CompiledGrammar grammar = CompiledGrammar.compile(rules, "A");
+            GeneratedParser parser = LL1CodeGenerator.compile(grammar);
+            for (List<String> input : RandomGrammars.inputs(random, rules, TERMINALS, 20)) {
+                String text = String.join(" ", input);
+                assertEquals(grammar.validate(text), parser.validate(text),
+                             "'" + text + "' in\n" + RandomGrammars.text(rules));
+                assertEquals(grammar.validate(text), grammar.check(text).isEmpty(), text);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package LL1;
+import engine.SyntaxError;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LL1RecoveryTest {
+    private static final String EXPRESSIONS =
+            "E -> T X\nX -> + T X | epsilon\nT -> F Y\nY -> * F Y | epsilon\nF -> ( E ) | id";
+
+    private static String messages(CompiledGrammar grammar, String input) {
+        StringBuilder sb = new StringBuilder();
+        for (SyntaxError error : grammar.check(input)) {
+            sb.append(error.getMessage()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void validInputHasNoErrors() {
+        CompiledGrammar grammar = CompiledGrammar.forGrammar(EXPRESSIONS, "E");
+        assertEquals(List.of(), grammar.check("( id + id ) * id"));
+    }
+
+    @Test
+    void reportsEveryErrorOnce() {
+        CompiledGrammar grammar = CompiledGrammar.forGrammar(EXPRESSIONS, "E");
+        assertEquals("Token 2 '*': expected one of ( id\n"
+                     + "Token 6 'id': expected one of $ + * )\n",
+                     messages(grammar, "id + * id + id id"));
+        assertEquals("Token 2 '$': expected )\n", messages(grammar, "( id"));
+        assertEquals("Token 3 ')': expected $\n", messages(grammar, "id + id ) * id"));
+    }
+
+    @Test
+    void lookaheadDecisionExpectsEveryCandidate() {
+        CompiledGrammar grammar = CompiledGrammar.forGrammar("S -> a b | a c", "S");
+        assertEquals(2, grammar.getLookahead());
+        assertEquals("Token 1 'd': expected one of b c\n", messages(grammar, "a d"));
+        assertEquals("Token 1 '$': expected one of b c\n", messages(grammar, "a"));
+    }
+
+    @Test
+    void noCascadeAfterMissingTerminal() {
+        CompiledGrammar grammar = CompiledGrammar.forGrammar("S -> a b c", "S");
+        assertEquals("Token 1 'x': expected b\n", messages(grammar, "a x"));
+        assertEquals(1, grammar.check("a x y c").size());
+    }
+
+    @Test
+    void checkAgreesWithValidate() {
+        CompiledGrammar grammar = CompiledGrammar.forGrammar(EXPRESSIONS, "E");
+        for (String input : new String[] {"id", "id +", "( ( id ) )", "id * * id", ") id", "id id id"}) {
+            assertEquals(grammar.validate(input), grammar.check(input).isEmpty(), input);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package LL1;
+import engine.GeneratedParser;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LookaheadTest {
+    @Test
+    void unresolvedLeftRecursionIsRejected() {
+        CompiledGrammar grammar = CompiledGrammar.forGrammar("E -> E + T | T\nT -> id", "E");
+        assertFalse(grammar.isLL1());
+        assertEquals(1, grammar.getLookahead());
+        assertFalse(grammar.validate("id + id"));
+        assertFalse(grammar.check("id + id").isEmpty());
+        assertFalse(LL1CodeGenerator.compile(grammar).validate("id + id"));
+    }
+
+    // A cycle of unit productions expands forever without growing the stack.
+    @Test
+    void unitCyclesTerminate() {
+        for (String rules : new String[] {"A -> B | a\nB -> A | b", "C -> C | c", "S -> A\nA -> B | x\nB -> A | x"}) {
+            String start = rules.substring(0, 1);
+            CompiledGrammar grammar = CompiledGrammar.forGrammar(rules, start);
+            GeneratedParser parser = LL1CodeGenerator.compile(grammar);
+            for (String input : new String[] {"a", "b", "c", "x", "x x"}) {
+                assertEquals(grammar.validate(input), parser.validate(input), rules + ": " + input);
+                grammar.check(input);
+            }
+        }
+    }
+
+    @Test
+    void lookaheadCountsOnlyResolvedConflicts() {
+        assertEquals(1, CompiledGrammar.forGrammar("S -> a b | c", "S").getLookahead());
+        assertEquals(2, CompiledGrammar.forGrammar("S -> a b | a c", "S").getLookahead());
+        assertEquals(1, CompiledGrammar.forGrammar("S -> a | a", "S").getLookahead());
+    }
+}
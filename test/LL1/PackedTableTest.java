@@ -0,0 +1,108 @@
+package LL1;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedTableTest {
+    private static final int EMPTY = LL1Table.NO_PRODUCTION;
+
+    @Test
+    void everyCellReadsBackAsInTheDenseTable() {
+        Random random = new Random(22);
+        for (int round = 0; round < 500; round++) {
+            int rows = 1 + random.nextInt(20);
+            int columns = 1 + random.nextInt(40);
+            int[] cells = randomCells(random, rows, columns);
+            PackedTable packed = PackedTable.pack(cells, rows, columns);
+            assertMatches(cells, rows, columns, packed, "round " + round);
+
+            // Rewriting cells repacks to the table a fresh pack would read as.
+            int[] changed = new int[1 + random.nextInt(rows * columns)];
+            for (int i = 0; i < changed.length; i++) {
+                changed[i] = random.nextInt(rows * columns);
+            }
+            changed = Arrays.stream(changed).sorted().distinct().toArray();
+            int[] values = new int[changed.length];
+            for (int i = 0; i < changed.length; i++) {
+                values[i] = random.nextInt(4) == 0 ? EMPTY : random.nextInt(5);
+                cells[changed[i]] = values[i];
+            }
+            assertMatches(cells, rows, columns, packed.with(changed, values), "round " + round + " edited");
+        }
+    }
+
+    @Test
+    void statsCountCellsThatDifferFromTheRowDefault() {
+        // Row 0 is empty, row 1 defaults to 3, row 2 has no common value.
+        int[] cells = {
+            EMPTY, EMPTY, EMPTY, EMPTY,
+            3, 3, 3, EMPTY,
+            0, 1, EMPTY, EMPTY,
+        };
+        PackedTable packed = PackedTable.pack(cells, 3, 4);
+        assertEquals(EMPTY, packed.getDefaults().get(0));
+        assertEquals(3, packed.getDefaults().get(1));
+        assertEquals(EMPTY, packed.getDefaults().get(2));
+        TableStats stats = packed.getStats();
+        assertEquals(3, stats.getRows());
+        assertEquals(4, stats.getColumns());
+        assertEquals(12, stats.getCells());
+        assertEquals(3, stats.getStoredCells());
+        assertEquals(48, stats.getDenseBytes());
+        assertEquals(8L * 3 + 8L * stats.getSlots(), stats.getPackedBytes());
+        assertEquals(3.0 / stats.getSlots(), stats.getFill(), 1e-9);
+    }
+
+    private static void assertMatches(int[] cells, int rows, int columns, PackedTable packed, String context) {
+        assertEquals(rows, packed.getRows(), context);
+        assertEquals(columns, packed.getColumns(), context);
+        int[] row = new int[columns];
+        int stored = 0;
+        for (int r = 0; r < rows; r++) {
+            packed.row(r, row);
+            for (int t = 0; t < columns; t++) {
+                int expected = cells[r * columns + t];
+                assertEquals(expected, packed.get(r, t), context + " cell " + r + ", " + t);
+                assertEquals(expected, row[t], context + " row " + r + ", " + t);
+            }
+            stored += columns - mostCommonCount(cells, r * columns, columns);
+        }
+        TableStats stats = packed.getStats();
+        assertEquals(stored, stats.getStoredCells(), context);
+        assertEquals(packed.getSlotCount(), stats.getSlots(), context);
+        assertTrue(stats.getSlots() >= stored, context);
+        assertEquals((long) rows * columns, stats.getCells(), context);
+    }
+
+    // How often a row's most common value, empty cells included, occurs.
+    private static int mostCommonCount(int[] cells, int from, int columns) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        int most = 0;
+        for (int t = from; t < from + columns; t++) {
+            most = Math.max(most, counts.merge(cells[t], 1, Integer::sum));
+        }
+        return most;
+    }
+
+    // Mostly empty rows, rows dominated by one production, so their default is
+    // not NO_PRODUCTION, and rows of scattered values.
+    private static int[] randomCells(Random random, int rows, int columns) {
+        int[] cells = new int[rows * columns];
+        for (int r = 0; r < rows; r++) {
+            int kind = random.nextInt(4);
+            int common = random.nextInt(5);
+            for (int t = 0; t < columns; t++) {
+                int cell;
+                switch (kind) {
+                    case 0: cell = EMPTY; break;
+                    case 1: cell = random.nextInt(8) == 0 ? EMPTY : common; break;
+                    case 2: cell = random.nextInt(10) == 0 ? random.nextInt(5) : EMPTY; break;
+                    default: cell = random.nextBoolean() ? EMPTY : random.nextInt(5); break;
+                }
+                cells[r * columns + t] = cell;
+            }
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,149 @@
+package LL1;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenSourceTest {
+    private static final String RULES = "S -> T S | epsilon\nT -> a | bb | \u00e9 | \u65e5\u672c | x\u2192y";
+    private static final String[] TOKENS = {"a", "bb", "\u00e9", "\u65e5\u672c", "x\u2192y", "zz", "\u00e9\u65e5", "b"};
+    private static final String[] SPACES = {" ", "  ", "\t", "\n", "\r\n", "\f", "\u000B", " \t "};
+
+    @Test
+    void everySourceSplitsLikeTheTokenList() throws IOException {
+        CompiledGrammar grammar = CompiledGrammar.forGrammar(RULES, "S");
+        Random random = new Random(13);
+        Path file = Files.createTempFile("tokens", ".txt");
+        try {
+            for (int round = 0; round < 300; round++) {
+                List<String> tokens = new ArrayList<>();
+                StringBuilder text = new StringBuilder(random.nextBoolean() ? spaces(random) : "");
+                for (int n = random.nextInt(12); n > 0; n--) {
+                    String token = TOKENS[random.nextInt(random.nextInt(4) == 0 ? TOKENS.length : 5)];
+                    tokens.add(token);
+                    text.append(token).append(n > 1 || random.nextBoolean() ? spaces(random) : "");
+                }
+                tokens.add("$");
+                String input = text.toString();
+                byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+                Files.write(file, bytes);
+                int[] expected = grammar.getTable().encode(tokens);
+                boolean valid = grammar.validate(tokens);
+                String context = "'" + input + "'";
+
+                assertEquals(valid, grammar.validate(input), context);
+                assertEquals(valid, grammar.validate(grammar.tokenSource(input)), context);
+                assertArrayEquals(expected, drain(grammar.tokenSource(input)), context);
+                assertArrayEquals(expected, drain(grammar.tokenSource(trickle(input, random))), context);
+                assertArrayEquals(expected, drain(grammar.tokenSource(ByteBuffer.wrap(bytes))), context);
+                assertArrayEquals(expected, drain(grammar.tokenSource(trickle(bytes, random))), context);
+                assertArrayEquals(expected, drain(grammar.tokenSource(file)), context);
+                // Windows of a few bytes cut tokens, and UTF-8 sequences, the way
+                // 256 MB windows cut a large file.
+                for (long window : new long[] {1, 2, 3, 7}) {
+                    TerminalLookup lookup = grammar.getTable().getTerminalLookup();
+                    assertArrayEquals(expected, drain(ByteTokenSource.map(file, lookup, window)),
+                                      context + " window " + window);
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void unknownTokensAreReported() throws IOException {
+        CompiledGrammar grammar = CompiledGrammar.forGrammar(RULES, "S");
+        int[] ids = drain(grammar.tokenSource("a q \u00e9\u00e9 bb"));
+        assertEquals(5, ids.length);
+        assertEquals(LL1Table.UNKNOWN_SYMBOL, ids[1]);
+        assertEquals(LL1Table.UNKNOWN_SYMBOL, ids[2]);
+        assertFalse(grammar.validate(grammar.tokenSource("a q")));
+    }
+
+    @Test
+    void whitespaceRunsSeparateOnce() throws IOException {
+        CompiledGrammar grammar = CompiledGrammar.forGrammar("S -> a S | epsilon", "S");
+        for (String input : new String[] {"a  a", " a\t\ta\n", "", "  \r\n"}) {
+            assertTrue(grammar.validate(input), input);
+            assertTrue(grammar.validate(grammar.tokenSource(input)), input);
+            assertTrue(grammar.validate(grammar.tokenSource(ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8)))),
+                       input);
+        }
+    }
+
+    private static String spaces(Random random) {
+        return SPACES[random.nextInt(SPACES.length)];
+    }
+
+    private static int[] drain(TokenSource source) throws IOException {
+        try (source) {
+            List<Integer> ids = new ArrayList<>();
+            int id;
+            do {
+                id = source.next();
+                ids.add(id);
+            } while (id != LL1Table.END_MARKER);
+            return ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    // Hands out a few chars per read, so tokens are cut between buffer fills.
+    private static Reader trickle(String input, Random random) {
+        return new Reader() {
+            private int position;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                if (position == input.length()) {
+                    return -1;
+                }
+                int n = Math.min(length, Math.min(input.length() - position, 1 + random.nextInt(3)));
+                input.getChars(position, position + n, buffer, offset);
+                position += n;
+                return n;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    // Hands out a few bytes per read, so tokens and UTF-8 sequences are cut
+    // between chunks and go through the carry buffer.
+    private static ReadableByteChannel trickle(byte[] bytes, Random random) {
+        return new ReadableByteChannel() {
+            private int position;
+            private boolean open = true;
+
+            @Override
+            public int read(ByteBuffer buffer) {
+                if (position == bytes.length) {
+                    return -1;
+                }
+                int n = Math.min(buffer.remaining(), Math.min(bytes.length - position, 1 + random.nextInt(3)));
+                buffer.put(bytes, position, n);
+                position += n;
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return open;
+            }
+
+            @Override
+            public void close() {
+                open = false;
+            }
+        };
+    }
+}
@@ -0,0 +1,129 @@
+package LL1;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceSinkTest {
+    @Test
+    void ringKeepsTheLastStepsOldestFirst() {
+        TraceRing ring = new TraceRing(3, 2);
+        int[] stack = {7, 8, 9, 10};
+        for (int i = 0; i < 2; i++) {
+            ring.step(TraceListener.EXPAND, 0, 0, i, 0, stack, 1 + i);
+        }
+        assertEquals(2, ring.size());
+        assertEquals(0, ring.get(0).getNumber());
+
+        for (int i = 2; i < 8; i++) {
+            ring.step(TraceListener.MATCH, 0, 0, i, 0, stack, 4);
+        }
+        assertEquals(8, ring.getSteps());
+        assertEquals(3, ring.size());
+        for (int i = 0; i < 3; i++) {
+            TraceStep step = ring.get(i);
+            assertEquals(5 + i, step.getNumber());
+            assertEquals(5 + i, step.getTokenIndex());
+            assertEquals(4, step.getStackDepth());
+            assertTrue(step.isMatch());
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> ring.get(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> ring.get(-1));
+
+        ring.clear();
+        assertEquals(0, ring.size());
+        assertThrows(IllegalArgumentException.class, () -> new TraceRing(0));
+    }
+
+    @Test
+    void fileReadsBackTheStepsOfTheParse() throws IOException {
+        CompiledGrammar grammar = CompiledGrammar.forGrammar("S -> a S | b", "S");
+        // Enough steps to flush the write buffer several times, and a stack
+        // deeper than the stack limit.
+        List<String> tokens = new ArrayList<>(Collections.nCopies(5000, "a"));
+        tokens.add("b");
+        tokens.add("$");
+        TraceRing ring = new TraceRing(20000, 4);
+        assertTrue(grammar.validate(tokens, ring));
+        Path file = Files.createTempFile("trace", ".bin");
+        try {
+            try (TraceFile trace = new TraceFile(file, 4)) {
+                assertTrue(grammar.validate(tokens, trace));
+                assertEquals(ring.getSteps(), trace.getSteps());
+            }
+            List<String> rows = new ArrayList<>();
+            TraceFile.forEach(file, step -> {
+                assertEquals(rows.size(), step.getNumber());
+                rows.add(step.format(grammar, tokens));
+            });
+            assertEquals(ring.size(), rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                assertEquals(ring.get(i).format(grammar, tokens), rows.get(i), "step " + i);
+            }
+            assertTrue(rows.get(rows.size() - 1).contains("Accept"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void truncatedOrCorruptFilesAreRejected() throws IOException {
+        Path file = Files.createTempFile("trace", ".bin");
+        try {
+            try (TraceFile trace = new TraceFile(file, 2)) {
+                int[] stack = {1, 2, 3};
+                trace.step(TraceListener.EXPAND, 0, 0, 0, 0, stack, 3);
+                trace.step(TraceListener.MATCH, 0, 0, 1, 0, stack, 1);
+            }
+            byte[] good = Files.readAllBytes(file);
+            // Header, then a record of 7 + 2 ints and one of 7 + 1.
+            assertEquals(4 * (3 + 9 + 8), good.length);
+            assertEquals(2, count(file));
+
+            assertRejected(file, new byte[0]);
+            assertRejected(file, Arrays.copyOf(good, 8));
+            assertRejected(file, Arrays.copyOf(good, good.length - 4));
+            assertRejected(file, Arrays.copyOf(good, good.length - 1));
+            assertRejected(file, Arrays.copyOf(good, 12 + 4 * 5));
+
+            byte[] magic = good.clone();
+            magic[0] ^= 1;
+            assertRejected(file, magic);
+            byte[] version = good.clone();
+            ByteBuffer.wrap(version).order(ByteOrder.LITTLE_ENDIAN).putInt(4, TraceFile.VERSION + 1);
+            assertRejected(file, version);
+            byte[] stackLimit = good.clone();
+            ByteBuffer.wrap(stackLimit).order(ByteOrder.LITTLE_ENDIAN).putInt(8, -1);
+            assertRejected(file, stackLimit);
+            // The first record claims more stack symbols than the limit.
+            byte[] stored = good.clone();
+            ByteBuffer.wrap(stored).order(ByteOrder.LITTLE_ENDIAN).putInt(12 + 4 * 6, 3);
+            assertRejected(file, stored);
+            byte[] negative = good.clone();
+            ByteBuffer.wrap(negative).order(ByteOrder.LITTLE_ENDIAN).putInt(12 + 4 * 6, -1);
+            assertRejected(file, negative);
+
+            // A header alone is an empty trace.
+            Files.write(file, Arrays.copyOf(good, 12));
+            assertEquals(0, count(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void assertRejected(Path file, byte[] bytes) throws IOException {
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> count(file), bytes.length + " bytes");
+    }
+
+    private static int count(Path file) throws IOException {
+        int[] steps = {0};
+        TraceFile.forEach(file, step -> steps[0]++);
+        return steps[0];
+    }
+}
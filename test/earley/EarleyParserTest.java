@@ -0,0 +1,91 @@
+package earley;
+import grammar.Grammar;
+import grammar.RandomGrammars;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EarleyParserTest {
+    private static final int TERMINALS = 3;
+
+    // Random grammars are often left-recursive, cyclic or ambiguous, which is
+    // exactly what the Earley parser has to get right.
+    @Test
+    void agreesWithReferenceRecognizer() {
+        Random random = new Random(31);
+        for (int round = 0; round < 100; round++) {
+            Map<String, List<List<String>>> rules = RandomGrammars.rules(random, 2 + random.nextInt(3), TERMINALS);
+            EarleyParser parser = new EarleyParser(new EarleyGrammar(Grammar.of(rules), "A"));
+            for (List<String> input : RandomGrammars.inputs(random, rules, TERMINALS, 20)) {
+                assertEquals(derives(rules, "A", input), parser.validate(String.join(" ", input)),
+                             input + " in\n" + RandomGrammars.text(rules));
+            }
+        }
+    }
+
+    @Test
+    void countsTreesOfAmbiguousInput() {
+        EarleyParser parser = new EarleyParser("E -> E + E | id", "E");
+        // Catalan numbers: the ways to bracket n + 1 operands.
+        long[] catalan = {1, 1, 2, 5, 14, 42};
+        StringBuilder input = new StringBuilder("id");
+        for (int operators = 0; operators < catalan.length; operators++) {
+            ParseForest forest = parser.parse(input.toString());
+            assertNotNull(forest);
+            assertEquals(catalan[operators], forest.treeCount(), input.toString());
+            input.append(" + id");
+        }
+        assertNull(parser.parse("id +"));
+    }
+
+    // The reference: derives[A][i][j] for every span, grown to a fixed point.
+    // Slow, but obviously right.
+    private static boolean derives(Map<String, List<List<String>>> rules, String start, List<String> input) {
+        int n = input.size();
+        Map<String, boolean[][]> derives = new HashMap<>();
+        for (String nt : rules.keySet()) {
+            derives.put(nt, new boolean[n + 1][n + 1]);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<String, List<List<String>>> rule : rules.entrySet()) {
+                boolean[][] spans = derives.get(rule.getKey());
+                for (List<String> production : rule.getValue()) {
+                    for (int from = 0; from <= n; from++) {
+                        // ends[j]: the symbols so far can derive input[from, j).
+                        boolean[] ends = new boolean[n + 1];
+                        ends[from] = true;
+                        for (String symbol : production) {
+                            if (symbol.equals(Grammar.EPSILON)) {
+                                continue;
+                            }
+                            boolean[] next = new boolean[n + 1];
+                            for (int i = from; i <= n; i++) {
+                                if (!ends[i]) {
+                                    continue;
+                                }
+                                boolean[][] symbolSpans = derives.get(symbol);
+                                for (int j = i; j <= n; j++) {
+                                    if (symbolSpans != null ? symbolSpans[i][j]
+                                                            : j == i + 1 && input.get(i).equals(symbol)) {
+                                        next[j] = true;
+                                    }
+                                }
+                            }
+                            ends = next;
+                        }
+                        for (int to = from; to <= n; to++) {
+                            if (ends[to] && !spans[from][to]) {
+                                spans[from][to] = true;
+                                changed = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return derives.get(start)[0][n];
+    }
+}
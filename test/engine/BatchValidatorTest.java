@@ -0,0 +1,103 @@
+package engine;
+import org.junit.jupiter.api.Test;
+import rdp.RDPGrammar;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchValidatorTest {
+    private static final String NESTED = "S -> ( S ) | x";
+
+    // Deep enough that the recursive descent parser runs out of stack.
+    private static String nested(int depth) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            sb.append("( ");
+        }
+        sb.append('x');
+        for (int i = 0; i < depth; i++) {
+            sb.append(" )");
+        }
+        return sb.toString();
+    }
+
+    private static List<String> inputs() {
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            inputs.add(i % 3 == 0 ? "( x )" : i % 3 == 1 ? "( x" : "x");
+        }
+        inputs.set(1500, nested(200_000));
+        return inputs;
+    }
+
+    @Test
+    void stackOverflowIsAnErrorForThatInputOnly() {
+        Recognizer recognizer = new RDPGrammar(NESTED, "S").recognizer(false);
+        BatchReport report;
+        try (BatchValidator validator = new BatchValidator(2)) {
+            report = validator.validate(recognizer, inputs());
+        }
+        BatchStats stats = report.getStats();
+        assertEquals(3000, stats.getInputs());
+        assertEquals(1, stats.getErrors());
+        assertEquals(1999, stats.getValid());
+        assertEquals(1000, stats.getInvalid());
+        assertTrue(report.isError(1500));
+        assertFalse(report.isValid(1500));
+        assertTrue(report.isValid(0));
+        assertFalse(report.isValid(1));
+    }
+
+    @Test
+    void streamCountsEveryInputOnce() throws InterruptedException {
+        Recognizer recognizer = new RDPGrammar(NESTED, "S").recognizer(false);
+        Map<Long, Throwable> errors = new ConcurrentHashMap<>();
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        BatchStats stats;
+        try (BatchValidator validator = new BatchValidator(2)) {
+            stats = validator.validate(recognizer, inputs().stream(), (index, input, valid, error) -> {
+                assertTrue(seen.add(index));
+                if (error != null) {
+                    errors.put(index, error);
+                }
+            });
+        }
+        assertEquals(3000, stats.getInputs());
+        assertEquals(3000, seen.size());
+        assertEquals(1, stats.getErrors());
+        assertEquals(1999, stats.getValid());
+        assertEquals(Set.of(1500L), errors.keySet());
+        assertTrue(errors.get(1500L) instanceof StackOverflowError);
+    }
+
+    @Test
+    void listenerFailureFailsTheBatch() {
+        Recognizer recognizer = input -> true;
+        try (BatchValidator validator = new BatchValidator(2)) {
+            assertThrows(IllegalStateException.class, () -> validator.validate(
+                    recognizer, Stream.of("a", "b", "c"), (index, input, valid, error) -> {
+                        throw new IllegalStateException();
+                    }));
+        }
+    }
+
+    @Test
+    void closeShutsDownOnlyAnOwnedPool() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            new BatchValidator(pool).close();
+            assertFalse(pool.isShutdown());
+            new BatchValidator().close();
+            assertFalse(ForkJoinPool.commonPool().isShutdown());
+        } finally {
+            pool.shutdown();
+        }
+        BatchValidator owner = new BatchValidator(1);
+        owner.close();
+        assertThrows(RejectedExecutionException.class, () -> owner.validate(input -> true, List.of("a")));
+    }
+}
@@ -0,0 +1,96 @@
+package grammar;
+import LL1.CompiledGrammar;
+import org.junit.jupiter.api.Test;
+import rdp.RDPGrammar;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GrammarTest {
+    private static final String EXPRESSIONS = "E -> T E'\nE' -> + T E' | epsilon\nT -> ( E ) | id";
+
+    @Test
+    void symbolsAreInternedInOrder() {
+        Grammar grammar = Grammar.parse(EXPRESSIONS);
+        assertEquals(List.of("E", "E'", "T"), grammar.getNonTerminals());
+        assertEquals(List.of("+", "(", ")", "id"), grammar.getTerminals());
+        assertEquals(8, grammar.getSymbolCount());
+        for (int id = 0; id < grammar.getSymbolCount(); id++) {
+            assertEquals(id, grammar.symbolId(grammar.symbolName(id)));
+            assertEquals(id >= 3, grammar.isTerminal(id));
+        }
+        assertEquals(-1, grammar.symbolId("x"));
+        // Every use of a symbol is the same id, wherever it occurs.
+        int t = grammar.symbolId("T");
+        assertArrayEquals(new int[] {t, grammar.symbolId("E'")}, grammar.productionBody(0));
+        assertEquals(t, grammar.productionBody(1)[1]);
+    }
+
+    @Test
+    void toRulesSharesOneStringPerSymbol() {
+        Map<String, List<List<String>>> rules = Grammar.parse(EXPRESSIONS).toRules();
+        assertSame(rules.get("E").get(0).get(0), rules.get("E'").get(0).get(1));
+        assertEquals(Grammar.parse(EXPRESSIONS).toRules(), Grammar.of(rules).toRules());
+    }
+
+    @Test
+    void epsilonIsNotASymbol() {
+        Grammar grammar = Grammar.parse("S -> a S | epsilon | ");
+        assertEquals(-1, grammar.symbolId(Grammar.EPSILON));
+        assertEquals(0, grammar.productionBody(1).length);
+        assertEquals(0, grammar.productionBody(2).length);
+        assertEquals("epsilon", grammar.productionText(1));
+        assertEquals(List.of(Grammar.EPSILON), grammar.toRules().get("S").get(2));
+        assertEquals(List.of("a"), grammar.getTerminals());
+    }
+
+    @Test
+    void endMarkerIsImplicitUnlessUsed() {
+        Grammar implicit = Grammar.parse("S -> a");
+        assertEquals(implicit.getSymbolCount() - 1, implicit.getEndMarker());
+        assertEquals(List.of("a"), implicit.getTerminals());
+        Grammar explicit = Grammar.parse("S -> a $ b");
+        assertEquals(explicit.symbolId(Grammar.END_MARKER), explicit.getEndMarker());
+        assertEquals(List.of("a", "$", "b"), explicit.getTerminals());
+    }
+
+    @Test
+    void rejectsLinesThatAreNotRules() {
+        for (String text : new String[] {"S a b", "-> a", "A B -> a", "epsilon -> a", "$ -> a"}) {
+            assertThrows(IllegalArgumentException.class, () -> Grammar.parse(text), text);
+        }
+    }
+
+    @Test
+    void tokensSplitOnWhitespaceRuns() {
+        assertEquals(List.of(), Grammar.tokens(""));
+        assertEquals(List.of(), Grammar.tokens(" \t\n"));
+        assertEquals(List.of("a", "b", "c"), Grammar.tokens(" a  b\t\r\nc\u000B"));
+        // Only ASCII whitespace separates; a no-break space is part of a token.
+        assertEquals(List.of("a\u00a0b"), Grammar.tokens("a\u00a0b"));
+    }
+
+    // Both engines read the same text into the same grammar, so they agree on
+    // every input of a grammar that is LL(1) and free of left recursion.
+    @Test
+    void bothEnginesParseTheSameTextTheSameWay() {
+        CompiledGrammar ll1 = CompiledGrammar.forGrammar(EXPRESSIONS, "E");
+        RDPGrammar rdp = new RDPGrammar(EXPRESSIONS, "E");
+        assertTrue(ll1.isLL1());
+        String[] inputs = {"id", "id + id", "( id + id ) + id", " id  +\tid ", "", "id +", "( id", "id id", "x"};
+        for (String input : inputs) {
+            boolean expected = ll1.validate(input);
+            assertEquals(expected, rdp.recognizer(false).validate(input), input);
+            assertEquals(expected, rdp.recognizer(true).validate(input), input);
+        }
+        Random random = new Random(17);
+        for (int round = 0; round < 200; round++) {
+            StringBuilder input = new StringBuilder();
+            for (int n = random.nextInt(8); n > 0; n--) {
+                input.append(new String[] {"id", "+", "(", ")"}[random.nextInt(4)]).append(' ');
+            }
+            String text = input.toString();
+            assertEquals(ll1.validate(text), rdp.recognizer(false).validate(text), text);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package grammar;
+import java.util.*;
+
+// Small random grammars and inputs for the tests that compare two ways of
+// answering the same question. Nonterminals are A, B, ..., terminals a, b, ...,
+// and A is the start symbol.
+public final class RandomGrammars {
+    private RandomGrammars() {
+    }
+
+    public static Map<String, List<List<String>>> rules(Random random, int nonTerminals, int terminals) {
+        Map<String, List<List<String>>> rules = new LinkedHashMap<>();
+        for (int nt = 0; nt < nonTerminals; nt++) {
+            List<List<String>> productions = new ArrayList<>();
+            int count = 1 + random.nextInt(3);
+            for (int p = 0; p < count; p++) {
+                productions.add(production(random, nonTerminals, terminals));
+            }
+            rules.put(nonTerminal(nt), productions);
+        }
+        return rules;
+    }
+
+    public static List<String> production(Random random, int nonTerminals, int terminals) {
+        int length = random.nextInt(4);
+        if (length == 0) {
+            return List.of(Grammar.EPSILON);
+        }
+        List<String> body = new ArrayList<>();
+        for (int i = 0; i < length; i++) {
+            body.add(random.nextInt(3) == 0 ? nonTerminal(random.nextInt(nonTerminals))
+                                            : terminal(random.nextInt(terminals)));
+        }
+        return body;
+    }
+
+    public static String nonTerminal(int index) {
+        return String.valueOf((char) ('A' + index));
+    }
+
+    public static String terminal(int index) {
+        return String.valueOf((char) ('a' + index));
+    }
+
+    public static String text(Map<String, List<List<String>>> rules) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, List<List<String>>> entry : rules.entrySet()) {
+            sb.append(entry.getKey()).append(" ->");
+            for (int p = 0; p < entry.getValue().size(); p++) {
+                sb.append(p == 0 ? " " : " | ").append(String.join(" ", entry.getValue().get(p)));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    // Some sentences of the grammar, from random derivations that stay within a
+    // depth limit, mixed with random strings that are mostly not sentences.
+    public static List<List<String>> inputs(Random random, Map<String, List<List<String>>> rules, int terminals,
+                                            int count) {
+        List<List<String>> inputs = new ArrayList<>();
+        for (int i = 0; inputs.size() < count && i < count * 4; i++) {
+            List<String> sentence = new ArrayList<>();
+            if (derive(random, rules, "A", 6, sentence) && sentence.size() <= 12) {
+                inputs.add(sentence);
+                if (!sentence.isEmpty() && random.nextBoolean()) {
+                    List<String> broken = new ArrayList<>(sentence);
+                    broken.set(random.nextInt(broken.size()), terminal(random.nextInt(terminals + 1)));
+                    inputs.add(broken);
+                }
+            }
+            List<String> noise = new ArrayList<>();
+            for (int length = random.nextInt(6); noise.size() < length; ) {
+                noise.add(terminal(random.nextInt(terminals)));
+            }
+            inputs.add(noise);
+        }
+        return inputs;
+    }
+
+    private static boolean derive(Random random, Map<String, List<List<String>>> rules, String symbol, int depth,
+                                  List<String> out) {
+        List<List<String>> productions = rules.get(symbol);
+        if (productions == null) {
+            if (!symbol.equals(Grammar.EPSILON)) {
+                out.add(symbol);
+            }
+            return true;
+        }
+        if (depth == 0) {
+            return false;
+        }
+        for (String child : productions.get(random.nextInt(productions.size()))) {
+            if (!derive(random, rules, child, depth - 1, out)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
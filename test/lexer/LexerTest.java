@@ -0,0 +1,142 @@
+package lexer;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LexerTest {
+    @Test
+    void longestMatchWins() {
+        Lexer lexer = Lexer.compile(List.of("=", "==", "=>"), Map.of(), Lexer.DEFAULT_SKIP);
+        assertEquals(List.of("==", "=>", "=", "="), lexer.tokenTexts("===> = ="));
+        assertEquals(List.of("==", "==", "="), scan(lexer, "====="));
+    }
+
+    @Test
+    void literalsBeatPatternsOnlyOnATie() {
+        Map<String, String> patterns = new LinkedHashMap<>();
+        patterns.put("id", "[a-z]+");
+        patterns.put("word", "[a-z]+");
+        Lexer lexer = Lexer.compile(List.of("if"), patterns, Lexer.DEFAULT_SKIP);
+        assertEquals(List.of("if", "id", "id", "id"), scan(lexer, "if iff i fi"));
+        assertEquals(List.of("if", "id", "word"), lexer.getTokenNames());
+    }
+
+    @Test
+    void repetitionClassesAndNegationParse() {
+        Map<String, String> patterns = new LinkedHashMap<>();
+        patterns.put("aa", "a{2,3}");
+        patterns.put("bb", "b{2}");
+        patterns.put("cc", "c{2,}");
+        patterns.put("hex", "0x[0-9a-fA-F]+");
+        patterns.put("other", "[^abc0\\s]+");
+        Lexer lexer = Lexer.compile(List.of(), patterns, Lexer.DEFAULT_SKIP);
+        assertEquals(List.of("aaa", "aa", "bb", "ccccc", "0xBeef", "xyz!"),
+                     lexer.tokenTexts("aaaaa bb ccccc 0xBeef xyz!"));
+        assertEquals(List.of("aa", "bb", "cc", "hex", "other"), scan(lexer, "aa bb cc 0x1 q"));
+        // A lone a, b or c is no token.
+        assertEquals(List.of("ERROR"), scan(lexer, "a"));
+        assertEquals(List.of("bb", "ERROR"), scan(lexer, "bbb"));
+        assertEquals(List.of("other"), scan(lexer, "\u00e9\u65e5"));
+
+        assertThrows(IllegalArgumentException.class, () -> compile("a{2"));
+        assertThrows(IllegalArgumentException.class, () -> compile("a{3,2}"));
+        assertThrows(IllegalArgumentException.class, () -> compile("[a-"));
+        assertThrows(IllegalArgumentException.class, () -> compile("[z-a]"));
+        assertThrows(IllegalArgumentException.class, () -> compile("*a"));
+        assertThrows(IllegalArgumentException.class, () -> compile("(a"));
+        assertThrows(IllegalArgumentException.class, () -> compile("a)"));
+    }
+
+    @Test
+    void patternsMatchingTheEmptyStringAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> compile("a*"));
+        assertThrows(IllegalArgumentException.class, () -> compile("(a|)"));
+        assertThrows(IllegalArgumentException.class, () -> compile("a?b?"));
+        assertThrows(IllegalArgumentException.class,
+                     () -> Lexer.compile(List.of("a"), Map.of(), "\\s*"));
+        assertThrows(IllegalArgumentException.class,
+                     () -> Lexer.compile(List.of(""), Map.of(), null));
+        assertDoesNotThrow(() -> compile("a+"));
+    }
+
+    @Test
+    void readerIsRefilledInTheMiddleOfAToken() throws IOException {
+        Lexer lexer = Lexer.compile(List.of("ab", "abc"), Map.of("num", "[0-9]+"), Lexer.DEFAULT_SKIP);
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            switch (random.nextInt(3)) {
+                case 0: text.append("ab"); break;
+                case 1: text.append("abc"); break;
+                default: text.append(random.nextInt(100000)); break;
+            }
+            text.append(i % 7 == 0 ? "  \n" : " ");
+        }
+        // A token longer than the scanner's first buffer has to grow it.
+        text.append("9".repeat(20000)).append(" ab");
+        String input = text.toString();
+
+        List<String> expected = scan(lexer, input);
+        List<Long> starts = new ArrayList<>();
+        try (TokenScanner scanner = lexer.scanner(input)) {
+            while (scanner.next() != Lexer.END) {
+                starts.add(scanner.tokenStart());
+            }
+        }
+        for (int chunk : new int[] {1, 2, 5, 4096}) {
+            List<String> kinds = new ArrayList<>();
+            List<Long> trickled = new ArrayList<>();
+            try (TokenScanner scanner = lexer.scanner(trickle(input, chunk))) {
+                for (int kind; (kind = scanner.next()) != Lexer.END; ) {
+                    kinds.add(name(lexer, kind));
+                    trickled.add(scanner.tokenStart());
+                    if (kind == 2 && scanner.tokenLength() == 20000) {
+                        assertEquals("9".repeat(20000), scanner.tokenText());
+                    }
+                }
+            }
+            assertEquals(expected, kinds, "chunk " + chunk);
+            assertEquals(starts, trickled, "chunk " + chunk);
+        }
+    }
+
+    @Test
+    void tooManyStatesIsAnError() {
+        // The DFA for "an a 17 chars from the end" needs a state per suffix.
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                                                  () -> compile("(a|b)*a(a|b){16}"));
+        assertEquals("Token patterns need more than 65536 DFA states", e.getMessage());
+        assertDoesNotThrow(() -> compile("(a|b)*a(a|b){4}"));
+    }
+
+    private static Lexer compile(String pattern) {
+        return Lexer.compile(List.of(), Map.of("p", pattern), null);
+    }
+
+    private static List<String> scan(Lexer lexer, String input) {
+        List<String> kinds = new ArrayList<>();
+        TokenScanner scanner = lexer.scanner(input);
+        for (int kind; (kind = scanner.next()) != Lexer.END; ) {
+            kinds.add(name(lexer, kind));
+        }
+        return kinds;
+    }
+
+    private static String name(Lexer lexer, int kind) {
+        return kind == Lexer.ERROR ? "ERROR" : lexer.getTokenNames().get(kind);
+    }
+
+    // Hands out at most chunk chars per read.
+    private static Reader trickle(String input, int chunk) {
+        return new StringReader(input) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, chunk));
+            }
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package rdp;
+import engine.GeneratedParser;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeftRecursionTest {
+    private static final String EXPRESSIONS = "E -> E + T | T\nT -> T * F | F\nF -> ( E ) | id";
+
+    // Far deeper than a thread stack allows one call per operator.
+    private static String chain(int terms) {
+        StringBuilder sb = new StringBuilder("id");
+        for (int i = 1; i < terms; i++) {
+            sb.append(i % 3 == 0 ? " * id" : " + id");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void deepLeftAssociativeChainParses() {
+        String input = chain(50_000);
+        for (boolean packrat : new boolean[] {false, true}) {
+            RecursiveDescentParser parser = new RecursiveDescentParser(EXPRESSIONS, "E", packrat);
+            assertTrue(parser.validateString(input), "packrat " + packrat);
+            assertFalse(parser.validateString(input + " +"), "packrat " + packrat);
+        }
+    }
+
+    @Test
+    void deepChainParsesInGeneratedParsers() {
+        RDPGrammar grammar = new RDPGrammar(EXPRESSIONS, "E");
+        String input = chain(50_000);
+        for (boolean packrat : new boolean[] {false, true}) {
+            GeneratedParser parser = RDPCodeGenerator.compile(grammar, packrat);
+            assertTrue(parser.validate(input), "packrat " + packrat);
+            assertFalse(parser.validate(input + " +"), "packrat " + packrat);
+        }
+    }
+
+    @Test
+    void tailRulesAreLoops() {
+        RDPGrammar grammar = new RDPGrammar(EXPRESSIONS, "E");
+        String[] names = grammar.symbolNames();
+        for (int nt = 0; nt < grammar.nonTerminalCount(); nt++) {
+            assertEquals(names[nt].endsWith("'"), grammar.isLoop(nt), names[nt]);
+        }
+    }
+
+    @Test
+    void plainAndPackratBuildTheSameTree() {
+        RecursiveDescentParser plain = new RecursiveDescentParser(EXPRESSIONS, "E", false);
+        RecursiveDescentParser packrat = new RecursiveDescentParser(EXPRESSIONS, "E", true);
+        for (String input : new String[] {"id", "id + id * id", "( id + id ) * id + id", chain(200)}) {
+            assertTrue(plain.validateString(input));
+            assertTrue(packrat.validateString(input));
+            assertEquals(plain.getFormattedParseTree(), packrat.getFormattedParseTree(), input);
+        }
+    }
+
+    @Test
+    void repetitionsHangOffOneTailNode() {
+        RecursiveDescentParser parser = new RecursiveDescentParser("E -> E + id | id", "E");
+        assertTrue(parser.validateString("id + id + id"));
+        assertEquals("E:\n  id\n  E':\n    +\n    id\n    +\n    id\n", parser.getFormattedParseTree());
+    }
+
+    @Test
+    void writtenRightRecursionStaysNested() {
+        RDPGrammar grammar = new RDPGrammar("L -> a L | epsilon", "L");
+        assertFalse(grammar.isLoop(0));
+        RecursiveDescentParser parser = new RecursiveDescentParser(grammar, false);
+        assertTrue(parser.validateString("a a a"));
+        assertEquals("L:\n  a\n  L:\n    a\n    L:\n      a\n      L:\n", parser.getFormattedParseTree());
+        assertTrue(RDPCodeGenerator.compile(grammar, false).validate("a a a"));
+    }
+
+    @Test
+    void indirectRecursionIsRewritten() {
+        RecursiveDescentParser parser = new RecursiveDescentParser("A -> B a | a\nB -> A b | b", "A");
+        assertTrue(parser.validateString("b a b a"));
+        assertTrue(parser.validateString("a b a"));
+        assertFalse(parser.validateString("a b"));
+    }
+
+    @Test
+    void hiddenLeftRecursionIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                     () -> new RDPGrammar("A -> B A x | y\nB -> b | epsilon", "A"));
+    }
+}
@@ -0,0 +1,49 @@
+package rdp;
+import org.junit.jupiter.api.Test;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackratMemoTest {
+    @Test
+    void resetForgetsThePreviousParse() {
+        for (int limit : new int[] {1 << 10, 16}) {
+            PackratMemo memo = new PackratMemo(3, limit);
+            memo.reset(10);
+            memo.put(2, 9, 10, 1);
+            assertEquals(10, memo.end(2, 9));
+            assertEquals(1, memo.alternative(2, 9));
+            memo.reset(10);
+            assertEquals(PackratMemo.UNKNOWN, memo.end(2, 9));
+            memo.reset(4);
+            assertEquals(PackratMemo.UNKNOWN, memo.end(2, 3));
+            memo.put(0, 0, PackratMemo.FAILED, -1);
+            assertEquals(PackratMemo.FAILED, memo.end(0, 0));
+        }
+    }
+
+    // One parser, reused on inputs of changing length, in dense and in cache mode.
+    @Test
+    void reusedParserAgreesWithPlainParser() {
+        String rules = "S -> A b | A c\nA -> a A | a";
+        RecursiveDescentParser plain = new RecursiveDescentParser(rules, "S");
+        RecursiveDescentParser dense = new RecursiveDescentParser(rules, "S", true);
+        RecursiveDescentParser cached = new RecursiveDescentParser(rules, "S", true, 8);
+        Random random = new Random(5);
+        for (int i = 0; i < 500; i++) {
+            StringBuilder input = new StringBuilder("a");
+            for (int n = random.nextInt(i % 50 + 1); n > 0; n--) {
+                input.append(" a");
+            }
+            input.append(random.nextBoolean() ? " b" : random.nextBoolean() ? " c" : " d");
+            String text = input.toString();
+            boolean expected = plain.validateString(text);
+            assertEquals(expected, dense.validateString(text), text);
+            assertEquals(expected, cached.validateString(text), text);
+            if (expected) {
+                assertEquals(plain.getFormattedParseTree(), dense.getFormattedParseTree(), text);
+                assertEquals(plain.getFormattedParseTree(), cached.getFormattedParseTree(), text);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package rdp;
+import engine.GeneratedParser;
+import grammar.RandomGrammars;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RDPCodeGeneratorTest {
+    private static final int TERMINALS = 3;
+
+    @Test
+    void generatedParsersMatchInterpreter() {
+        Random random = new Random(11);
+        int compared = 0;
+        for (int round = 0; round < 40; round++) {
+            Map<String, List<List<String>>> rules = RandomGrammars.rules(random, 2 + random.nextInt(3), TERMINALS);
+            String text = RandomGrammars.text(rules);
+            RDPGrammar grammar;
+            try {
+                grammar = new RDPGrammar(text, "A");
+            } catch (IllegalArgumentException e) {
+                // Left recursion that cannot be rewritten; both would reject it.
+                continue;
+            }
+            List<List<String>> inputs = RandomGrammars.inputs(random, rules, TERMINALS, 20);
+            for (boolean packrat : new boolean[] {false, true}) {
+                RecursiveDescentParser interpreter = new RecursiveDescentParser(grammar, packrat);
+                GeneratedParser generated = RDPCodeGenerator.compile(grammar, packrat);
+                for (List<String> input : inputs) {
+                    String line = String.join(" ", input);
+                    assertEquals(interpreter.validateString(line), generated.validate(line),
+                                 "'" + line + "' packrat " + packrat + " in\n" + text);
+                }
+            }
+            compared++;
+        }
+        assertTrue(compared > 20, compared + " grammars compared");
+    }
+}
@@ -0,0 +1,30 @@
+package service;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParserServiceTest {
+    private static final String[] ENGINES = {
+        "ll1", "rdp", "packrat", "earley", "ll1-generated", "rdp-generated", "packrat-generated"};
+
+    // Every engine sits behind the same Recognizer, so the same text must get
+    // the same answer from each.
+    @Test
+    void everyEngineSplitsInputTheSameWay() throws Exception {
+        try (ParserService service = new ParserService(2, 64)) {
+            for (String engine : ENGINES) {
+                service.compile(engine, engine, "S", "S -> a S | epsilon").get();
+            }
+            String[] valid = {"", "   ", "a", "a  a", " a a ", "a\ta\na", "a\r\n\u000Ba"};
+            String[] invalid = {"b", "a  b", " a a b", "aa"};
+            for (String engine : ENGINES) {
+                for (String input : valid) {
+                    assertTrue(service.validate(engine, input).get(), engine + " '" + input + "'");
+                }
+                for (String input : invalid) {
+                    assertFalse(service.validate(engine, input).get(), engine + " '" + input + "'");
+                }
+            }
+        }
+    }
+}